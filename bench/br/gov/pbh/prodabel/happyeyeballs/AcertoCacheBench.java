@@ -0,0 +1,127 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark do acerto no cache de {@link HappyEyeballs#obterIp(String, int)} com 1 a 64 threads
+ * concorrentes.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AcertoCacheBench {
+
+  /**
+   * Servidor local.
+   */
+  private ServidorLocal servidor;
+  /**
+   * Instância medida, com o cache maior que o benchmark.
+   */
+  private HappyEyeballs happyEyeballs;
+
+  /**
+   * Sobe o servidor e preenche o cache.
+   *
+   * @throws Exception caso o servidor não conecte
+   */
+  @Setup
+  public void preparar() throws Exception {
+    servidor = new ServidorLocal(InetAddress.getByName("127.0.0.1"));
+    happyEyeballs = HappyEyeballs.builder().tempoCache(TimeUnit.HOURS.toMillis(1L)).construir();
+    happyEyeballs.obterIp("127.0.0.1", servidor.getPorta());
+    HappyEyeballs.getHappyEyeballsPadrao().obterIp("127.0.0.1", servidor.getPorta());
+  }
+
+  /**
+   * Encerra a instância e o servidor.
+   *
+   * @throws IOException caso ocorra erro ao fechar o servidor
+   */
+  @TearDown
+  public void encerrar() throws IOException {
+    happyEyeballs.close();
+    servidor.close();
+  }
+
+  /**
+   * Acerto pela instância padrão, que inclui a leitura sem bloqueio do singleton.
+   *
+   * @return IP em cache
+   * @throws HappyEyeBallsException caso ocorra algum problema
+   */
+  @Benchmark
+  @Threads(16)
+  public InetAddress acertoPadrao16() throws HappyEyeBallsException {
+    return HappyEyeballs.getHappyEyeballsPadrao().obterIp("127.0.0.1", servidor.getPorta());
+  }
+
+  /**
+   * Acerto pela instância própria com 1 thread.
+   *
+   * @return IP em cache
+   * @throws HappyEyeBallsException caso ocorra algum problema
+   */
+  @Benchmark
+  @Threads(1)
+  public InetAddress acerto1() throws HappyEyeBallsException {
+    return happyEyeballs.obterIp("127.0.0.1", servidor.getPorta());
+  }
+
+  /**
+   * Acerto pela instância própria com 4 threads.
+   *
+   * @return IP em cache
+   * @throws HappyEyeBallsException caso ocorra algum problema
+   */
+  @Benchmark
+  @Threads(4)
+  public InetAddress acerto4() throws HappyEyeBallsException {
+    return happyEyeballs.obterIp("127.0.0.1", servidor.getPorta());
+  }
+
+  /**
+   * Acerto pela instância própria com 16 threads.
+   *
+   * @return IP em cache
+   * @throws HappyEyeBallsException caso ocorra algum problema
+   */
+  @Benchmark
+  @Threads(16)
+  public InetAddress acerto16() throws HappyEyeBallsException {
+    return happyEyeballs.obterIp("127.0.0.1", servidor.getPorta());
+  }
+
+  /**
+   * Acerto pela instância própria com 64 threads.
+   *
+   * @return IP em cache
+   * @throws HappyEyeBallsException caso ocorra algum problema
+   */
+  @Benchmark
+  @Threads(64)
+  public InetAddress acerto64() throws HappyEyeBallsException {
+    return happyEyeballs.obterIp("127.0.0.1", servidor.getPorta());
+  }
+}
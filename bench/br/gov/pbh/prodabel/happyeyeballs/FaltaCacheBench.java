@@ -0,0 +1,82 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark da falta no cache: cada chamada resolve o nome e refaz a corrida contra um servidor
+ * local em IPV4 ou IPV6.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FaltaCacheBench {
+
+  /**
+   * Endereço local do servidor.
+   */
+  @Param({"127.0.0.1", "::1"})
+  public String endereco;
+  /**
+   * Servidor local.
+   */
+  private ServidorLocal servidor;
+  /**
+   * Instância medida.
+   */
+  private HappyEyeballsImpl happyEyeballs;
+
+  /**
+   * Sobe o servidor no endereço do parâmetro.
+   *
+   * @throws IOException caso o endereço não esteja disponível
+   */
+  @Setup
+  public void preparar() throws IOException {
+    servidor = new ServidorLocal(InetAddress.getByName(endereco));
+    happyEyeballs = (HappyEyeballsImpl) HappyEyeballs.builder().construir();
+  }
+
+  /**
+   * Encerra a instância e o servidor.
+   *
+   * @throws IOException caso ocorra erro ao fechar o servidor
+   */
+  @TearDown
+  public void encerrar() throws IOException {
+    happyEyeballs.close();
+    servidor.close();
+  }
+
+  /**
+   * Expira o endereço e o obtém de novo, o que inclui a resolução e a corrida.
+   *
+   * @return IP obtido
+   * @throws HappyEyeBallsException caso ocorra algum problema
+   */
+  @Benchmark
+  public InetAddress falta() throws HappyEyeBallsException {
+    happyEyeballs.expirar(endereco, servidor.getPorta());
+    return happyEyeballs.obterIp(endereco, servidor.getPorta());
+  }
+}
@@ -0,0 +1,98 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark da corrida {@link MelhorIp} com 1, 4, 16 e 64 endereços candidatos. Os candidatos são
+ * endereços distintos da rede de loopback 127.0.0.0/8, todos atendidos pelo mesmo servidor. A
+ * corrida classifica os endereços, para que todos os candidatos sejam tentados e o custo cresça com
+ * a quantidade.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MelhorIpBench {
+
+  /**
+   * Quantidade de endereços candidatos.
+   */
+  @Param({"1", "4", "16", "64"})
+  public int candidatos;
+  /**
+   * Servidor em todos os endereços locais.
+   */
+  private ServidorLocal servidor;
+  /**
+   * Endereços candidatos.
+   */
+  private List<InetAddress> enderecos;
+  /**
+   * Reator compartilhado.
+   */
+  private Reator reator;
+
+  /**
+   * Sobe o servidor e monta os candidatos.
+   *
+   * @throws Exception caso o servidor ou o reator não possam ser iniciados
+   */
+  @Setup
+  public void preparar() throws Exception {
+    servidor = new ServidorLocal(null);
+    enderecos = new ArrayList<InetAddress>(candidatos);
+    for (int i = 1; i <= candidatos; i++) {
+      enderecos.add(InetAddress.getByAddress(new byte[] {127, 0, 0, (byte) i}));
+    }
+    reator = Reator.getReator();
+  }
+
+  /**
+   * Encerra o servidor.
+   *
+   * @throws IOException caso ocorra erro ao fechar o servidor
+   */
+  @TearDown
+  public void encerrar() throws IOException {
+    servidor.close();
+  }
+
+  /**
+   * Corrida de classificação entre todos os candidatos, que termina quando todos conectarem.
+   *
+   * @return amostra vencedora
+   * @throws HappyEyeBallsException caso a corrida não possa ser criada
+   * @throws InterruptedException caso a espera seja interrompida
+   * @throws ExecutionException caso nenhum candidato conecte
+   */
+  @Benchmark
+  public Amostra corrida()
+      throws HappyEyeBallsException, InterruptedException, ExecutionException {
+    return new MelhorIp(HappyEyeballsBuilder.TEMPO_EXPIRACAO_PADRAO, enderecos,
+        servidor.getPorta(), MelhorIp.TEMPO_ENTRE_TENTATIVAS_MINIMO, false).classificar(true)
+            .iniciar(reator).get();
+  }
+}
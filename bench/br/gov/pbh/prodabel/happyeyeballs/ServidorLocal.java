@@ -0,0 +1,70 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Servidor local dos benchmarks, que aceita as conexões para que a fila de conexões pendentes nunca
+ * encha e as fecha depois que o cliente fechar, para não abortar uma conexão que a corrida ainda
+ * não concluiu.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+final class ServidorLocal extends Thread implements AutoCloseable {
+
+  /**
+   * Canal de escuta.
+   */
+  private final ServerSocketChannel escuta;
+  /**
+   * Área dos dados descartados.
+   */
+  private final ByteBuffer descarte = ByteBuffer.allocate(64);
+
+  /**
+   * Construtor.
+   *
+   * @param endereco endereço de escuta, ou null para todos os endereços locais
+   * @throws IOException caso não seja possível escutar no endereço
+   */
+  ServidorLocal(final InetAddress endereco) throws IOException {
+    super("servidor-local");
+    setDaemon(true);
+    escuta = ServerSocketChannel.open();
+    escuta.bind(new InetSocketAddress(endereco, 0), 1024);
+    start();
+  }
+
+  /**
+   * Retorna a porta de escuta.
+   *
+   * @return porta de escuta
+   */
+  int getPorta() {
+    return escuta.socket().getLocalPort();
+  }
+
+  @Override
+  public void run() {
+    while (escuta.isOpen()) {
+      try (SocketChannel aceito = escuta.accept()) {
+        aceito.socket().setSoLinger(true, 0);
+        while (aceito.read(descarte) >= 0) {
+          descarte.clear();
+        }
+      } catch (IOException excep) {
+        // canal de escuta fechado
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    escuta.close();
+  }
+}
@@ -2,10 +2,13 @@ package br.gov.pbh.prodabel.happyeyeballs;
 
 import java.io.Serializable;
 import java.net.InetAddress;
+import java.nio.channels.SocketChannel;
 import java.util.Arrays;
+import java.util.List;
 
 /**
- * Amostra de tempo de conexão.
+ * Amostra de tempo de conexão. Os tempos são medidos com {@link System#nanoTime()} e a comparação
+ * usa a média suavizada do {@link HistoricoLatencia} quando o endereço possui histórico.
  * 
  * @author Guilherme
  * @version 0.1
@@ -23,20 +26,52 @@ class Amostra implements Comparable<Amostra>, Serializable {
   private final InetAddress enderecoIp;
 
   /**
-   * Tempo para conectar ao endereço em milissegundos.
+   * Instante do início da conexão em nanossegundos.
    */
   private final long tempoInicio;
 
   /**
-   * Tempo em que terminou a conexão.
+   * Instante em que terminou a conexão em nanossegundos.
    */
   private long tempoFim;
 
+  /**
+   * Indica se o instante do fim da conexão foi definido.
+   */
+  private boolean concluida;
+
+  /**
+   * Média suavizada do tempo de conexão do endereço em nanossegundos, incluindo esta amostra.
+   */
+  private long tempoSuavizado = HistoricoLatencia.SEM_MEDIA;
+
+  /**
+   * Endereço local ao qual o canal foi associado, ou nulo quando a origem é escolhida pelo sistema.
+   */
+  private InetAddress origem;
+
+  /**
+   * Canal conectado ao endereço, mantido somente quando a corrida entrega o vencedor ao chamador.
+   */
+  private transient SocketChannel canal;
+
+  /**
+   * Endereços que conectaram, do mais rápido para o mais lento, mantidos somente na amostra
+   * vencedora de uma corrida de classificação.
+   */
+  private transient List<IpClassificado> classificacao;
+
+  /**
+   * Conexão TLS com o handshake concluído, mantida somente quando a corrida por handshake entrega
+   * o vencedor ao chamador.
+   */
+  private transient ConexaoTls conexaoTls;
+
   /**
    * Construtor.
    * 
    * @param enderecoIp endereço IP
-   * @param tempoInicio tempo em milissegundos do inicio para conectar.
+   * @param tempoInicio instante em nanossegundos do inicio da conexão.
    */
   public Amostra(final InetAddress enderecoIp, final long tempoInicio) {
     super();
@@ -54,27 +89,118 @@ class Amostra implements Comparable<Amostra>, Serializable {
   }
 
   /**
-   * Retorna o tempo em que a conexão terminou.
+   * Retorna o instante em que a conexão terminou.
    * 
-   * @return tempo em milissegundos
+   * @return instante em nanossegundos
    */
   public long getTempoFim() {
     return tempoFim;
   }
 
   /**
-   * Define o tempo em que a conexão terminou.
+   * Define o instante em que a conexão terminou.
    * 
-   * @param tempoFim tempo em milissegundos
+   * @param tempoFim instante em nanossegundos
    */
   public void setTempoFim(final long tempoFim) {
     this.tempoFim = tempoFim;
+    concluida = true;
+  }
+
+  /**
+   * Retorna a média suavizada do tempo de conexão do endereço.
+   * 
+   * @return média em nanossegundos ou {@link HistoricoLatencia#SEM_MEDIA}
+   */
+  public long getTempoSuavizado() {
+    return tempoSuavizado;
+  }
+
+  /**
+   * Define a média suavizada do tempo de conexão do endereço.
+   * 
+   * @param tempoSuavizado média em nanossegundos
+   */
+  public void setTempoSuavizado(final long tempoSuavizado) {
+    this.tempoSuavizado = tempoSuavizado;
+  }
+
+  /**
+   * Retorna o endereço local de origem da conexão.
+   * 
+   * @return endereço de origem ou nulo caso a origem tenha sido escolhida pelo sistema
+   */
+  public InetAddress getOrigem() {
+    return origem;
+  }
+
+  /**
+   * Define o endereço local de origem da conexão.
+   * 
+   * @param origem endereço de origem
+   */
+  public void setOrigem(final InetAddress origem) {
+    this.origem = origem;
   }
 
   /**
-   * Tempo de conexão.
+   * Retorna o canal conectado ao endereço.
    * 
-   * @return tempo para se conectar ao endereço em milissegundos.
+   * @return canal conectado ou nulo caso a corrida não tenha mantido a conexão
+   */
+  public SocketChannel getCanal() {
+    return canal;
+  }
+
+  /**
+   * Define o canal conectado ao endereço.
+   * 
+   * @param canal canal conectado
+   */
+  public void setCanal(final SocketChannel canal) {
+    this.canal = canal;
+  }
+
+  /**
+   * Retorna a classificação dos endereços da corrida.
+   * 
+   * @return endereços do mais rápido para o mais lento ou nulo caso a corrida não os classifique
+   */
+  public List<IpClassificado> getClassificacao() {
+    return classificacao;
+  }
+
+  /**
+   * Define a classificação dos endereços da corrida.
+   * 
+   * @param classificacao endereços do mais rápido para o mais lento
+   */
+  public void setClassificacao(final List<IpClassificado> classificacao) {
+    this.classificacao = classificacao;
+  }
+
+  /**
+   * Retorna a conexão TLS estabelecida na corrida.
+   * 
+   * @return conexão TLS ou nulo caso a corrida não a tenha mantido
+   */
+  public ConexaoTls getConexaoTls() {
+    return conexaoTls;
+  }
+
+  /**
+   * Define a conexão TLS estabelecida na corrida.
+   * 
+   * @param conexaoTls conexão TLS com o handshake concluído
+   */
+  public void setConexaoTls(final ConexaoTls conexaoTls) {
+    this.conexaoTls = conexaoTls;
+  }
+
+  /**
+   * Instante do início da conexão.
+   * 
+   * @return instante em nanossegundos do início da conexão.
    */
   public long getTempoInicio() {
     return tempoInicio;
@@ -83,21 +209,38 @@ class Amostra implements Comparable<Amostra>, Serializable {
   /**
    * Retorna o tempo total para conectar ao servidor.
    * 
-   * @return tempo em milissegundos
+   * @return tempo em nanossegundos
    */
   public long getTempoTotal() {
-    return tempoFim == 0 ? Long.MAX_VALUE : tempoFim - tempoInicio;
+    return concluida ? tempoFim - tempoInicio : Long.MAX_VALUE;
   }
 
   /**
-   * Compara duas amostras.
+   * Retorna o tempo usado na comparação: a média suavizada quando existir, senão o tempo total.
+   * 
+   * @return tempo em nanossegundos
+   */
+  public long getTempoReferencia() {
+    return concluida && tempoSuavizado != HistoricoLatencia.SEM_MEDIA ? tempoSuavizado
+        : getTempoTotal();
+  }
+
+  /**
+   * Compara duas amostras pela média suavizada e, no empate, pelo tempo total.
    * 
    * @param outro a amostra para ser comparada
    * @return número negativo, zero, ou positivo caso seja menor, igual, ou maior
    */
   @Override
   public final int compareTo(final Amostra outro) {
-    return outro == null ? 1 : Long.compare(getTempoTotal(), outro.getTempoTotal());
+    int comparacao = 1;
+    if (outro != null) {
+      comparacao = Long.compare(getTempoReferencia(), outro.getTempoReferencia());
+      if (comparacao == 0) {
+        comparacao = Long.compare(getTempoTotal(), outro.getTempoTotal());
+      }
+    }
+    return comparacao;
   }
 
   /**
@@ -0,0 +1,322 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.net.InetAddress;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache próximo, à frente do ehcache, para o caminho de acerto. A chave é o próprio nome do
+ * servidor informado pelo chamador e cada nome guarda um vetor imutável com as entradas por porta,
+ * de forma que a consulta é uma única busca no mapa, sem montar a chave nem alocar memória.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+final class CacheProximo {
+
+  /**
+   * Entradas por nome do servidor.
+   */
+  private final ConcurrentMap<String, Entrada[]> entradas;
+  /**
+   * Quantidade máxima de nomes, acima da qual um nome é descartado a cada novo nome.
+   */
+  private final int capacidade;
+
+  /**
+   * Construtor.
+   *
+   * @param capacidade quantidade máxima de nomes
+   */
+  CacheProximo(final int capacidade) {
+    super();
+    this.capacidade = capacidade;
+    entradas = new ConcurrentHashMap<String, Entrada[]>();
+  }
+
+  /**
+   * Busca a entrada do nome e porta, válida ou não.
+   *
+   * @param nome nome do servidor
+   * @param porta porta do servidor
+   * @return entrada ou null
+   */
+  Entrada buscar(final String nome, final int porta) {
+    final Entrada[] portas = entradas.get(nome);
+    final int posicao = posicao(portas, porta);
+    return posicao < 0 ? null : portas[posicao];
+  }
+
+  /**
+   * Armazena o IP do nome e porta, substituindo a entrada anterior. Quando a capacidade é atingida,
+   * um único nome é descartado para dar lugar ao novo, já que continua no ehcache.
+   *
+   * @param nome nome do servidor
+   * @param entrada nova entrada
+   */
+  void armazenar(final String nome, final Entrada entrada) {
+    if (entradas.size() >= capacidade && !entradas.containsKey(nome)) {
+      descartaUm(System.nanoTime());
+    }
+    entradas.compute(nome, (chave, atuais) -> {
+      final Entrada[] novas;
+      final int posicao = posicao(atuais, entrada.porta);
+      if (atuais == null) {
+        novas = new Entrada[] {entrada};
+      } else if (posicao < 0) {
+        novas = new Entrada[atuais.length + 1];
+        System.arraycopy(atuais, 0, novas, 0, atuais.length);
+        novas[atuais.length] = entrada;
+      } else {
+        novas = atuais.clone();
+        novas[posicao] = entrada;
+      }
+      return novas;
+    });
+  }
+
+  /**
+   * Remove a entrada do nome e porta.
+   *
+   * @param nome nome do servidor
+   * @param porta porta do servidor
+   */
+  void remover(final String nome, final int porta) {
+    entradas.computeIfPresent(nome, (chave, atuais) -> {
+      final int posicao = posicao(atuais, porta);
+      final Entrada[] novas;
+      if (posicao < 0) {
+        novas = atuais;
+      } else if (atuais.length == 1) {
+        novas = null;
+      } else {
+        novas = new Entrada[atuais.length - 1];
+        System.arraycopy(atuais, 0, novas, 0, posicao);
+        System.arraycopy(atuais, posicao + 1, novas, posicao, novas.length - posicao);
+      }
+      return novas;
+    });
+  }
+
+  /**
+   * Retorna as entradas válidas consultadas desde que foram armazenadas ou resfriadas, da mais
+   * próxima da expiração para a mais distante.
+   *
+   * @param agora instante atual em nanossegundos
+   * @return pares de nome do servidor e entrada
+   */
+  List<Map.Entry<String, Entrada>> usadas(final long agora) {
+    final List<Map.Entry<String, Entrada>> usadas = new ArrayList<Map.Entry<String, Entrada>>();
+    for (final Map.Entry<String, Entrada[]> portas : entradas.entrySet()) {
+      for (final Entrada entrada : portas.getValue()) {
+        if (entrada.usada && entrada.isValida(agora)) {
+          usadas.add(new AbstractMap.SimpleImmutableEntry<String, Entrada>(portas.getKey(),
+              entrada));
+        }
+      }
+    }
+    usadas.sort((uma, outra) -> Long.compare(uma.getValue().expiraEm - agora,
+        outra.getValue().expiraEm - agora));
+    return usadas;
+  }
+
+  /**
+   * Descarta o nome menos útil: entre os que não foram consultados desde que foram armazenados ou
+   * resfriados, ou entre todos quando todos foram consultados, o que expira primeiro. Os destinos
+   * quentes permanecem no caminho de acerto.
+   *
+   * @param agora instante atual em nanossegundos
+   */
+  private void descartaUm(final long agora) {
+    Map.Entry<String, Entrada[]> escolhido = null;
+    boolean escolhidoUsado = true;
+    long escolhidoRestante = Long.MAX_VALUE;
+    for (final Map.Entry<String, Entrada[]> portas : entradas.entrySet()) {
+      boolean usado = false;
+      long restante = Long.MIN_VALUE;
+      for (final Entrada entrada : portas.getValue()) {
+        usado |= entrada.usada;
+        restante = Math.max(restante, entrada.expiraEm - agora);
+      }
+      if (escolhido == null || !usado && escolhidoUsado
+          || usado == escolhidoUsado && restante < escolhidoRestante) {
+        escolhido = portas;
+        escolhidoUsado = usado;
+        escolhidoRestante = restante;
+      }
+    }
+    if (escolhido != null) {
+      entradas.remove(escolhido.getKey(), escolhido.getValue());
+    }
+  }
+
+  /**
+   * Descarta todas as entradas.
+   */
+  void limpar() {
+    entradas.clear();
+  }
+
+  /**
+   * Retorna a posição da porta no vetor de entradas.
+   *
+   * @param portas entradas de um nome ou null
+   * @param porta porta procurada
+   * @return posição ou -1
+   */
+  private static int posicao(final Entrada[] portas, final int porta) {
+    int posicao = -1;
+    if (portas != null) {
+      for (int i = 0; posicao < 0 && i < portas.length; i++) {
+        if (portas[i].porta == porta) {
+          posicao = i;
+        }
+      }
+    }
+    return posicao;
+  }
+
+  /**
+   * IP vencedor de uma porta, com os instantes de expiração e de renovação antecipada.
+   */
+  static final class Entrada {
+
+    /**
+     * Porta do servidor.
+     */
+    private final int porta;
+    /**
+     * IP vencedor.
+     */
+    private final InetAddress endereco;
+    /**
+     * Instante em nanossegundos em que a entrada expira, igual ao do ehcache.
+     */
+    private final long expiraEm;
+    /**
+     * Instante em nanossegundos a partir do qual um acerto refaz a corrida.
+     */
+    private final long renovarApos;
+    /**
+     * Endereços classificados pela corrida, ou null quando a corrida não os classificou.
+     */
+    private final List<IpClassificado> classificacao;
+    /**
+     * Indica se a entrada foi consultada desde que foi armazenada ou resfriada.
+     */
+    private volatile boolean usada;
+
+    /**
+     * Construtor.
+     *
+     * @param porta porta do servidor
+     * @param endereco IP vencedor
+     * @param expiraEm instante da expiração em nanossegundos
+     * @param renovarApos instante da renovação antecipada em nanossegundos
+     */
+    Entrada(final int porta, final InetAddress endereco, final long expiraEm,
+        final long renovarApos) {
+      this(porta, endereco, expiraEm, renovarApos, null);
+    }
+
+    /**
+     * Construtor com a classificação dos endereços.
+     *
+     * @param porta porta do servidor
+     * @param endereco IP vencedor
+     * @param expiraEm instante da expiração em nanossegundos
+     * @param renovarApos instante da renovação antecipada em nanossegundos
+     * @param classificacao endereços classificados ou null
+     */
+    Entrada(final int porta, final InetAddress endereco, final long expiraEm,
+        final long renovarApos, final List<IpClassificado> classificacao) {
+      this.porta = porta;
+      this.endereco = endereco;
+      this.expiraEm = expiraEm;
+      this.renovarApos = renovarApos;
+      this.classificacao = classificacao;
+    }
+
+    /**
+     * Retorna a porta do servidor.
+     *
+     * @return porta do servidor
+     */
+    int getPorta() {
+      return porta;
+    }
+
+    /**
+     * Retorna o IP vencedor.
+     *
+     * @return IP vencedor
+     */
+    InetAddress getEndereco() {
+      return endereco;
+    }
+
+    /**
+     * Retorna os endereços classificados pela corrida.
+     *
+     * @return endereços do mais rápido para o mais lento ou null
+     */
+    List<IpClassificado> getClassificacao() {
+      return classificacao;
+    }
+
+    /**
+     * Indica se o IP é o vencedor ou um dos endereços classificados.
+     *
+     * @param enderecoIp IP procurado
+     * @return verdadeiro caso o IP pertença à entrada
+     */
+    boolean contem(final InetAddress enderecoIp) {
+      boolean contem = endereco.equals(enderecoIp);
+      for (int i = 0; !contem && classificacao != null && i < classificacao.size(); i++) {
+        contem = classificacao.get(i).getEndereco().equals(enderecoIp);
+      }
+      return contem;
+    }
+
+    /**
+     * Indica se a entrada ainda não expirou.
+     *
+     * @param agora instante atual em nanossegundos
+     * @return verdadeiro caso a entrada seja válida
+     */
+    boolean isValida(final long agora) {
+      return agora - expiraEm < 0L;
+    }
+
+    /**
+     * Indica se a entrada passou do instante de renovação antecipada.
+     *
+     * @param agora instante atual em nanossegundos
+     * @return verdadeiro caso a corrida deva ser refeita
+     */
+    boolean isRenovar(final long agora) {
+      return agora - renovarApos >= 0L;
+    }
+
+    /**
+     * Marca a entrada como consultada. A escrita só ocorre na primeira consulta, para que acertos
+     * concorrentes apenas leiam a entrada.
+     */
+    void usar() {
+      if (!usada) {
+        usada = true;
+      }
+    }
+
+    /**
+     * Desmarca a consulta da entrada.
+     */
+    void resfriar() {
+      usada = false;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Conexão TLS vencedora de uma corrida por handshake, entregue com o handshake já concluído para
+ * que não seja refeito. O tráfego da aplicação passa pelo {@link SSLEngine} da corrida: os dados
+ * enviados são cifrados com {@code wrap} e escritos no canal, e os recebidos são lidos do canal e
+ * decifrados com {@code unwrap}, começando pelos bytes de {@link #getRecebidos()}.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+public final class ConexaoTls implements Closeable {
+
+  /**
+   * Interface de log.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConexaoTls.class);
+  /**
+   * Dados vazios da aplicação, para o {@code wrap} do alerta de encerramento.
+   */
+  private static final ByteBuffer VAZIO = ByteBuffer.allocate(0);
+
+  /**
+   * Canal conectado em modo bloqueante.
+   */
+  private final SocketChannel canal;
+  /**
+   * Motor TLS com o handshake concluído.
+   */
+  private final SSLEngine motor;
+  /**
+   * Bytes cifrados lidos do canal durante o handshake e ainda não processados pelo motor.
+   */
+  private final ByteBuffer recebidos;
+
+  /**
+   * Construtor.
+   *
+   * @param canal canal conectado
+   * @param motor motor TLS com o handshake concluído
+   * @param recebidos bytes cifrados ainda não processados, prontos para leitura
+   */
+  ConexaoTls(final SocketChannel canal, final SSLEngine motor, final ByteBuffer recebidos) {
+    super();
+    this.canal = canal;
+    this.motor = motor;
+    this.recebidos = recebidos;
+  }
+
+  /**
+   * Retorna o canal conectado.
+   *
+   * @return canal em modo bloqueante
+   */
+  public SocketChannel getCanal() {
+    return canal;
+  }
+
+  /**
+   * Retorna o motor TLS da conexão.
+   *
+   * @return motor com o handshake concluído
+   */
+  public SSLEngine getMotor() {
+    return motor;
+  }
+
+  /**
+   * Retorna a sessão TLS negociada na corrida.
+   *
+   * @return sessão TLS
+   */
+  public SSLSession getSessao() {
+    return motor.getSession();
+  }
+
+  /**
+   * Retorna os bytes cifrados que chegaram junto com o fim do handshake, como os tickets de sessão,
+   * e que devem ser passados ao {@code unwrap} antes da próxima leitura do canal.
+   *
+   * @return bytes ainda não processados, possivelmente vazio
+   */
+  public ByteBuffer getRecebidos() {
+    return recebidos;
+  }
+
+  /**
+   * Encerra a saída do motor, envia o alerta de encerramento (close_notify) e fecha o canal. O
+   * envio do alerta é feito por melhor esforço: uma falha, como o par já ter fechado a conexão, é
+   * registrada e o canal é fechado mesmo assim.
+   *
+   * @throws IOException caso ocorra erro ao fechar o canal
+   */
+  @Override
+  public void close() throws IOException {
+    motor.closeOutbound();
+    try {
+      final ByteBuffer alerta = ByteBuffer.allocate(motor.getSession().getPacketBufferSize());
+      while (!motor.isOutboundDone()
+          && motor.wrap(VAZIO, alerta).getStatus() == SSLEngineResult.Status.CLOSED) {
+        alerta.flip();
+        while (alerta.hasRemaining() && canal.write(alerta) > 0) {
+          // Escreve o alerta cifrado
+        }
+        alerta.clear();
+      }
+    } catch (IOException excep) {
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_105, excep);
+    } finally {
+      canal.close();
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exceção lançada quando nenhuma das tentativas de conexão aos endereços do servidor teve sucesso.
+ * Informa a falha de cada endereço tentado, como a conexão recusada ou o tempo expirado.
+ * 
+ * @author guilherme
+ * @version 0.1
+ */
+public class DestinoInalcancavelException extends HappyEyeBallsException {
+
+  /**
+   * Serial Version ID.
+   */
+  private static final long serialVersionUID = -3489125907746532160L;
+
+  /**
+   * Falha de cada endereço tentado, na ordem das tentativas.
+   */
+  private final Map<InetAddress, IOException> falhas;
+
+  /**
+   * Cria uma exceção com uma mensagem, a causa e a falha de cada endereço.
+   * 
+   * @param mensagem mensagem
+   * @param causa causa
+   * @param falhas falha de cada endereço tentado
+   */
+  public DestinoInalcancavelException(final String mensagem, final Throwable causa,
+      final Map<InetAddress, IOException> falhas) {
+    super(mensagem, causa);
+    this.falhas = Collections.unmodifiableMap(new LinkedHashMap<InetAddress, IOException>(falhas));
+  }
+
+  /**
+   * Cria uma exceção com uma mensagem e a causa.
+   * 
+   * @param mensagem mensagem
+   * @param causa causa
+   */
+  public DestinoInalcancavelException(final String mensagem, final Throwable causa) {
+    super(mensagem, causa);
+    falhas = Collections.emptyMap();
+  }
+
+  /**
+   * Cria uma exceção com uma mensagem.
+   * 
+   * @param mensagem mensagem
+   */
+  public DestinoInalcancavelException(final String mensagem) {
+    super(mensagem);
+    falhas = Collections.emptyMap();
+  }
+
+  /**
+   * Retorna a falha de cada endereço tentado: conexão recusada, destino inalcançável, tempo
+   * expirado ou handshake TLS recusado.
+   * 
+   * @return falhas por endereço, possivelmente vazio
+   */
+  public Map<InetAddress, IOException> getFalhas() {
+    return falhas;
+  }
+
+}
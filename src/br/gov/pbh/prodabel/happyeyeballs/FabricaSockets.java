@@ -0,0 +1,287 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import javax.net.SocketFactory;
+
+/**
+ * Fábrica de sockets que conecta pelo algoritmo Happy Eyeballs, para clientes que aceitam um
+ * {@link SocketFactory} mas não permitem trocar a resolução de nomes, como drivers JDBC, clientes
+ * HTTP, LDAP e AMQP. {@link #createSocket(String, int)} entrega o socket da conexão vencedora, já
+ * conectado: ao IP em cache, a uma conexão aquecida do pool ou pela corrida entre os endereços do
+ * nome.
+ *
+ * <p>Os sockets não conectados de {@link #createSocket()}, usados pelos clientes que chamam
+ * {@code connect(endereco, tempo)}, conectam ao IP vencedor da corrida quando o endereço não está
+ * resolvido, dentro do tempo informado pelo chamador. Os endereços já resolvidos, ainda que
+ * tragam o nome, e os métodos que recebem o IP ou um endereço local conectam diretamente, sem
+ * corrida, já que o endereço ou a origem foi escolhido pelo chamador, que pode estar percorrendo
+ * os endereços do nome por conta própria.</p>
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+public class FabricaSockets extends SocketFactory {
+
+  /**
+   * Instância que conduz as corridas.
+   */
+  private final HappyEyeballsImpl happyEyeballs;
+
+  /**
+   * Tempo máximo de espera pela conexão em milissegundos, ou zero.
+   */
+  private final int tempoConexao;
+
+  /**
+   * Construtor com a instância padrão e sem tempo máximo de espera, para os clientes que criam a
+   * fábrica pelo nome da classe.
+   */
+  public FabricaSockets() {
+    this((HappyEyeballsImpl) HappyEyeballs.getHappyEyeballsPadrao(), 0);
+  }
+
+  /**
+   * Construtor. Utilize {@link HappyEyeballs#fabricaSockets(int)}.
+   *
+   * @param happyEyeballs instância que conduz as corridas
+   * @param tempoConexao tempo máximo de espera pela conexão em milissegundos, ou zero
+   */
+  FabricaSockets(final HappyEyeballsImpl happyEyeballs, final int tempoConexao) {
+    super();
+    if (tempoConexao < 0) {
+      throw new IllegalArgumentException(Mensagens.HAPPYEYEBALLS_58);
+    }
+    this.happyEyeballs = happyEyeballs;
+    this.tempoConexao = tempoConexao;
+  }
+
+  /**
+   * Retorna a fábrica da instância padrão, para os clientes que a obtêm pelo método estático, como
+   * a propriedade {@code java.naming.ldap.factory.socket} do JNDI.
+   *
+   * @return fábrica da instância padrão
+   */
+  public static SocketFactory getDefault() {
+    return new FabricaSockets();
+  }
+
+  /**
+   * Cria um socket não conectado, que conecta pela corrida os endereços com nome.
+   *
+   * @return socket não conectado
+   */
+  @Override
+  public Socket createSocket() {
+    return new SocketCorrida();
+  }
+
+  /**
+   * Conecta ao servidor pela corrida e entrega o socket vencedor.
+   *
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @return socket conectado
+   * @throws UnknownHostException caso o nome não seja encontrado
+   * @throws SocketTimeoutException caso a conexão não seja estabelecida no tempo máximo
+   * @throws IOException caso nenhum endereço conecte
+   */
+  @Override
+  public Socket createSocket(final String nomeRede, final int porta) throws IOException {
+    return aguarda(happyEyeballs.conectarCanalAsync(nomeRede, porta), nomeRede, tempoConexao,
+        MelhorIp::fechaCanal).socket();
+  }
+
+  /**
+   * Conecta a partir do endereço local informado, sem corrida.
+   *
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @param enderecoLocal endereço local de origem
+   * @param portaLocal porta local de origem
+   * @return socket conectado
+   * @throws IOException caso a conexão falhe
+   */
+  @Override
+  public Socket createSocket(final String nomeRede, final int porta,
+      final InetAddress enderecoLocal, final int portaLocal) throws IOException {
+    return conectaDireto(new InetSocketAddress(nomeRede, porta),
+        new InetSocketAddress(enderecoLocal, portaLocal));
+  }
+
+  /**
+   * Conecta ao endereço já resolvido, sem corrida.
+   *
+   * @param endereco endereço do servidor
+   * @param porta porta do servidor
+   * @return socket conectado
+   * @throws IOException caso a conexão falhe
+   */
+  @Override
+  public Socket createSocket(final InetAddress endereco, final int porta) throws IOException {
+    return conectaDireto(new InetSocketAddress(endereco, porta), null);
+  }
+
+  /**
+   * Conecta ao endereço já resolvido a partir do endereço local informado, sem corrida.
+   *
+   * @param endereco endereço do servidor
+   * @param porta porta do servidor
+   * @param enderecoLocal endereço local de origem
+   * @param portaLocal porta local de origem
+   * @return socket conectado
+   * @throws IOException caso a conexão falhe
+   */
+  @Override
+  public Socket createSocket(final InetAddress endereco, final int porta,
+      final InetAddress enderecoLocal, final int portaLocal) throws IOException {
+    return conectaDireto(new InetSocketAddress(endereco, porta),
+        new InetSocketAddress(enderecoLocal, portaLocal));
+  }
+
+  /**
+   * Retorna o tempo máximo de espera pela conexão.
+   *
+   * @return tempo em milissegundos, ou zero
+   */
+  public int getTempoConexao() {
+    return tempoConexao;
+  }
+
+  /**
+   * Aguarda o resultado da corrida pelo tempo máximo. Um resultado que chega depois do tempo é
+   * descartado.
+   *
+   * @param corrida corrida iniciada
+   * @param nomeRede nome do servidor
+   * @param tempo tempo máximo de espera em milissegundos, ou zero
+   * @param descarte descarte do resultado que chega depois do tempo
+   * @return resultado da corrida
+   * @throws IOException caso a corrida não termine no tempo ou falhe
+   */
+  private static <T> T aguarda(final CompletableFuture<T> corrida, final String nomeRede,
+      final int tempo, final Consumer<? super T> descarte) throws IOException {
+    try {
+      return tempo == 0 ? corrida.get() : corrida.get(tempo, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException excep) {
+      corrida.thenAccept(descarte);
+      throw (IOException) new SocketTimeoutException(Mensagens.HAPPYEYEBALLS_20).initCause(excep);
+    } catch (InterruptedException excep) {
+      Thread.currentThread().interrupt();
+      corrida.thenAccept(descarte);
+      throw (IOException) new InterruptedIOException(Mensagens.HAPPYEYEBALLS_11).initCause(excep);
+    } catch (ExecutionException excep) {
+      throw converte(nomeRede, excep.getCause());
+    }
+  }
+
+  /**
+   * Converte a falha da corrida na exceção esperada pelos clientes de {@link SocketFactory}.
+   *
+   * @param nomeRede nome do servidor
+   * @param causa falha da corrida
+   * @return {@link UnknownHostException} caso o nome não exista, senão {@link ConnectException}
+   */
+  private static IOException converte(final String nomeRede, final Throwable causa) {
+    final Throwable original =
+        causa instanceof FalhaRecenteException ? causa.getCause() : causa;
+    final IOException convertida = original instanceof NomeNaoEncontradoException
+        ? new UnknownHostException(nomeRede) : new ConnectException(causa.getMessage());
+    convertida.initCause(causa);
+    return convertida;
+  }
+
+  /**
+   * Conecta diretamente ao endereço, respeitando o tempo máximo de espera.
+   *
+   * @param remoto endereço do servidor
+   * @param local endereço local de origem ou null
+   * @return socket conectado
+   * @throws IOException caso a conexão falhe
+   */
+  private Socket conectaDireto(final InetSocketAddress remoto, final InetSocketAddress local)
+      throws IOException {
+    final Socket socket = new Socket();
+    try {
+      if (local != null) {
+        socket.bind(local);
+      }
+      socket.connect(remoto, tempoConexao);
+    } catch (IOException excep) {
+      socket.close();
+      throw excep;
+    }
+    return socket;
+  }
+
+  /**
+   * Socket não conectado que, em {@link #connect(SocketAddress, int)}, conecta ao IP vencedor da
+   * corrida do nome: o IP em cache ou o de uma nova corrida. Caso o IP não conecte, ele é
+   * descartado do cache, para que a próxima conexão refaça a corrida.
+   */
+  private final class SocketCorrida extends Socket {
+
+    /**
+     * Construtor.
+     */
+    SocketCorrida() {
+      super();
+    }
+
+    /**
+     * Conecta pela corrida caso o endereço não esteja resolvido, ou diretamente caso já traga o IP.
+     * O tempo do chamador vale para a corrida e para a conexão juntas; sem ele, vale o tempo máximo
+     * da fábrica.
+     *
+     * @param endereco endereço do servidor
+     * @param tempo tempo máximo de espera em milissegundos, ou zero
+     * @throws IOException caso a conexão falhe
+     */
+    @Override
+    public void connect(final SocketAddress endereco, final int tempo) throws IOException {
+      if (tempo < 0) {
+        throw new IllegalArgumentException(Mensagens.HAPPYEYEBALLS_58);
+      }
+      if (endereco instanceof InetSocketAddress && ((InetSocketAddress) endereco).isUnresolved()) {
+        final InetSocketAddress remoto = (InetSocketAddress) endereco;
+        final String nomeRede = remoto.getHostString();
+        final int limite = tempo == 0 ? tempoConexao : tempo;
+        final long inicio = System.nanoTime();
+        final InetAddress vencedor = aguarda(
+            happyEyeballs.obterIpAsync(nomeRede, remoto.getPort()), nomeRede, limite,
+            enderecoIp -> { });
+        final long decorrido = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+        if (limite > 0 && decorrido >= limite) {
+          close();
+          throw new SocketTimeoutException(Mensagens.HAPPYEYEBALLS_20);
+        }
+        try {
+          // O IP leva o nome, consultado pelas camadas que verificam o servidor
+          super.connect(new InetSocketAddress(
+              InetAddress.getByAddress(nomeRede, vencedor.getAddress()), remoto.getPort()),
+              limite == 0 ? 0 : (int) (limite - decorrido));
+        } catch (IOException excep) {
+          if (happyEyeballs.isVigente(nomeRede, remoto.getPort(), vencedor)) {
+            happyEyeballs.expirar(nomeRede, remoto.getPort());
+          }
+          throw excep;
+        }
+      } else {
+        super.connect(endereco, tempo);
+      }
+    }
+  }
+}
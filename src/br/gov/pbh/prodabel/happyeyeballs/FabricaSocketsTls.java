@@ -0,0 +1,212 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import javax.net.SocketFactory;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Fábrica de sockets TLS que conecta pelo algoritmo Happy Eyeballs: o socket vencedor de
+ * {@link FabricaSockets} recebe a camada TLS da fábrica informada, com o nome do servidor para a
+ * indicação do nome (SNI) e a retomada da sessão. O handshake é feito pelo socket TLS, no primeiro
+ * uso ou em {@code startHandshake()}, como nas fábricas da JDK.
+ *
+ * <p>Os sockets TLS não conectados de {@link #createSocket()} conectam diretamente, sem corrida:
+ * a conexão deles é feita pela implementação TLS, que não pode ser substituída sem reimplementar
+ * o socket TLS inteiro. Os clientes que conectam o socket antes de criar a camada TLS, pela
+ * {@link FabricaSockets} e por {@link #createSocket(Socket, String, int, boolean)}, utilizam a
+ * corrida.</p>
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+public class FabricaSocketsTls extends SSLSocketFactory {
+
+  /**
+   * Fábrica que cria a camada TLS sobre o socket conectado.
+   */
+  private final SSLSocketFactory camadaTls;
+
+  /**
+   * Fábrica das conexões.
+   */
+  private final FabricaSockets fabrica;
+
+  /**
+   * Construtor com o contexto TLS padrão e a instância padrão, para os clientes que criam a fábrica
+   * pelo nome da classe.
+   */
+  public FabricaSocketsTls() {
+    this((SSLSocketFactory) SSLSocketFactory.getDefault(), new FabricaSockets());
+  }
+
+  /**
+   * Construtor.
+   *
+   * @param camadaTls fábrica que cria a camada TLS, como a de um {@code SSLContext}
+   * @param fabrica fábrica das conexões, obtida em {@link HappyEyeballs#fabricaSockets(int)}
+   */
+  public FabricaSocketsTls(final SSLSocketFactory camadaTls, final FabricaSockets fabrica) {
+    super();
+    if (camadaTls == null || fabrica == null) {
+      throw new IllegalArgumentException(Mensagens.HAPPYEYEBALLS_9);
+    }
+    this.camadaTls = camadaTls;
+    this.fabrica = fabrica;
+  }
+
+  /**
+   * Retorna a fábrica da instância padrão, para os clientes que a obtêm pelo método estático, como
+   * a propriedade {@code java.naming.ldap.factory.socket} do JNDI.
+   *
+   * @return fábrica da instância padrão
+   */
+  public static SocketFactory getDefault() {
+    return new FabricaSocketsTls();
+  }
+
+  /**
+   * Retorna as cifras habilitadas por padrão na camada TLS.
+   *
+   * @return nomes das cifras
+   */
+  @Override
+  public String[] getDefaultCipherSuites() {
+    return camadaTls.getDefaultCipherSuites();
+  }
+
+  /**
+   * Retorna as cifras suportadas pela camada TLS.
+   *
+   * @return nomes das cifras
+   */
+  @Override
+  public String[] getSupportedCipherSuites() {
+    return camadaTls.getSupportedCipherSuites();
+  }
+
+  /**
+   * Cria um socket TLS não conectado, que conecta diretamente ao endereço informado pelo chamador,
+   * sem corrida.
+   *
+   * @return socket TLS não conectado
+   * @throws IOException caso a camada TLS não possa ser criada
+   */
+  @Override
+  public Socket createSocket() throws IOException {
+    return camadaTls.createSocket();
+  }
+
+  /**
+   * Cria a camada TLS sobre um socket já conectado.
+   *
+   * @param socket socket conectado
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @param fecharSocket fecha o socket junto com a camada TLS
+   * @return socket TLS
+   * @throws IOException caso a camada TLS não possa ser criada
+   */
+  @Override
+  public Socket createSocket(final Socket socket, final String nomeRede, final int porta,
+      final boolean fecharSocket) throws IOException {
+    return camadaTls.createSocket(socket, nomeRede, porta, fecharSocket);
+  }
+
+  /**
+   * Conecta ao servidor pela corrida e cria a camada TLS sobre o socket vencedor.
+   *
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @return socket TLS conectado
+   * @throws IOException caso a conexão falhe
+   */
+  @Override
+  public Socket createSocket(final String nomeRede, final int porta) throws IOException {
+    return camada(fabrica.createSocket(nomeRede, porta), nomeRede, porta);
+  }
+
+  /**
+   * Conecta a partir do endereço local informado, sem corrida, e cria a camada TLS.
+   *
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @param enderecoLocal endereço local de origem
+   * @param portaLocal porta local de origem
+   * @return socket TLS conectado
+   * @throws IOException caso a conexão falhe
+   */
+  @Override
+  public Socket createSocket(final String nomeRede, final int porta,
+      final InetAddress enderecoLocal, final int portaLocal) throws IOException {
+    return camada(fabrica.createSocket(nomeRede, porta, enderecoLocal, portaLocal), nomeRede,
+        porta);
+  }
+
+  /**
+   * Conecta ao endereço já resolvido, sem corrida, e cria a camada TLS com o nome do endereço, ou
+   * com o IP caso o endereço não traga um nome.
+   *
+   * @param endereco endereço do servidor
+   * @param porta porta do servidor
+   * @return socket TLS conectado
+   * @throws IOException caso a conexão falhe
+   */
+  @Override
+  public Socket createSocket(final InetAddress endereco, final int porta) throws IOException {
+    return camada(fabrica.createSocket(endereco, porta), nomeServidor(endereco), porta);
+  }
+
+  /**
+   * Conecta ao endereço já resolvido a partir do endereço local informado, sem corrida, e cria a
+   * camada TLS com o nome do endereço, ou com o IP caso o endereço não traga um nome.
+   *
+   * @param endereco endereço do servidor
+   * @param porta porta do servidor
+   * @param enderecoLocal endereço local de origem
+   * @param portaLocal porta local de origem
+   * @return socket TLS conectado
+   * @throws IOException caso a conexão falhe
+   */
+  @Override
+  public Socket createSocket(final InetAddress endereco, final int porta,
+      final InetAddress enderecoLocal, final int portaLocal) throws IOException {
+    return camada(fabrica.createSocket(endereco, porta, enderecoLocal, portaLocal),
+        nomeServidor(endereco), porta);
+  }
+
+  /**
+   * Retorna o nome com que o endereço foi criado, para a indicação do nome (SNI) e a verificação do
+   * certificado, sem a consulta reversa de {@link InetAddress#getHostName()}. O nome é lido de
+   * {@link InetAddress#toString()}, no formato nome/IP, que não consulta o DNS.
+   *
+   * @param endereco endereço do servidor
+   * @return nome do endereço ou, caso ele não traga um nome, o IP
+   */
+  private static String nomeServidor(final InetAddress endereco) {
+    final String texto = endereco.toString();
+    final int barra = texto.indexOf('/');
+    return barra > 0 ? texto.substring(0, barra) : endereco.getHostAddress();
+  }
+
+  /**
+   * Cria a camada TLS sobre o socket conectado, fechando-o caso a camada não possa ser criada.
+   *
+   * @param socket socket conectado
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @return socket TLS
+   * @throws IOException caso a camada TLS não possa ser criada
+   */
+  private Socket camada(final Socket socket, final String nomeRede, final int porta)
+      throws IOException {
+    try {
+      return camadaTls.createSocket(socket, nomeRede, porta, true);
+    } catch (IOException excep) {
+      socket.close();
+      throw excep;
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+/**
+ * Exceção lançada sem nova tentativa enquanto a falha anterior do destino está no cache negativo.
+ * A causa é a exceção da falha original, {@link NomeNaoEncontradoException} ou
+ * {@link DestinoInalcancavelException}.
+ * 
+ * @author guilherme
+ * @version 0.1
+ */
+public class FalhaRecenteException extends HappyEyeBallsException {
+
+  /**
+   * Serial Version ID.
+   */
+  private static final long serialVersionUID = 7731862450193274415L;
+
+  /**
+   * Tempo em milissegundos até que uma nova tentativa seja permitida.
+   */
+  private final long tempoRestante;
+
+  /**
+   * Cria uma exceção com uma mensagem, a causa e o tempo restante.
+   * 
+   * @param mensagem mensagem
+   * @param causa falha original do destino
+   * @param tempoRestante tempo em milissegundos até que uma nova tentativa seja permitida
+   */
+  public FalhaRecenteException(final String mensagem, final Throwable causa,
+      final long tempoRestante) {
+    super(mensagem, causa);
+    this.tempoRestante = tempoRestante;
+  }
+
+  /**
+   * Retorna o tempo até que uma nova tentativa seja permitida.
+   * 
+   * @return tempo em milissegundos
+   */
+  public long getTempoRestante() {
+    return tempoRestante;
+  }
+
+}
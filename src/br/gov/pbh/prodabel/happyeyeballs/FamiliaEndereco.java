@@ -0,0 +1,33 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+
+/**
+ * Família de endereços IP.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+public enum FamiliaEndereco {
+
+  /**
+   * Endereços IPV6, consultados pelo registro DNS AAAA.
+   */
+  IPV6,
+
+  /**
+   * Endereços IPV4, consultados pelo registro DNS A.
+   */
+  IPV4;
+
+  /**
+   * Retorna a família de um endereço.
+   *
+   * @param endereco endereço IP
+   * @return família do endereço
+   */
+  public static FamiliaEndereco de(final InetAddress endereco) {
+    return endereco instanceof Inet6Address ? IPV6 : IPV4;
+  }
+}
@@ -1,8 +1,13 @@
 package br.gov.pbh.prodabel.happyeyeballs;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
-public interface HappyEyeballs {
+public interface HappyEyeballs extends AutoCloseable {
 
   /**
    * Obtém o melhor IP para conexão.
@@ -14,6 +19,147 @@ public interface HappyEyeballs {
    */
   InetAddress obterIp(final String nomeRede, final int porta) throws HappyEyeBallsException;
 
+  /**
+   * Obtém o melhor IP para conexão sem bloquear a thread chamadora. O futuro é completado pela
+   * própria corrida de conexões, ou já retorna completado caso o IP esteja no cache.
+   * 
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @return futuro com o melhor IP para conexão, que falha com {@link HappyEyeBallsException}
+   *         caso ocorra algum problema.
+   */
+  CompletableFuture<InetAddress> obterIpAsync(final String nomeRede, final int porta);
+
+  /**
+   * Obtém a melhor rota para conexão: o IP de destino e, com a corrida de origens ativa
+   * ({@link HappyEyeballsBuilder#corridaOrigens(boolean)}), o endereço local de onde ele conectou
+   * mais rápido. Associe o socket à origem para conectar pelo mesmo enlace.
+   * 
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @return a melhor rota para conexão
+   * @throws HappyEyeBallsException caso ocorra algum problema.
+   */
+  Rota obterRota(final String nomeRede, final int porta) throws HappyEyeBallsException;
+
+  /**
+   * Obtém a melhor rota para conexão sem bloquear a thread chamadora.
+   * 
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @return futuro com a melhor rota para conexão, que falha com {@link HappyEyeBallsException}
+   *         caso ocorra algum problema.
+   */
+  CompletableFuture<Rota> obterRotaAsync(final String nomeRede, final int porta);
+
+  /**
+   * Obtém todos os endereços do servidor que conectaram, do mais rápido para o mais lento, com os
+   * seus tempos de conexão. A classificação vem do cache quando a instância classifica as corridas
+   * ({@link HappyEyeballsBuilder#politicaSelecao(PoliticaSelecao)}); senão, uma corrida que tenta
+   * todos os endereços é iniciada e o mais rápido é armazenado no cache.
+   * 
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @return endereços classificados, nunca vazio
+   * @throws HappyEyeBallsException caso nenhum endereço conecte ou ocorra algum problema.
+   */
+  List<IpClassificado> obterClassificacao(final String nomeRede, final int porta)
+      throws HappyEyeBallsException;
+
+  /**
+   * Obtém os endereços classificados sem bloquear a thread chamadora.
+   * 
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @return futuro com os endereços classificados, que falha com {@link HappyEyeBallsException}
+   *         caso ocorra algum problema.
+   */
+  CompletableFuture<List<IpClassificado>> obterClassificacaoAsync(final String nomeRede,
+      final int porta);
+
+  /**
+   * Conecta ao servidor pelo melhor IP e entrega o canal que venceu a corrida, já conectado. As
+   * demais tentativas são abortadas e o IP vencedor é armazenado no cache, como em
+   * {@link #obterIp(String, int)}.
+   * 
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @return canal conectado, em modo bloqueante, que deve ser fechado pelo chamador
+   * @throws HappyEyeBallsException caso nenhuma conexão seja estabelecida.
+   */
+  SocketChannel conectar(final String nomeRede, final int porta) throws HappyEyeBallsException;
+
+  /**
+   * Retorna uma fábrica de sockets que conecta pelas corridas desta instância, para clientes que
+   * aceitam um {@link javax.net.SocketFactory}, como drivers JDBC, clientes HTTP, LDAP e AMQP.
+   * 
+   * @param tempoConexao tempo máximo de espera pela conexão em milissegundos, ou zero para
+   *        aguardar a expiração da corrida
+   * @return fábrica de sockets
+   */
+  FabricaSockets fabricaSockets(final int tempoConexao);
+
+  /**
+   * Conecta ao servidor pela corrida por handshake e entrega a conexão TLS que concluiu o handshake
+   * primeiro, sem refazê-lo. O nome do servidor é verificado no certificado. Utiliza o contexto de
+   * {@link HappyEyeballsBuilder#corridaTls(javax.net.ssl.SSLContext)} ou, na falta, o contexto TLS
+   * padrão.
+   * 
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @return conexão TLS, que deve ser fechada pelo chamador
+   * @throws HappyEyeBallsException caso nenhum handshake seja concluído.
+   */
+  ConexaoTls conectarTls(final String nomeRede, final int porta) throws HappyEyeBallsException;
+
+  /**
+   * Obtém o melhor IP de vários destinos de uma só vez, aguardando todos. Os nomes são resolvidos
+   * em paralelo e as corridas de todos os destinos são conduzidas juntas pelo mesmo reator, de
+   * forma que o cache fica preenchido ao final. A falha de um destino não interrompe os demais.
+   * 
+   * @param destinos nomes e portas dos servidores, criados com
+   *        {@link InetSocketAddress#createUnresolved(String, int)}
+   * @return IPs vencedores e falhas por destino
+   * @throws HappyEyeBallsException caso a espera seja interrompida.
+   */
+  ResultadoLote obterIps(final Collection<InetSocketAddress> destinos)
+      throws HappyEyeBallsException;
+
+  /**
+   * Pré-aquece o cache com o melhor IP de vários destinos sem bloquear a thread chamadora, por
+   * exemplo na inicialização do serviço, antes de receber requisições.
+   * 
+   * @param destinos nomes e portas dos servidores
+   * @return futuro completado quando todos os destinos terminarem, que não falha com as falhas
+   *         individuais dos destinos.
+   */
+  CompletableFuture<ResultadoLote> preaquecer(final Collection<InetSocketAddress> destinos);
+
+  /**
+   * Retorna as métricas da instância: acertos do cache, corridas, expirações, vitórias por família
+   * e histogramas do tempo de conexão.
+   * 
+   * @return métricas da instância
+   */
+  Metricas getMetricas();
+
+  /**
+   * Encerra a instância, terminando o seu pool de threads próprio e descartando o cache. Depois de
+   * encerrada, as chamadas falham com {@link HappyEyeBallsException}.
+   */
+  @Override
+  void close();
+
+  /**
+   * Retorna um construtor de instâncias independentes, cada uma com o seu executor, cache, tempos
+   * de conexão e política da corrida.
+   * 
+   * @return novo construtor com os valores das propriedades de sistema.
+   */
+  static HappyEyeballsBuilder builder() {
+    return new HappyEyeballsBuilder();
+  }
+
   /**
    * Obtém e retorna a implementação do algoritmo Happy EyeBalls padrão.
    * 
@@ -24,8 +170,25 @@ public interface HappyEyeballs {
   }
 
   /**
-   * Termina o pool de threads que executa as consultas de conexão. Executar esse comando no final
-   * da execução da sua aplicação.
+   * Retorna uma implementação do algoritmo Happy EyeBalls que resolve os nomes com o resolvedor
+   * informado, como o {@link ResolvedorNomes#dns(java.net.InetSocketAddress) resolvedor DNS} que
+   * consulta os registros AAAA e A em paralelo.
+   *
+   * @param resolvedor resolvedor dos nomes dos servidores
+   * @return implementação do algoritmo Happy EyeBalls com o resolvedor informado.
+   */
+  static HappyEyeballs getHappyEyeballs(final ResolvedorNomes resolvedor) {
+    if (resolvedor == null) {
+      throw new IllegalArgumentException(Mensagens.HAPPYEYEBALLS_9);
+    }
+    return builder().resolvedor(resolvedor).construir();
+  }
+
+  /**
+   * Encerra a instância padrão e, caso nenhuma outra instância permaneça aberta, termina o reator
+   * que executa as consultas de conexão. As instâncias criadas pelo {@link #builder()} não são
+   * afetadas e devem ser encerradas por {@code close()}. Executar esse comando no final da
+   * execução da sua aplicação.
    */
   static void terminarPoolThread() {
     HappyEyeballsImpl.terminarPoolThread();
@@ -0,0 +1,826 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * Construtor de instâncias independentes do algoritmo Happy Eyeballs. Cada instância tem o seu
+ * próprio executor, cache, tempos de conexão e política da corrida. Os valores não informados são
+ * lidos das propriedades de sistema, como na instância padrão.
+ *
+ * <pre>
+ * HappyEyeballs internet = HappyEyeballs.builder().tempoExpiracao(2000L).tamanhoPool(8)
+ *     .tamanhoCache(10000).tempoCache(60000L).construir();
+ * </pre>
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+public final class HappyEyeballsBuilder {
+
+  /**
+   * Valor padrão do tempo de expiração das conexões em milissegundos.
+   */
+  static final long TEMPO_EXPIRACAO_PADRAO = 300L;
+
+  /**
+   * Resolvedor dos nomes dos servidores.
+   */
+  private ResolvedorNomes resolvedor;
+  /**
+   * Executor do chamador para as consultas bloqueantes do resolvedor da JDK.
+   */
+  private ExecutorService executor;
+  /**
+   * Quantidade de threads do pool próprio, ou zero para um pool que cresce sob demanda.
+   */
+  private int tamanhoPool;
+  /**
+   * Método da JDK que cria o executor de threads virtuais, quando escolhido.
+   */
+  private Method criadorVirtual;
+  /**
+   * Tempo de expiração das conexões em milissegundos.
+   */
+  private long tempoExpiracao;
+  /**
+   * Intervalo entre o início de duas tentativas de conexão em milissegundos.
+   */
+  private long tempoEntreTentativas;
+  /**
+   * Tempo de espera pelos endereços IPV6 após a chegada dos IPV4 em milissegundos.
+   */
+  private long tempoResolucao;
+  /**
+   * Tempo em milissegundos que uma conexão da outra família aguarda pela família preferida.
+   */
+  private long tempoPreferencia;
+  /**
+   * Indica se as corridas disputam também os endereços locais de origem.
+   */
+  private boolean corridaOrigens;
+  /**
+   * Limites do pool de conexões aquecidas dos destinos sem limites próprios.
+   */
+  private PoolConexoes.Limites limitesPool;
+  /**
+   * Limites próprios do pool de conexões aquecidas por nome e porta.
+   */
+  private final Map<String, PoolConexoes.Limites> limitesPoolDestinos =
+      new HashMap<String, PoolConexoes.Limites>();
+  /**
+   * Intervalo em milissegundos entre os ciclos da sondagem dos destinos quentes, ou zero para
+   * desativar.
+   */
+  private long intervaloSondagem;
+  /**
+   * Quantidade máxima de corridas da sondagem em andamento a cada ciclo.
+   */
+  private int orcamentoSondagem;
+  /**
+   * Política que escolhe o IP entregue entre os endereços classificados.
+   */
+  private PoliticaSelecao politicaSelecao = PoliticaSelecao.maisRapido();
+  /**
+   * Contexto TLS das corridas por handshake, ou null para as corridas por conexão.
+   */
+  private SSLContext contextoTls;
+  /**
+   * Arquivo de configuração do cache.
+   */
+  private URL configuracaoCache;
+  /**
+   * Quantidade máxima de entradas do cache, ou zero para utilizar o arquivo de configuração.
+   */
+  private long tamanhoCache;
+  /**
+   * Tempo de vida das entradas do cache em milissegundos, ou zero para utilizar o arquivo de
+   * configuração.
+   */
+  private long tempoCache;
+  /**
+   * Indica se o último IP vencedor é servido após a expiração do cache.
+   */
+  private boolean servirExpirado;
+  /**
+   * Tempo máximo em milissegundos em que um IP expirado ainda pode ser servido.
+   */
+  private long tempoMaximoExpirado;
+  /**
+   * Percentual do tempo de vida a partir do qual um acerto refaz a corrida em segundo plano.
+   */
+  private long limiarRenovacao;
+  /**
+   * Tempo em milissegundos em que um nome inexistente fica no cache negativo.
+   */
+  private long tempoNegativoNome;
+  /**
+   * Tempo em milissegundos em que um destino inalcançável fica no cache negativo.
+   */
+  private long tempoNegativoConexao;
+  /**
+   * Tempo máximo em milissegundos no cache negativo.
+   */
+  private long tempoNegativoMaximo;
+  /**
+   * Registro externo que recebe os eventos das métricas.
+   */
+  private RegistroMetricas registroMetricas = new RegistroMetricas() {};
+  /**
+   * Nome com que as métricas são publicadas no JMX, ou null para não publicar.
+   */
+  private String nomeJmx;
+
+  /**
+   * Construtor com os valores das propriedades de sistema. Utilize {@link HappyEyeballs#builder()}.
+   */
+  HappyEyeballsBuilder() {
+    super();
+    tempoExpiracao = Long.getLong(Mensagens.HAPPYEYEBALLS_57, TEMPO_EXPIRACAO_PADRAO);
+    tempoEntreTentativas =
+        Long.getLong(Mensagens.HAPPYEYEBALLS_32, MelhorIp.TEMPO_ENTRE_TENTATIVAS_PADRAO);
+    tempoResolucao = Long.getLong(Mensagens.HAPPYEYEBALLS_34, MelhorIp.TEMPO_RESOLUCAO_PADRAO);
+    tempoPreferencia = Long.getLong(Mensagens.HAPPYEYEBALLS_96, 0L);
+    corridaOrigens = Boolean.getBoolean(Mensagens.HAPPYEYEBALLS_73);
+    limitesPool = new PoolConexoes.Limites(Integer.getInteger(Mensagens.HAPPYEYEBALLS_77, 0),
+        Long.getLong(Mensagens.HAPPYEYEBALLS_78, 30000L));
+    intervaloSondagem = Long.getLong(Mensagens.HAPPYEYEBALLS_83, 0L);
+    orcamentoSondagem = Integer.getInteger(Mensagens.HAPPYEYEBALLS_84, 8);
+    servirExpirado = Boolean.getBoolean(Mensagens.HAPPYEYEBALLS_41);
+    tempoMaximoExpirado = Long.getLong(Mensagens.HAPPYEYEBALLS_42, 300000L);
+    limiarRenovacao = Long.getLong(Mensagens.HAPPYEYEBALLS_43, 0L);
+    tempoNegativoNome = Long.getLong(Mensagens.HAPPYEYEBALLS_47, 5000L);
+    tempoNegativoConexao = Long.getLong(Mensagens.HAPPYEYEBALLS_48, 1000L);
+    tempoNegativoMaximo = Long.getLong(Mensagens.HAPPYEYEBALLS_49, 60000L);
+  }
+
+  /**
+   * Define o resolvedor dos nomes. Sem resolvedor, os nomes são resolvidos pela JDK no executor da
+   * instância.
+   *
+   * @param resolvedor resolvedor dos nomes dos servidores
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder resolvedor(final ResolvedorNomes resolvedor) {
+    this.resolvedor = naoNulo(resolvedor);
+    return this;
+  }
+
+  /**
+   * Define o executor das consultas bloqueantes do resolvedor da JDK. O executor pertence ao
+   * chamador e não é terminado no encerramento da instância.
+   *
+   * @param executor executor das consultas
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder executor(final ExecutorService executor) {
+    this.executor = naoNulo(executor);
+    tamanhoPool = 0;
+    criadorVirtual = null;
+    return this;
+  }
+
+  /**
+   * Utiliza um pool próprio de cada instância com a quantidade fixa de threads informada.
+   *
+   * @param threads quantidade de threads do pool
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder tamanhoPool(final int threads) {
+    tamanhoPool = (int) positivo(threads);
+    executor = null;
+    criadorVirtual = null;
+    return this;
+  }
+
+  /**
+   * Utiliza uma thread virtual por consulta, disponível a partir da JDK 21.
+   *
+   * @return este construtor
+   * @throws HappyEyeBallsException caso a JVM não suporte threads virtuais
+   */
+  public HappyEyeballsBuilder threadsVirtuais() throws HappyEyeBallsException {
+    try {
+      criadorVirtual = Executors.class.getMethod(Mensagens.HAPPYEYEBALLS_56);
+    } catch (NoSuchMethodException excep) {
+      throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_54, excep);
+    }
+    executor = null;
+    tamanhoPool = 0;
+    return this;
+  }
+
+  /**
+   * Define o tempo de expiração das conexões (propriedade {@code happyeyeballs.tempoExpiracao}).
+   *
+   * @param milissegundos tempo de expiração
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder tempoExpiracao(final long milissegundos) {
+    tempoExpiracao = positivo(milissegundos);
+    return this;
+  }
+
+  /**
+   * Define o intervalo entre o início de duas tentativas de conexão, limitado aos valores mínimo e
+   * máximo da RFC 8305.
+   *
+   * @param milissegundos intervalo entre tentativas
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder tempoEntreTentativas(final long milissegundos) {
+    tempoEntreTentativas = positivo(milissegundos);
+    return this;
+  }
+
+  /**
+   * Define o tempo de espera pelos endereços IPV6 após a chegada dos IPV4.
+   *
+   * @param milissegundos tempo de espera, ou zero para não esperar
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder tempoResolucao(final long milissegundos) {
+    tempoResolucao = naoNegativo(milissegundos);
+    return this;
+  }
+
+  /**
+   * Define a janela de preferência: quando a primeira conexão da corrida é da família não
+   * preferida, ela aguarda esse tempo por uma conexão da preferida ainda em andamento, que vence
+   * caso chegue. Sem tentativas da preferida em andamento, a primeira conexão vence imediatamente.
+   *
+   * @param milissegundos duração da janela, ou zero para não aguardar
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder tempoPreferencia(final long milissegundos) {
+    tempoPreferencia = naoNegativo(milissegundos);
+    return this;
+  }
+
+  /**
+   * Define se as corridas disputam os pares de endereço local e endereço de destino. Num host com
+   * vários enlaces, cada destino é tentado a partir de cada endereço local que o alcança e a origem
+   * vencedora fica no cache, informada por {@link HappyEyeballs#obterRota(String, int)}.
+   *
+   * @param ativa ativa a corrida de origens
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder corridaOrigens(final boolean ativa) {
+    corridaOrigens = ativa;
+    return this;
+  }
+
+  /**
+   * Define o pool de conexões aquecidas usado por {@link HappyEyeballs#conectar(String, int)}: cada
+   * destino conectado passa a manter as conexões informadas, repostas em segundo plano e
+   * descartadas após o tempo ocioso.
+   *
+   * @param conexoes quantidade de conexões aquecidas por destino, zero para não manter
+   * @param tempoOcioso tempo ocioso máximo de uma conexão em milissegundos
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder poolConexoes(final int conexoes, final long tempoOcioso) {
+    limitesPool =
+        new PoolConexoes.Limites((int) naoNegativo(conexoes), positivo(tempoOcioso));
+    return this;
+  }
+
+  /**
+   * Define o pool de conexões aquecidas de um destino, com precedência sobre
+   * {@link #poolConexoes(int, long)}.
+   *
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @param conexoes quantidade de conexões aquecidas, zero para não manter
+   * @param tempoOcioso tempo ocioso máximo de uma conexão em milissegundos
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder poolConexoes(final String nomeRede, final int porta,
+      final int conexoes, final long tempoOcioso) {
+    limitesPoolDestinos.put(HappyEyeballsImpl.chave(naoNulo(nomeRede), (int) positivo(porta)),
+        new PoolConexoes.Limites((int) naoNegativo(conexoes), positivo(tempoOcioso)));
+    return this;
+  }
+
+  /**
+   * Define a política que escolhe o IP entregue a cada chamada. Com uma política diferente de
+   * {@link PoliticaSelecao#maisRapido()}, as corridas tentam todos os endereços e o cache guarda a
+   * classificação, sobre a qual a política escolhe no acerto, distribuindo as chamadas entre os
+   * endereços do nome.
+   *
+   * @param politica política de seleção
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder politicaSelecao(final PoliticaSelecao politica) {
+    politicaSelecao = naoNulo(politica);
+    return this;
+  }
+
+  /**
+   * Ativa a corrida por handshake: os canais conectados conduzem um handshake TLS não bloqueante e
+   * o vencedor é o primeiro a concluí-lo, e não o primeiro a conectar. O tempo até o fim do
+   * handshake inclui o processamento do servidor TLS, que a conexão TCP sozinha não mede. O mesmo
+   * contexto é utilizado por {@link HappyEyeballs#conectarTls(String, int)}.
+   *
+   * @param contexto contexto TLS com os certificados confiáveis
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder corridaTls(final SSLContext contexto) {
+    contextoTls = naoNulo(contexto);
+    return this;
+  }
+
+  /**
+   * Define a sondagem em segundo plano dos destinos quentes: a cada intervalo, os destinos do cache
+   * consultados desde o ciclo anterior têm a corrida refeita fora do caminho das requisições, e o
+   * vencedor substitui o IP em cache. Os destinos mais próximos da expiração são sondados primeiro.
+   *
+   * @param intervalo intervalo entre os ciclos em milissegundos, zero para desativar
+   * @param orcamento quantidade máxima de corridas da sondagem em andamento
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder sondagem(final long intervalo, final int orcamento) {
+    intervaloSondagem = naoNegativo(intervalo);
+    orcamentoSondagem = (int) positivo(orcamento);
+    return this;
+  }
+
+  /**
+   * Define o arquivo de configuração do ehcache, que deve conter o cache {@code happyeyeballs}.
+   *
+   * @param configuracao endereço do arquivo
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder configuracaoCache(final URL configuracao) {
+    configuracaoCache = naoNulo(configuracao);
+    return this;
+  }
+
+  /**
+   * Define a quantidade máxima de entradas do cache, que passa a ser configurado sem arquivo.
+   *
+   * @param entradas quantidade máxima de entradas
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder tamanhoCache(final long entradas) {
+    tamanhoCache = positivo(entradas);
+    return this;
+  }
+
+  /**
+   * Define o tempo de vida das entradas do cache, que passa a ser configurado sem arquivo.
+   *
+   * @param milissegundos tempo de vida
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder tempoCache(final long milissegundos) {
+    tempoCache = positivo(milissegundos);
+    return this;
+  }
+
+  /**
+   * Define se o último IP vencedor é servido após a expiração do cache enquanto a corrida é refeita
+   * em segundo plano.
+   *
+   * @param servir serve o IP expirado
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder servirExpirado(final boolean servir) {
+    servirExpirado = servir;
+    return this;
+  }
+
+  /**
+   * Define o tempo máximo após a expiração em que um IP ainda pode ser servido.
+   *
+   * @param milissegundos tempo máximo
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder tempoMaximoExpirado(final long milissegundos) {
+    tempoMaximoExpirado = naoNegativo(milissegundos);
+    return this;
+  }
+
+  /**
+   * Define o percentual do tempo de vida da entrada a partir do qual um acerto no cache refaz a
+   * corrida em segundo plano.
+   *
+   * @param percentual percentual do tempo de vida, ou zero para desativar
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder limiarRenovacao(final long percentual) {
+    if (percentual > 100L) {
+      throw new IllegalArgumentException(Mensagens.HAPPYEYEBALLS_58);
+    }
+    limiarRenovacao = naoNegativo(percentual);
+    return this;
+  }
+
+  /**
+   * Define o tempo em que um nome inexistente fica no cache negativo.
+   *
+   * @param milissegundos tempo no cache negativo, ou zero para não armazenar
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder tempoNegativoNome(final long milissegundos) {
+    tempoNegativoNome = naoNegativo(milissegundos);
+    return this;
+  }
+
+  /**
+   * Define o tempo em que um destino cujas conexões falharam fica no cache negativo.
+   *
+   * @param milissegundos tempo no cache negativo, ou zero para não armazenar
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder tempoNegativoConexao(final long milissegundos) {
+    tempoNegativoConexao = naoNegativo(milissegundos);
+    return this;
+  }
+
+  /**
+   * Define o tempo máximo no cache negativo, limite do recuo exponencial das falhas repetidas.
+   *
+   * @param milissegundos tempo máximo
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder tempoNegativoMaximo(final long milissegundos) {
+    tempoNegativoMaximo = naoNegativo(milissegundos);
+    return this;
+  }
+
+  /**
+   * Define o registro externo que recebe os eventos das métricas, por exemplo para encaminhá-los a
+   * um sistema de monitoração.
+   *
+   * @param registro registro das métricas
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder registroMetricas(final RegistroMetricas registro) {
+    registroMetricas = naoNulo(registro);
+    return this;
+  }
+
+  /**
+   * Publica as métricas da instância no JMX com o nome informado, no domínio
+   * {@code br.gov.pbh.prodabel.happyeyeballs}.
+   *
+   * @param nome nome da instância no JMX
+   * @return este construtor
+   */
+  public HappyEyeballsBuilder nomeJmx(final String nome) {
+    nomeJmx = naoNulo(nome);
+    return this;
+  }
+
+  /**
+   * Cria uma nova instância independente, que deve ser encerrada com
+   * {@link HappyEyeballs#close()} quando não for mais utilizada.
+   *
+   * @return nova instância do algoritmo Happy Eyeballs
+   */
+  public HappyEyeballs construir() {
+    return new HappyEyeballsImpl(this);
+  }
+
+  /**
+   * Valida um valor obrigatório.
+   *
+   * @param valor valor informado
+   * @return o próprio valor
+   */
+  private static <T> T naoNulo(final T valor) {
+    if (valor == null) {
+      throw new IllegalArgumentException(Mensagens.HAPPYEYEBALLS_58);
+    }
+    return valor;
+  }
+
+  /**
+   * Valida um valor maior que zero.
+   *
+   * @param valor valor informado
+   * @return o próprio valor
+   */
+  private static long positivo(final long valor) {
+    if (valor <= 0L) {
+      throw new IllegalArgumentException(Mensagens.HAPPYEYEBALLS_58);
+    }
+    return valor;
+  }
+
+  /**
+   * Valida um valor maior ou igual a zero.
+   *
+   * @param valor valor informado
+   * @return o próprio valor
+   */
+  private static long naoNegativo(final long valor) {
+    if (valor < 0L) {
+      throw new IllegalArgumentException(Mensagens.HAPPYEYEBALLS_58);
+    }
+    return valor;
+  }
+
+  /**
+   * Retorna o resolvedor dos nomes dos servidores.
+   *
+   * @return resolvedor informado, ou null para o resolvedor da JDK
+   */
+  ResolvedorNomes getResolvedor() {
+    return resolvedor;
+  }
+
+  /**
+   * Retorna o executor do chamador para as consultas bloqueantes do resolvedor da JDK.
+   *
+   * @return executor informado, ou null para o pool próprio
+   */
+  ExecutorService getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Cria o executor próprio de uma instância, conforme o tipo de pool escolhido.
+   *
+   * @return novo executor
+   */
+  ExecutorService criaExecutor() {
+    final ExecutorService novo;
+    if (criadorVirtual != null) {
+      try {
+        novo = (ExecutorService) criadorVirtual.invoke(null);
+      } catch (IllegalAccessException | InvocationTargetException excep) {
+        throw new IllegalStateException(Mensagens.HAPPYEYEBALLS_54, excep);
+      }
+    } else if (tamanhoPool > 0) {
+      novo = Executors.newFixedThreadPool(tamanhoPool, new Fabrica(Mensagens.HAPPYEYEBALLS_53));
+    } else {
+      novo = Executors.newCachedThreadPool(new Fabrica(Mensagens.HAPPYEYEBALLS_53));
+    }
+    return novo;
+  }
+
+  /**
+   * Retorna o tempo de expiração das conexões.
+   *
+   * @return tempo em milissegundos
+   */
+  long getTempoExpiracao() {
+    return tempoExpiracao;
+  }
+
+  /**
+   * Retorna o intervalo entre o início de duas tentativas de conexão.
+   *
+   * @return intervalo em milissegundos
+   */
+  long getTempoEntreTentativas() {
+    return tempoEntreTentativas;
+  }
+
+  /**
+   * Retorna o tempo de espera pelos endereços IPV6 após a chegada dos IPV4.
+   *
+   * @return tempo em milissegundos
+   */
+  long getTempoResolucao() {
+    return tempoResolucao;
+  }
+
+  /**
+   * Retorna o tempo que uma conexão da outra família aguarda pela família preferida.
+   *
+   * @return tempo em milissegundos
+   */
+  long getTempoPreferencia() {
+    return tempoPreferencia;
+  }
+
+  /**
+   * Indica se as corridas disputam também os endereços locais de origem.
+   *
+   * @return verdadeiro caso disputem
+   */
+  boolean isCorridaOrigens() {
+    return corridaOrigens;
+  }
+
+  /**
+   * Indica se o pool de conexões aquecidas está ativo para algum destino.
+   *
+   * @return verdadeiro caso algum limite esteja ativo
+   */
+  boolean isPoolConexoes() {
+    boolean ativo = limitesPool.isAtivo();
+    for (final PoolConexoes.Limites limites : limitesPoolDestinos.values()) {
+      ativo |= limites.isAtivo();
+    }
+    return ativo;
+  }
+
+  /**
+   * Retorna os limites do pool dos destinos sem limites próprios.
+   *
+   * @return limites padrão do pool
+   */
+  PoolConexoes.Limites getLimitesPool() {
+    return limitesPool;
+  }
+
+  /**
+   * Retorna uma cópia dos limites próprios do pool por nome e porta.
+   *
+   * @return limites por nome e porta
+   */
+  Map<String, PoolConexoes.Limites> getLimitesPoolDestinos() {
+    return new HashMap<String, PoolConexoes.Limites>(limitesPoolDestinos);
+  }
+
+  /**
+   * Retorna a política que escolhe o IP entregue entre os endereços classificados.
+   *
+   * @return política de seleção
+   */
+  PoliticaSelecao getPoliticaSelecao() {
+    return politicaSelecao;
+  }
+
+  /**
+   * Retorna o contexto TLS das corridas por handshake.
+   *
+   * @return contexto TLS, ou null para as corridas por conexão
+   */
+  SSLContext getContextoTls() {
+    return contextoTls;
+  }
+
+  /**
+   * Retorna o intervalo entre os ciclos da sondagem dos destinos quentes.
+   *
+   * @return intervalo em milissegundos, ou zero quando desativada
+   */
+  long getIntervaloSondagem() {
+    return intervaloSondagem;
+  }
+
+  /**
+   * Retorna a quantidade máxima de corridas da sondagem em andamento a cada ciclo.
+   *
+   * @return quantidade máxima de corridas
+   */
+  int getOrcamentoSondagem() {
+    return orcamentoSondagem;
+  }
+
+  /**
+   * Cria o agendador das tarefas periódicas da instância, a manutenção do pool de conexões
+   * aquecidas e a sondagem, com uma thread que não impede o término da JVM.
+   *
+   * @return agendador de uma thread
+   */
+  ScheduledExecutorService criaAgendador() {
+    return Executors.newSingleThreadScheduledExecutor(new Fabrica(Mensagens.HAPPYEYEBALLS_79));
+  }
+
+  /**
+   * Retorna o arquivo de configuração do cache.
+   *
+   * @return arquivo de configuração, ou null para o padrão
+   */
+  URL getConfiguracaoCache() {
+    return configuracaoCache;
+  }
+
+  /**
+   * Retorna a quantidade máxima de entradas do cache.
+   *
+   * @return quantidade de entradas, ou zero para o arquivo de configuração
+   */
+  long getTamanhoCache() {
+    return tamanhoCache;
+  }
+
+  /**
+   * Retorna o tempo de vida das entradas do cache.
+   *
+   * @return tempo em milissegundos, ou zero para o arquivo de configuração
+   */
+  long getTempoCache() {
+    return tempoCache;
+  }
+
+  /**
+   * Indica se o último IP vencedor é servido após a expiração do cache.
+   *
+   * @return verdadeiro caso seja servido
+   */
+  boolean isServirExpirado() {
+    return servirExpirado;
+  }
+
+  /**
+   * Retorna o tempo máximo em que um IP expirado ainda pode ser servido.
+   *
+   * @return tempo em milissegundos
+   */
+  long getTempoMaximoExpirado() {
+    return tempoMaximoExpirado;
+  }
+
+  /**
+   * Retorna o percentual do tempo de vida a partir do qual um acerto renova a entrada.
+   *
+   * @return percentual do tempo de vida
+   */
+  long getLimiarRenovacao() {
+    return limiarRenovacao;
+  }
+
+  /**
+   * Retorna o tempo em que um nome inexistente fica no cache negativo.
+   *
+   * @return tempo em milissegundos
+   */
+  long getTempoNegativoNome() {
+    return tempoNegativoNome;
+  }
+
+  /**
+   * Retorna o tempo em que um destino inalcançável fica no cache negativo.
+   *
+   * @return tempo em milissegundos
+   */
+  long getTempoNegativoConexao() {
+    return tempoNegativoConexao;
+  }
+
+  /**
+   * Retorna o tempo máximo no cache negativo.
+   *
+   * @return tempo em milissegundos
+   */
+  long getTempoNegativoMaximo() {
+    return tempoNegativoMaximo;
+  }
+
+  /**
+   * Retorna o registro externo que recebe os eventos das métricas.
+   *
+   * @return registro das métricas
+   */
+  RegistroMetricas getRegistroMetricas() {
+    return registroMetricas;
+  }
+
+  /**
+   * Retorna o nome com que as métricas são publicadas no JMX.
+   *
+   * @return nome JMX, ou null para não publicar
+   */
+  String getNomeJmx() {
+    return nomeJmx;
+  }
+
+  /**
+   * Fábrica das threads dos pools próprios, que não impedem o término da JVM.
+   */
+  private static final class Fabrica implements ThreadFactory {
+
+    /**
+     * Prefixo do nome das threads.
+     */
+    private final String prefixo;
+
+    /**
+     * Contador das threads criadas.
+     */
+    private final AtomicInteger contador = new AtomicInteger();
+
+    /**
+     * Construtor.
+     *
+     * @param prefixo prefixo do nome das threads
+     */
+    Fabrica(final String prefixo) {
+      this.prefixo = prefixo;
+    }
+
+    @Override
+    public Thread newThread(final Runnable tarefa) {
+      final Thread thread = new Thread(tarefa, prefixo + '-' + contador.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -2,23 +2,42 @@ package br.gov.pbh.prodabel.happyeyeballs;
 
 import org.ehcache.Cache;
 import org.ehcache.CacheManager;
-import org.ehcache.config.Configuration;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
 import org.ehcache.config.builders.CacheManagerBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.expiry.Duration;
+import org.ehcache.expiry.Expirations;
 import org.ehcache.xml.XmlConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.Inet4Address;
-import java.net.Inet6Address;
+import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.URL;
-import java.net.UnknownHostException;
-import java.util.LinkedList;
+import java.nio.channels.SocketChannel;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.net.ssl.SSLContext;
 
 /**
  * Happy EyeBalls em Java. Algoritmo RFC 6555.
@@ -34,43 +53,276 @@ final class HappyEyeballsImpl implements HappyEyeballs {
   private static final Logger LOGGER = LoggerFactory.getLogger(HappyEyeballsImpl.class);
 
   /**
-   * Semáforo para bloquear as threads para cálculo de tempo de expiração.
+   * Semáforo para bloquear as threads na criação e no término da instância padrão.
    */
   private static final Object MUTEX = new Object();
 
+  /**
+   * Quantidade de entradas do cache quando não há arquivo de configuração.
+   */
+  private static final long TAMANHO_CACHE_PADRAO = 2000L;
+  /**
+   * Tempo de vida em milissegundos das entradas do cache quando não há arquivo de configuração.
+   */
+  private static final long TEMPO_CACHE_PADRAO = 20000L;
+
+  /**
+   * Tempo de vida em nanossegundos das entradas do cache próximo quando o ehcache não expira.
+   */
+  private static final long VIDA_INFINITA = Long.MAX_VALUE / 4L;
+
+  /**
+   * Instância única do objeto (Singleton), lida sem bloqueio.
+   */
+  private static volatile HappyEyeballsImpl single;
+
+  /**
+   * Gerenciador do cache da instância.
+   */
+  private final CacheManager cacheManager;
   /**
    * Cache para armazenar as resoluções dos nomes.
    */
-  private static final Cache<String, InetAddress> CACHE;
+  private final Cache<String, InetAddress> cache;
+  /**
+   * Cache próximo, à frente do ehcache, consultado no acerto sem alocar memória.
+   */
+  private final CacheProximo proximo;
+  /**
+   * Executor próprio das consultas de nomes, terminado no encerramento, ou null quando o executor
+   * pertence ao chamador.
+   */
+  private final ExecutorService executor;
+  /**
+   * Tempo de expiração da conexão em milissegundos.
+   */
+  private final long tempoExpiracao;
+  /**
+   * Intervalo entre o início de duas tentativas de conexão em milissegundos.
+   */
+  private final long tempoEntreTentativas;
+  /**
+   * Tempo de espera pelos endereços IPV6 após a chegada dos IPV4 em milissegundos.
+   */
+  private final long tempoResolucao;
+  /**
+   * Tempo em milissegundos que uma conexão da outra família aguarda pela família preferida.
+   */
+  private final long tempoPreferencia;
   /**
-   * Tempo de expiração da conexão.
+   * Indica se as corridas disputam também os endereços locais de origem.
    */
-  private static final long TEMPO_EXPIRACAO;
+  private final boolean corridaOrigens;
+  /**
+   * Política que escolhe o IP entregue entre os endereços classificados.
+   */
+  private final PoliticaSelecao politica;
+  /**
+   * Indica se as corridas classificam todos os endereços, o que ocorre com qualquer política
+   * diferente da do mais rápido.
+   */
+  private final boolean classificar;
+  /**
+   * Contexto TLS das corridas por handshake, ou null para as corridas por conexão.
+   */
+  private final SSLContext contextoTls;
+  /**
+   * Executor das tarefas delegadas dos handshakes TLS: o executor da instância ou, sem ele, o pool
+   * comum.
+   */
+  private final Executor executorTls;
+  /**
+   * Pool de conexões aquecidas, ou null quando desativado.
+   */
+  private final PoolConexoes pool;
+  /**
+   * Sondagem dos destinos quentes, ou null quando desativada.
+   */
+  private final Sondador sondador;
+  /**
+   * Agendador das tarefas periódicas do pool e da sondagem, ou null quando ambos estão
+   * desativados.
+   */
+  private final ScheduledExecutorService agendador;
 
   /**
-   * Pool de threads para paralelizar a resolução de nomes.
+   * Buscas em andamento por nome e porta, para que falhas simultâneas de cache compartilhem uma
+   * única resolução de nome e corrida de conexões.
    */
-  private static final ExecutorService EXECUTOR;
+  private final ConcurrentMap<String, CompletableFuture<InetAddress>> emAndamento =
+      new ConcurrentHashMap<String, CompletableFuture<InetAddress>>();
 
   /**
-   * Instância única do objeto (Singleton).
+   * Corridas de classificação em andamento por nome e porta, para que pedidos simultâneos da
+   * classificação compartilhem uma única corrida.
    */
-  private static HappyEyeballsImpl single;
+  private final ConcurrentMap<String, CompletableFuture<List<IpClassificado>>> classificacoes =
+      new ConcurrentHashMap<String, CompletableFuture<List<IpClassificado>>>();
 
   /**
-   * Construtor estático utilizado para inicializar as variáveis do algoritmo.
+   * Últimos IPs vencedores por nome e porta, mantidos além da expiração do cache para servir o IP
+   * expirado, para a renovação antecipada e para devolver ao cache próximo os destinos que ele
+   * descartou.
    */
-  static {
-    synchronized (MUTEX) {
-      final URL myUrl = ClassLoader.class.getResource(Mensagens.HAPPYEYEBALLS_0);
-      final Configuration xmlConfig = new XmlConfiguration(myUrl);
-      final CacheManager cacheManager = CacheManagerBuilder.newCacheManager(xmlConfig);
-      cacheManager.init();
-      CACHE = cacheManager.getCache(Mensagens.HAPPYEYEBALLS_1, String.class, InetAddress.class);
-      /* TODO Forma melhor de fornecer os parâmetros de configuração do algoritmo. */
-      EXECUTOR = Executors.newFixedThreadPool(4);
-      TEMPO_EXPIRACAO = 300L;
+  private final ConcurrentMap<String, Registro> registros =
+      new ConcurrentHashMap<String, Registro>();
+
+  /**
+   * Falhas recentes por nome e porta (cache negativo).
+   */
+  private final ConcurrentMap<String, Falha> falhas = new ConcurrentHashMap<String, Falha>();
+
+  /**
+   * Resolvedor dos nomes dos servidores.
+   */
+  private final ResolvedorNomes resolvedor;
+  /**
+   * Indica se o último IP vencedor é servido após a expiração do cache enquanto a corrida é refeita
+   * em segundo plano.
+   */
+  private final boolean servirExpirado;
+  /**
+   * Tempo máximo em milissegundos em que um IP expirado ainda pode ser servido.
+   */
+  private final long tempoMaximoExpirado;
+  /**
+   * Percentual do tempo de vida da entrada do cache a partir do qual um acerto refaz a corrida em
+   * segundo plano, ou zero para desativar a renovação antecipada.
+   */
+  private final long limiarRenovacao;
+  /**
+   * Tempo em milissegundos em que um nome inexistente fica no cache negativo, ou zero para não
+   * armazenar.
+   */
+  private final long tempoNegativoNome;
+  /**
+   * Tempo em milissegundos em que um destino cujas conexões falharam fica no cache negativo, ou
+   * zero para não armazenar.
+   */
+  private final long tempoNegativoConexao;
+  /**
+   * Tempo máximo em milissegundos no cache negativo, limite do recuo exponencial das falhas
+   * repetidas.
+   */
+  private final long tempoNegativoMaximo;
+  /**
+   * Métricas da instância.
+   */
+  private final Metricas metricas;
+  /**
+   * Nome das métricas no JMX, ou null caso não tenham sido publicadas.
+   */
+  private final ObjectName nomeJmx;
+  /**
+   * Indica se a instância foi encerrada.
+   */
+  private volatile boolean encerrado;
+
+  /**
+   * Construtor.
+   * 
+   * @param construtor configuração da instância
+   */
+  HappyEyeballsImpl(final HappyEyeballsBuilder construtor) {
+    super();
+    if (construtor.getResolvedor() != null) {
+      resolvedor = construtor.getResolvedor();
+      executor = null;
+    } else if (construtor.getExecutor() != null) {
+      resolvedor = new ResolvedorJdk(construtor.getExecutor());
+      executor = null;
+    } else {
+      executor = construtor.criaExecutor();
+      resolvedor = new ResolvedorJdk(executor);
+    }
+    cacheManager = criaCache(construtor);
+    cache = cacheManager.getCache(Mensagens.HAPPYEYEBALLS_1, String.class, InetAddress.class);
+    proximo = new CacheProximo((int) Math.min(Integer.MAX_VALUE,
+        construtor.getTamanhoCache() > 0L ? construtor.getTamanhoCache() : TAMANHO_CACHE_PADRAO));
+    tempoExpiracao = construtor.getTempoExpiracao();
+    tempoEntreTentativas = construtor.getTempoEntreTentativas();
+    tempoResolucao = construtor.getTempoResolucao();
+    tempoPreferencia = construtor.getTempoPreferencia();
+    corridaOrigens = construtor.isCorridaOrigens();
+    politica = construtor.getPoliticaSelecao();
+    classificar = politica != PoliticaSelecao.maisRapido();
+    contextoTls = construtor.getContextoTls();
+    if (executor != null) {
+      executorTls = executor;
+    } else if (construtor.getExecutor() != null) {
+      executorTls = construtor.getExecutor();
+    } else {
+      executorTls = ForkJoinPool.commonPool();
+    }
+    servirExpirado = construtor.isServirExpirado();
+    tempoMaximoExpirado = construtor.getTempoMaximoExpirado();
+    limiarRenovacao = construtor.getLimiarRenovacao();
+    tempoNegativoNome = construtor.getTempoNegativoNome();
+    tempoNegativoConexao = construtor.getTempoNegativoConexao();
+    tempoNegativoMaximo = construtor.getTempoNegativoMaximo();
+    metricas = new Metricas(construtor.getRegistroMetricas(),
+        executor == null ? construtor.getExecutor() : executor);
+    nomeJmx = construtor.getNomeJmx() == null ? null : publicaJmx(construtor.getNomeJmx());
+    agendador = construtor.isPoolConexoes() || construtor.getIntervaloSondagem() > 0L
+        ? construtor.criaAgendador() : null;
+    pool = construtor.isPoolConexoes() ? new PoolConexoes(this, construtor.getLimitesPool(),
+        construtor.getLimitesPoolDestinos(), agendador) : null;
+    sondador = construtor.getIntervaloSondagem() > 0L ? new Sondador(this, proximo,
+        construtor.getIntervaloSondagem(), construtor.getOrcamentoSondagem(), agendador) : null;
+    Reator.adquirir();
+  }
+
+  /**
+   * Publica as métricas no servidor JMX da plataforma. Uma falha na publicação não impede o
+   * funcionamento da instância.
+   * 
+   * @param nome nome da instância no JMX
+   * @return nome do objeto publicado ou null
+   */
+  private ObjectName publicaJmx(final String nome) {
+    ObjectName publicado;
+    try {
+      publicado = new ObjectName(Mensagens.HAPPYEYEBALLS_61 + ObjectName.quote(nome));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(metricas, publicado);
+    } catch (JMException excep) {
+      LOGGER.warn(Mensagens.HAPPYEYEBALLS_63, nome, excep);
+      publicado = null;
     }
+    return publicado;
+  }
+
+  /**
+   * Cria o gerenciador do cache. O tamanho e o tempo de vida informados no construtor têm
+   * precedência sobre o arquivo de configuração; sem nenhum dos dois, utiliza o arquivo
+   * {@code /cache.xml} do classpath ou, na sua falta, os valores padrão.
+   * 
+   * @param construtor configuração da instância
+   * @return gerenciador do cache já inicializado
+   */
+  private static CacheManager criaCache(final HappyEyeballsBuilder construtor) {
+    final URL configuracao = construtor.getConfiguracaoCache() == null
+        ? ClassLoader.class.getResource(Mensagens.HAPPYEYEBALLS_0)
+        : construtor.getConfiguracaoCache();
+    final CacheManager gerenciador;
+    if (configuracao == null || construtor.getTamanhoCache() > 0L
+        || construtor.getTempoCache() > 0L) {
+      final long tamanho = construtor.getTamanhoCache() > 0L ? construtor.getTamanhoCache()
+          : TAMANHO_CACHE_PADRAO;
+      final long tempo =
+          construtor.getTempoCache() > 0L ? construtor.getTempoCache() : TEMPO_CACHE_PADRAO;
+      gerenciador = CacheManagerBuilder.newCacheManagerBuilder()
+          .withCache(Mensagens.HAPPYEYEBALLS_1,
+              CacheConfigurationBuilder
+                  .newCacheConfigurationBuilder(String.class, InetAddress.class,
+                      ResourcePoolsBuilder.heap(tamanho))
+                  .withExpiry(Expirations.timeToLiveExpiration(
+                      Duration.of(tempo, TimeUnit.MILLISECONDS))))
+          .build(true);
+    } else {
+      gerenciador = CacheManagerBuilder.newCacheManager(new XmlConfiguration(configuracao));
+      gerenciador.init();
+    }
+    return gerenciador;
   }
 
   /**
@@ -79,47 +331,86 @@ final class HappyEyeballsImpl implements HappyEyeballs {
    * @return Única instância da classe.
    */
   static HappyEyeballsImpl getSingleHappyEyeballs() {
-    synchronized (MUTEX) {
-      if (single == null) {
-        single = new HappyEyeballsImpl();
+    HappyEyeballsImpl instancia = single;
+    if (instancia == null) {
+      synchronized (MUTEX) {
+        if (single == null) {
+          single = new HappyEyeballsImpl(
+              new HappyEyeballsBuilder().nomeJmx(Mensagens.HAPPYEYEBALLS_62));
+        }
+        instancia = single;
       }
     }
-    return single;
+    return instancia;
   }
 
   /**
-   * Finaliza o pool de threads e limpa o cache. Executar ao finalizar o programa.
+   * Encerra a instância padrão. O reator das conexões, o histórico de latência e a saúde das
+   * famílias são compartilhados por todas as instâncias, e só são descartados quando nenhuma outra
+   * instância permanece aberta. Executar ao finalizar o programa.
    */
   static void terminarPoolThread() {
     synchronized (MUTEX) {
-      EXECUTOR.shutdown();
-      single = null;
-      CACHE.clear();
+      if (single != null) {
+        single.close();
+      }
+      if (!Reator.isEmUso()) {
+        Reator.terminar();
+        HistoricoLatencia.getHistorico().limpar();
+        SaudeFamilia.getSaude().limpar();
+      }
     }
   }
 
   /**
-   * Obtem todos os ip de um nome.
+   * Retorna as métricas da instância.
    * 
-   * @param nome nome do servidor
-   * @param enderecosIpV4 lista para adicionar os endereços IPv4
-   * @param enderecosIpV6 lista para adicionar os endereços IPv6
-   * @throws HappyEyeBallsException caso não encontre o servidor.
+   * @return métricas da instância
    */
-  private void obtemIpsPeloNome(final String nome, final List<Inet4Address> enderecosIpV4,
-      final List<Inet6Address> enderecosIpV6) throws HappyEyeBallsException {
-    // Separa os IPs
-    try {
-      for (final InetAddress endereco : InetAddress.getAllByName(nome)) {
-        LOGGER.debug(Mensagens.HAPPYEYEBALLS_2, nome, endereco);
-        if (endereco instanceof Inet4Address) {
-          enderecosIpV4.add((Inet4Address) endereco);
-        } else {
-          enderecosIpV6.add((Inet6Address) endereco);
+  @Override
+  public Metricas getMetricas() {
+    return metricas;
+  }
+
+  /**
+   * Encerra a instância, terminando o executor próprio e descartando o cache. O reator
+   * compartilhado termina junto com a última instância aberta.
+   */
+  @Override
+  public void close() {
+    synchronized (MUTEX) {
+      if (!encerrado) {
+        encerrado = true;
+        if (single == this) {
+          single = null;
+        }
+        if (sondador != null) {
+          sondador.encerrar();
+        }
+        if (pool != null) {
+          pool.encerrar();
+        }
+        if (agendador != null) {
+          agendador.shutdownNow();
         }
+        if (executor != null) {
+          executor.shutdown();
+        }
+        cacheManager.close();
+        proximo.limpar();
+        if (nomeJmx != null) {
+          try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(nomeJmx);
+          } catch (JMException excep) {
+            LOGGER.warn(Mensagens.HAPPYEYEBALLS_64, nomeJmx, excep);
+          }
+        }
+        emAndamento.clear();
+        classificacoes.clear();
+        registros.clear();
+        falhas.clear();
+        Reator.devolver();
       }
-    } catch (UnknownHostException exp) {
-      throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_3, exp);
     }
   }
 
@@ -133,58 +424,896 @@ final class HappyEyeballsImpl implements HappyEyeballs {
    */
   @Override
   public InetAddress obterIp(final String nomeRede, final int porta) throws HappyEyeBallsException {
-    final String nome = new StringBuffer(nomeRede).append(':').append(porta).toString();
-    final InetAddress enderecoIp;
-    if (CACHE.containsKey(nome)) {
-      enderecoIp = CACHE.get(nome);
+    final InetAddress enderecoProximo = buscaProximo(nomeRede, porta);
+    return enderecoProximo == null ? executarTarefa(obterIpAsync(nomeRede, porta))
+        : enderecoProximo;
+  }
+
+  /**
+   * Obtém o IP segundo o algoritmo Happy Eyeballs sem bloquear a thread chamadora.
+   * 
+   * @param nomeRede Nome do servidor a ser resolvido.
+   * @param porta Porta para teste de conexão.
+   * @return futuro com o IP resolvido, já completado caso o IP esteja no cache.
+   */
+  @Override
+  public CompletableFuture<InetAddress> obterIpAsync(final String nomeRede, final int porta) {
+    final InetAddress enderecoProximo = buscaProximo(nomeRede, porta);
+    final CompletableFuture<InetAddress> enderecoIp;
+    if (enderecoProximo != null) {
+      enderecoIp = CompletableFuture.completedFuture(enderecoProximo);
+    } else if (encerrado) {
+      enderecoIp = new CompletableFuture<InetAddress>();
+      enderecoIp.completeExceptionally(new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_55));
+    } else {
+      enderecoIp = buscaCache(chave(nomeRede, porta), nomeRede, porta);
+    }
+    return enderecoIp;
+  }
+
+  /**
+   * Obtém a rota vencedora, com o endereço local de origem e o IP de destino.
+   * 
+   * @param nomeRede Nome do servidor a ser resolvido.
+   * @param porta Porta para teste de conexão.
+   * @return rota vencedora
+   * @throws HappyEyeBallsException Caso ocorra alguma exceção.
+   */
+  @Override
+  public Rota obterRota(final String nomeRede, final int porta) throws HappyEyeBallsException {
+    return executarTarefa(obterRotaAsync(nomeRede, porta));
+  }
+
+  /**
+   * Obtém a rota vencedora sem bloquear a thread chamadora. A origem vem do cache, onde é
+   * registrada junto com o IP; sem a corrida de origens ela é sempre null.
+   * 
+   * @param nomeRede Nome do servidor a ser resolvido.
+   * @param porta Porta para teste de conexão.
+   * @return futuro com a rota vencedora
+   */
+  @Override
+  public CompletableFuture<Rota> obterRotaAsync(final String nomeRede, final int porta) {
+    return obterIpAsync(nomeRede, porta).thenApply(enderecoIp -> new Rota(
+        corridaOrigens ? cache.get(chaveOrigem(chave(nomeRede, porta))) : null, enderecoIp,
+        porta));
+  }
+
+  /**
+   * Obtém os endereços que conectaram, do mais rápido para o mais lento.
+   * 
+   * @param nomeRede Nome do servidor a ser resolvido.
+   * @param porta Porta para teste de conexão.
+   * @return endereços classificados
+   * @throws HappyEyeBallsException Caso ocorra alguma exceção.
+   */
+  @Override
+  public List<IpClassificado> obterClassificacao(final String nomeRede, final int porta)
+      throws HappyEyeBallsException {
+    return executarTarefa(obterClassificacaoAsync(nomeRede, porta));
+  }
+
+  /**
+   * Obtém os endereços classificados sem bloquear a thread chamadora: a classificação em cache ou,
+   * na falta, a de uma nova corrida de classificação, cujo vencedor é registrado no cache.
+   * 
+   * @param nomeRede Nome do servidor a ser resolvido.
+   * @param porta Porta para teste de conexão.
+   * @return futuro com os endereços classificados
+   */
+  @Override
+  public CompletableFuture<List<IpClassificado>> obterClassificacaoAsync(final String nomeRede,
+      final int porta) {
+    final CacheProximo.Entrada entrada = proximo.buscar(nomeRede, porta);
+    final String nome = chave(nomeRede, porta);
+    CompletableFuture<List<IpClassificado>> classificacao;
+    if (entrada != null && entrada.getClassificacao() != null
+        && entrada.isValida(System.nanoTime())) {
+      entrada.usar();
+      acertoCache(nomeRede, porta, entrada.getEndereco());
+      classificacao = CompletableFuture.completedFuture(entrada.getClassificacao());
+    } else {
+      try {
+        if (encerrado) {
+          throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_55);
+        }
+        metricas.faltaCache();
+        final FalhaRecenteException falhaRecente = obtemFalhaRecente(nome, nomeRede, porta);
+        if (falhaRecente != null) {
+          throw falhaRecente;
+        }
+        // Cada chamador recebe o seu próprio futuro dependente da corrida compartilhada
+        classificacao = classificacaoCompartilhada(nome, nomeRede, porta)
+            .thenApply(Function.identity());
+      } catch (HappyEyeBallsException excep) {
+        classificacao = new CompletableFuture<List<IpClassificado>>();
+        classificacao.completeExceptionally(excep);
+      }
+    }
+    return classificacao;
+  }
+
+  /**
+   * Retorna a corrida de classificação em andamento para o nome e porta, iniciando-a caso não
+   * exista. Somente o primeiro chamador inicia a corrida; os demais aguardam o mesmo resultado.
+   * 
+   * @param nome chave do cache
+   * @param nomeRede Nome do servidor a ser resolvido.
+   * @param porta Porta para teste de conexão.
+   * @return futuro compartilhado com os endereços classificados
+   */
+  private CompletableFuture<List<IpClassificado>> classificacaoCompartilhada(final String nome,
+      final String nomeRede, final int porta) {
+    final CompletableFuture<List<IpClassificado>> nova =
+        new CompletableFuture<List<IpClassificado>>();
+    final CompletableFuture<List<IpClassificado>> existente =
+        classificacoes.putIfAbsent(nome, nova);
+    final CompletableFuture<List<IpClassificado>> classificacao;
+    if (existente == null) {
+      classificacao = nova;
+      iniciarCorrida(nomeRede, porta, false, true, contextoTls, null)
+          .whenComplete((amostra, excep) -> registraResultado(nome, nomeRede, porta, excep))
+          .thenApply(amostra -> {
+            registrarAmostra(nome, nomeRede, porta, amostra);
+            return amostra.getClassificacao();
+          }).whenComplete((enderecos, excep) -> {
+            classificacoes.remove(nome, nova);
+            if (excep == null) {
+              nova.complete(enderecos);
+            } else {
+              nova.completeExceptionally(
+                  excep instanceof CompletionException ? excep.getCause() : excep);
+            }
+          });
+    } else {
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_33, nomeRede, porta);
+      classificacao = existente;
+    }
+    return classificacao;
+  }
+
+  /**
+   * Busca o IP no cache próximo. No acerto não há alocação de memória: a chave é o próprio nome e a
+   * porta, e o log só é montado com o nível de depuração ativo. Com a classificação, o IP é
+   * escolhido pela política de seleção.
+   * 
+   * @param nomeRede Nome do servidor.
+   * @param porta Porta do servidor.
+   * @return IP em cache ou null
+   */
+  private InetAddress buscaProximo(final String nomeRede, final int porta) {
+    final CacheProximo.Entrada entrada = proximo.buscar(nomeRede, porta);
+    InetAddress enderecoIp = null;
+    if (entrada != null) {
+      final long agora = System.nanoTime();
+      if (entrada.isValida(agora)) {
+        enderecoIp = classificar && entrada.getClassificacao() != null
+            ? politica.selecionar(entrada.getClassificacao()).getEndereco()
+            : entrada.getEndereco();
+        entrada.usar();
+        acertoCache(nomeRede, porta, enderecoIp);
+        if (limiarRenovacao > 0L && entrada.isRenovar(agora)) {
+          renovaAntecipado(chave(nomeRede, porta), nomeRede, porta);
+        }
+      }
+    }
+    return enderecoIp;
+  }
+
+  /**
+   * Registra um acerto no cache.
+   * 
+   * @param nomeRede Nome do servidor.
+   * @param porta Porta do servidor.
+   * @param enderecoIp IP em cache
+   */
+  private void acertoCache(final String nomeRede, final int porta, final InetAddress enderecoIp) {
+    if (LOGGER.isDebugEnabled()) {
       LOGGER.debug(Mensagens.HAPPYEYEBALLS_4, nomeRede, porta, enderecoIp);
+    }
+    metricas.acertoCache();
+  }
+
+  /**
+   * Busca o IP no ehcache e, na falta, no registro de IPs expirados ou em uma nova corrida.
+   * 
+   * @param nome chave do cache
+   * @param nomeRede Nome do servidor a ser resolvido.
+   * @param porta Porta para teste de conexão.
+   * @return futuro com o IP resolvido, já completado caso o IP esteja no cache.
+   */
+  private CompletableFuture<InetAddress> buscaCache(final String nome, final String nomeRede,
+      final int porta) {
+    final InetAddress enderecoCache = cache.get(nome);
+    final CompletableFuture<InetAddress> enderecoIp;
+    if (enderecoCache != null) {
+      acertoCache(nomeRede, porta, enderecoCache);
+      reaquece(nome, nomeRede, porta, enderecoCache);
+      renovaAntecipado(nome, nomeRede, porta);
+      enderecoIp = CompletableFuture.completedFuture(enderecoCache);
     } else {
-      // Busca todos os ips
-      final List<Inet4Address> enderecosIpV4 = new LinkedList<Inet4Address>();
-      final List<Inet6Address> enderecosIpV6 = new LinkedList<Inet6Address>();
-      obtemIpsPeloNome(nomeRede, enderecosIpV4, enderecosIpV6);
-      LOGGER.debug(Mensagens.HAPPYEYEBALLS_5, nomeRede, porta, enderecosIpV6);
-      LOGGER.debug(Mensagens.HAPPYEYEBALLS_6, nomeRede, porta, enderecosIpV4);
-      // Busca o melhor tempo de conecção
-      final Amostra amostra = obterMelhorIp(enderecosIpV4, enderecosIpV6, porta);
-      if (amostra == null) {
-        enderecoIp = null;
-        LOGGER.debug(Mensagens.HAPPYEYEBALLS_7);
+      metricas.faltaCache();
+      final InetAddress expirado = obtemExpirado(nome);
+      final FalhaRecenteException falhaRecente = obtemFalhaRecente(nome, nomeRede, porta);
+      if (expirado != null) {
+        LOGGER.debug(Mensagens.HAPPYEYEBALLS_44, nomeRede, porta, expirado);
+        // Durante o recuo de uma falha a renovação também é suspensa
+        if (falhaRecente == null) {
+          renova(nome, nomeRede, porta);
+        }
+        enderecoIp = CompletableFuture.completedFuture(expirado);
+      } else if (falhaRecente == null) {
+        // Cada chamador recebe o seu próprio futuro dependente da busca compartilhada
+        enderecoIp = buscaCompartilhada(nome, nomeRede, porta).thenApply(Function.identity());
       } else {
-        enderecoIp = amostra.getEnderecoIp();
-        LOGGER.debug(Mensagens.HAPPYEYEBALLS_8, nomeRede, porta, enderecoIp);
-        CACHE.put(nome, enderecoIp);
+        enderecoIp = new CompletableFuture<InetAddress>();
+        enderecoIp.completeExceptionally(falhaRecente);
       }
     }
     return enderecoIp;
   }
 
   /**
-   * Cria a atividade para buscar os tempo de conexão.
+   * Devolve ao cache próximo um IP encontrado no ehcache, com os instantes e a classificação do
+   * registro da corrida, para que o destino descartado pela capacidade do cache próximo volte ao
+   * caminho de acerto, à política de seleção e à sondagem.
+   * 
+   * @param nome chave do cache
+   * @param nomeRede Nome do servidor.
+   * @param porta Porta do servidor.
+   * @param enderecoIp IP encontrado no ehcache
+   */
+  private void reaquece(final String nome, final String nomeRede, final int porta,
+      final InetAddress enderecoIp) {
+    final Registro registro = registros.get(nome);
+    if (registro != null && registro.endereco.equals(enderecoIp)
+        && System.nanoTime() - registro.expiraEm < 0L) {
+      proximo.armazenar(nomeRede, new CacheProximo.Entrada(porta, enderecoIp, registro.expiraEm,
+          registro.renovarApos, registro.classificacao));
+    }
+  }
+
+  /**
+   * Obtém o melhor IP de vários destinos, aguardando todos.
+   * 
+   * @param destinos nomes e portas dos servidores
+   * @return IPs vencedores e falhas por destino
+   * @throws HappyEyeBallsException Caso a espera seja interrompida.
+   */
+  @Override
+  public ResultadoLote obterIps(final Collection<InetSocketAddress> destinos)
+      throws HappyEyeBallsException {
+    return executarTarefa(preaquecer(destinos));
+  }
+
+  /**
+   * Inicia a busca de todos os destinos de uma vez. Cada busca passa pelo cache e pelas buscas em
+   * andamento como em {@link #obterIpAsync(String, int)}, e todas as corridas compartilham o
+   * reator.
+   * 
+   * @param destinos nomes e portas dos servidores
+   * @return futuro com os IPs vencedores e as falhas por destino
+   */
+  @Override
+  public CompletableFuture<ResultadoLote> preaquecer(final Collection<InetSocketAddress> destinos) {
+    if (destinos == null) {
+      throw new IllegalArgumentException(Mensagens.HAPPYEYEBALLS_9);
+    }
+    final long inicio = System.nanoTime();
+    final Map<InetSocketAddress, CompletableFuture<InetAddress>> buscas =
+        new LinkedHashMap<InetSocketAddress, CompletableFuture<InetAddress>>(destinos.size() * 2);
+    for (final InetSocketAddress destino : destinos) {
+      if (destino == null) {
+        throw new IllegalArgumentException(Mensagens.HAPPYEYEBALLS_59);
+      }
+      if (!buscas.containsKey(destino)) {
+        buscas.put(destino, obterIpAsync(destino.getHostString(), destino.getPort()));
+      }
+    }
+    return CompletableFuture.allOf(buscas.values().toArray(new CompletableFuture<?>[buscas.size()]))
+        .handle((nada, excep) -> {
+          final Map<InetSocketAddress, InetAddress> enderecos =
+              new LinkedHashMap<InetSocketAddress, InetAddress>(buscas.size() * 2);
+          final Map<InetSocketAddress, HappyEyeBallsException> falhas =
+              new LinkedHashMap<InetSocketAddress, HappyEyeBallsException>();
+          for (final Map.Entry<InetSocketAddress, CompletableFuture<InetAddress>> busca : buscas
+              .entrySet()) {
+            try {
+              enderecos.put(busca.getKey(), busca.getValue().join());
+            } catch (CompletionException falha) {
+              falhas.put(busca.getKey(), falha.getCause() instanceof HappyEyeBallsException
+                  ? (HappyEyeBallsException) falha.getCause()
+                  : new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_12, falha.getCause()));
+            }
+          }
+          LOGGER.debug(Mensagens.HAPPYEYEBALLS_60, buscas.size(),
+              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio), falhas.size());
+          return new ResultadoLote(enderecos, falhas);
+        });
+  }
+
+  /**
+   * Retorna o último IP vencedor de uma entrada expirada do cache, caso o modo esteja ativo e o IP
+   * não tenha ultrapassado o tempo máximo de expiração.
+   * 
+   * @param nome chave do cache
+   * @return IP expirado ou null
+   */
+  private InetAddress obtemExpirado(final String nome) {
+    InetAddress expirado = null;
+    final Registro registro = servirExpirado ? registros.get(nome) : null;
+    if (registro != null) {
+      if (System.nanoTime() - registro.descartarApos < 0L) {
+        expirado = registro.endereco;
+      } else {
+        registros.remove(nome, registro);
+      }
+    }
+    return expirado;
+  }
+
+  /**
+   * Refaz em segundo plano a corrida de uma entrada do cache que passou do limiar de renovação.
+   * Durante o recuo de uma falha a renovação é suspensa.
+   * 
+   * @param nome chave do cache
+   * @param nomeRede Nome do servidor.
+   * @param porta Porta do servidor.
+   */
+  private void renovaAntecipado(final String nome, final String nomeRede, final int porta) {
+    final Registro registro = limiarRenovacao > 0L ? registros.get(nome) : null;
+    if (registro != null && System.nanoTime() - registro.renovarApos >= 0L
+        && !emAndamento.containsKey(nome) && obtemFalhaRecente(nome, nomeRede, porta) == null) {
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_45, nomeRede, porta);
+      renova(nome, nomeRede, porta);
+    }
+  }
+
+  /**
+   * Refaz em segundo plano a corrida de um destino quente, a pedido da sondagem.
+   * 
+   * @param nomeRede Nome do servidor.
+   * @param porta Porta do servidor.
+   * @return futuro completado ao fim da corrida, com ou sem sucesso
+   */
+  CompletableFuture<InetAddress> sondar(final String nomeRede, final int porta) {
+    LOGGER.debug(Mensagens.HAPPYEYEBALLS_85, nomeRede, porta);
+    return renova(chave(nomeRede, porta), nomeRede, porta);
+  }
+
+  /**
+   * Refaz a corrida em segundo plano. Em caso de falha o IP anterior continua registrado e a
+   * próxima renovação antecipada é adiada, para que os acertos seguintes não iniciem uma corrida
+   * cada.
+   * 
+   * @param nome chave do cache
+   * @param nomeRede Nome do servidor.
+   * @param porta Porta do servidor.
+   * @return futuro completado ao fim da corrida, com ou sem sucesso
+   */
+  private CompletableFuture<InetAddress> renova(final String nome, final String nomeRede,
+      final int porta) {
+    return buscaCompartilhada(nome, nomeRede, porta).whenComplete((enderecoIp, excep) -> {
+      if (excep != null) {
+        LOGGER.debug(Mensagens.HAPPYEYEBALLS_46, nomeRede, porta, excep);
+        final long agora = System.nanoTime();
+        registros.computeIfPresent(nome, (chave, registro) ->
+            agora - registro.renovarApos >= 0L ? registro.adiar(agora) : registro);
+      }
+    });
+  }
+
+  /**
+   * Retorna a busca em andamento para o nome e porta, iniciando-a caso não exista. Somente o
+   * primeiro chamador resolve o nome e inicia a corrida; os demais aguardam o mesmo resultado. Com
+   * a classificação, a busca é completada na primeira conexão e a classificação termina em segundo
+   * plano, preenchendo o cache, de forma que um endereço que não responde não atrasa a busca.
+   * 
+   * @param nome chave do cache
+   * @param nomeRede Nome do servidor a ser resolvido.
+   * @param porta Porta para teste de conexão.
+   * @return futuro compartilhado com o IP resolvido
+   */
+  private CompletableFuture<InetAddress> buscaCompartilhada(final String nome,
+      final String nomeRede, final int porta) {
+    final CompletableFuture<InetAddress> nova = new CompletableFuture<InetAddress>();
+    final CompletableFuture<InetAddress> existente = emAndamento.putIfAbsent(nome, nova);
+    final CompletableFuture<InetAddress> busca;
+    if (existente == null) {
+      busca = nova;
+      final CompletableFuture<Amostra> primeira = new CompletableFuture<Amostra>();
+      primeira.thenAccept(amostra -> nova.complete(amostra.getEnderecoIp()));
+      iniciarCorrida(nomeRede, porta, false, classificar, contextoTls, primeira)
+          .thenApply(amostra -> registrarAmostra(nome, nomeRede, porta, amostra))
+          .whenComplete((enderecoIp, excep) -> {
+            registraResultado(nome, nomeRede, porta, excep);
+            emAndamento.remove(nome, nova);
+            if (excep == null) {
+              nova.complete(enderecoIp);
+            } else {
+              nova.completeExceptionally(excep);
+            }
+          });
+    } else {
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_33, nomeRede, porta);
+      busca = existente;
+    }
+    return busca;
+  }
+
+  /**
+   * Conecta ao servidor pelo melhor IP, entregando uma conexão aquecida do pool ou o canal
+   * vencedor da corrida.
+   * 
+   * @param nomeRede Nome do servidor a ser resolvido.
+   * @param porta Porta do servidor.
+   * @return canal conectado em modo bloqueante.
+   * @throws HappyEyeBallsException Caso nenhuma conexão seja estabelecida.
+   */
+  @Override
+  public SocketChannel conectar(final String nomeRede, final int porta)
+      throws HappyEyeBallsException {
+    final SocketChannel aquecido =
+        pool == null ? null : pool.retirar(chave(nomeRede, porta), nomeRede, porta);
+    final SocketChannel canal;
+    if (aquecido == null) {
+      final Amostra vencedor = executarTarefa(conectarAsync(nomeRede, porta));
+      if (vencedor == null) {
+        throw new DestinoInalcancavelException(Mensagens.HAPPYEYEBALLS_28);
+      }
+      canal = vencedor.getCanal();
+    } else {
+      canal = aquecido;
+    }
+    return canal;
+  }
+
+  /**
+   * Conecta ao servidor sem bloquear: retira uma conexão aquecida do pool ou inicia a corrida que
+   * mantém o canal vencedor.
+   * 
+   * @param nomeRede Nome do servidor a ser resolvido.
+   * @param porta Porta do servidor.
+   * @return futuro com o canal conectado, em modo bloqueante
+   */
+  CompletableFuture<SocketChannel> conectarCanalAsync(final String nomeRede, final int porta) {
+    final SocketChannel aquecido =
+        pool == null ? null : pool.retirar(chave(nomeRede, porta), nomeRede, porta);
+    return aquecido == null ? conectarAsync(nomeRede, porta).thenApply(Amostra::getCanal)
+        : CompletableFuture.completedFuture(aquecido);
+  }
+
+  /**
+   * Retorna uma fábrica de sockets que conecta pelas corridas desta instância.
+   * 
+   * @param tempoConexao tempo máximo de espera pela conexão em milissegundos, ou zero
+   * @return fábrica de sockets
+   */
+  @Override
+  public FabricaSockets fabricaSockets(final int tempoConexao) {
+    return new FabricaSockets(this, tempoConexao);
+  }
+
+  /**
+   * Conecta ao servidor pela corrida por handshake e entrega a conexão TLS vencedora, com o
+   * handshake concluído. Utiliza o contexto TLS da instância ou, sem ele, o contexto padrão.
+   * 
+   * @param nomeRede Nome do servidor a ser resolvido.
+   * @param porta Porta do servidor.
+   * @return conexão TLS vencedora.
+   * @throws HappyEyeBallsException Caso nenhum handshake seja concluído.
+   */
+  @Override
+  public ConexaoTls conectarTls(final String nomeRede, final int porta)
+      throws HappyEyeBallsException {
+    SSLContext contexto = contextoTls;
+    if (contexto == null) {
+      try {
+        contexto = SSLContext.getDefault();
+      } catch (NoSuchAlgorithmException excep) {
+        throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_95, excep);
+      }
+    }
+    final Amostra vencedor = executarTarefa(conectarAsync(nomeRede, porta, contexto));
+    if (vencedor == null) {
+      throw new DestinoInalcancavelException(Mensagens.HAPPYEYEBALLS_28);
+    }
+    return vencedor.getConexaoTls();
+  }
+
+  /**
+   * Inicia a corrida que mantém o canal vencedor, sem handshake TLS.
+   * 
+   * @param nomeRede Nome do servidor a ser resolvido.
+   * @param porta Porta do servidor.
+   * @return futuro com a amostra vencedora e o seu canal conectado
+   */
+  CompletableFuture<Amostra> conectarAsync(final String nomeRede, final int porta) {
+    return conectarAsync(nomeRede, porta, null);
+  }
+
+  /**
+   * Inicia a corrida que mantém o canal vencedor: ao IP em cache ou, na falta, com a resolução do
+   * nome, registrando o vencedor no cache. Caso o IP em cache não conecte, ele é descartado e a
+   * corrida é refeita entre todos os endereços do nome.
+   * 
+   * @param nomeRede Nome do servidor a ser resolvido.
+   * @param porta Porta do servidor.
+   * @param contexto contexto TLS da corrida por handshake ou null
+   * @return futuro com a amostra vencedora e o seu canal conectado
+   */
+  private CompletableFuture<Amostra> conectarAsync(final String nomeRede, final int porta,
+      final SSLContext contexto) {
+    CompletableFuture<Amostra> corrida;
+    final String nome = chave(nomeRede, porta);
+    try {
+      if (encerrado) {
+        throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_55);
+      }
+      InetAddress enderecoCache = buscaProximo(nomeRede, porta);
+      if (enderecoCache == null) {
+        enderecoCache = cache.get(nome);
+        if (enderecoCache != null) {
+          acertoCache(nomeRede, porta, enderecoCache);
+        }
+      }
+      if (enderecoCache != null) {
+        final InetAddress emCache = enderecoCache;
+        corrida = criaAtividade(Collections.singletonList(emCache), nomeRede, porta, contexto)
+            .handle((amostra, excep) -> {
+              final CompletableFuture<Amostra> resultado;
+              if (excep == null && amostra != null) {
+                resultado = CompletableFuture.completedFuture(amostra);
+              } else {
+                LOGGER.debug(Mensagens.HAPPYEYEBALLS_102, emCache, nomeRede, porta, excep);
+                descarta(nome, nomeRede, porta, emCache);
+                resultado = corridaConexao(nome, nomeRede, porta, contexto);
+              }
+              return resultado;
+            }).thenCompose(Function.identity());
+      } else {
+        metricas.faltaCache();
+        final FalhaRecenteException falhaRecente = obtemFalhaRecente(nome, nomeRede, porta);
+        if (falhaRecente != null) {
+          throw falhaRecente;
+        }
+        corrida = corridaConexao(nome, nomeRede, porta, contexto);
+      }
+    } catch (HappyEyeBallsException excep) {
+      corrida = new CompletableFuture<Amostra>();
+      corrida.completeExceptionally(excep);
+    }
+    return corrida;
+  }
+
+  /**
+   * Inicia a corrida entre todos os endereços do nome que mantém o canal vencedor, registrando o
+   * vencedor no cache e a falha no cache negativo.
+   * 
+   * @param nome chave do cache
+   * @param nomeRede Nome do servidor a ser resolvido.
+   * @param porta Porta do servidor.
+   * @param contexto contexto TLS da corrida por handshake ou null
+   * @return futuro com a amostra vencedora e o seu canal conectado
+   */
+  private CompletableFuture<Amostra> corridaConexao(final String nome, final String nomeRede,
+      final int porta, final SSLContext contexto) {
+    final CompletableFuture<Amostra> corrida;
+    if (encerrado) {
+      corrida = new CompletableFuture<Amostra>();
+      corrida.completeExceptionally(new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_55));
+    } else {
+      corrida = iniciarCorrida(nomeRede, porta, true, false, contexto, null)
+          .whenComplete((amostra, excep) -> registraResultado(nome, nomeRede, porta, excep))
+          .thenApply(amostra -> {
+            registrarAmostra(nome, nomeRede, porta, amostra);
+            return amostra;
+          });
+    }
+    return corrida;
+  }
+
+  /**
+   * Descarta do cache e do registro de IPs expirados um IP que não conectou, caso ele ainda seja o
+   * vencedor registrado.
+   * 
+   * @param nome chave do cache
+   * @param nomeRede Nome do servidor.
+   * @param porta Porta do servidor.
+   * @param enderecoIp IP que não conectou
+   */
+  private void descarta(final String nome, final String nomeRede, final int porta,
+      final InetAddress enderecoIp) {
+    if (isVigente(nomeRede, porta, enderecoIp)) {
+      expirar(nomeRede, porta);
+    }
+    final Registro registro = registros.get(nome);
+    if (registro != null && registro.endereco.equals(enderecoIp)) {
+      registros.remove(nome, registro);
+    }
+  }
+
+  /**
+   * Indica se o IP ainda é o vencedor em cache ou, com a classificação, um dos endereços
+   * classificados, sem registrar acerto nem falta.
+   * 
+   * @param nomeRede Nome do servidor.
+   * @param porta Porta do servidor.
+   * @param enderecoIp IP verificado
+   * @return verdadeiro caso o IP pertença ao cache ou o cache não tenha o destino
+   */
+  boolean isVigente(final String nomeRede, final int porta, final InetAddress enderecoIp) {
+    final CacheProximo.Entrada entrada = proximo.buscar(nomeRede, porta);
+    final boolean vigente;
+    if (entrada != null && entrada.isValida(System.nanoTime())) {
+      vigente = entrada.contem(enderecoIp);
+    } else {
+      final InetAddress enderecoCache = cache.get(chave(nomeRede, porta));
+      vigente = enderecoCache == null || enderecoCache.equals(enderecoIp);
+    }
+    return vigente;
+  }
+
+  /**
+   * Retorna a quantidade de conexões aquecidas ociosas do destino.
+   * 
+   * @param nomeRede Nome do servidor.
+   * @param porta Porta do servidor.
+   * @return quantidade de conexões ociosas, zero sem o pool
+   */
+  int getConexoesAquecidas(final String nomeRede, final int porta) {
+    return pool == null ? 0 : pool.getOciosas(chave(nomeRede, porta));
+  }
+
+  /**
+   * Inicia a resolução do nome e a corrida de conexões, que começa pela primeira família resolvida
+   * (RFC 8305).
+   * 
+   * @param nomeRede Nome do servidor a ser resolvido.
+   * @param porta Porta para teste de conexão.
+   * @param manterVencedor entrega o canal vencedor conectado
+   * @param classificacao tenta todos os endereços e os classifica
+   * @param contexto contexto TLS da corrida por handshake ou null
+   * @param primeira futuro da primeira conexão da classificação ou null
+   * @return futuro com a amostra de melhor tempo de conexão
+   */
+  private CompletableFuture<Amostra> iniciarCorrida(final String nomeRede, final int porta,
+      final boolean manterVencedor, final boolean classificacao, final SSLContext contexto,
+      final CompletableFuture<Amostra> primeira) {
+    CompletableFuture<Amostra> corrida;
+    try {
+      final Resolucao resolucao = resolvedor.resolver(nomeRede);
+      resolucao.getEnderecos(FamiliaEndereco.IPV6).thenAccept(
+          enderecos -> LOGGER.debug(Mensagens.HAPPYEYEBALLS_5, nomeRede, porta, enderecos));
+      resolucao.getEnderecos(FamiliaEndereco.IPV4).thenAccept(
+          enderecos -> LOGGER.debug(Mensagens.HAPPYEYEBALLS_6, nomeRede, porta, enderecos));
+      // Busca o melhor tempo de conecção
+      corrida = mede(new MelhorIp(tempoExpiracao, resolucao, porta, tempoEntreTentativas,
+          tempoResolucao, manterVencedor).preferencia(tempoPreferencia)
+              .corridaOrigens(corridaOrigens).classificar(classificacao)
+              .primeiraConexao(primeira).handshakeTls(contexto, nomeRede)
+              .executorTls(executorTls));
+    } catch (HappyEyeBallsException excep) {
+      corrida = new CompletableFuture<Amostra>();
+      corrida.completeExceptionally(excep);
+    }
+    return corrida;
+  }
+
+  /**
+   * Armazena no cache o IP da amostra vencedora.
+   * 
+   * @param nome chave do cache
+   * @param nomeRede Nome do servidor.
+   * @param porta Porta do servidor.
+   * @param amostra amostra de melhor tempo de conexão
+   * @return O IP da amostra ou null caso não exista amostra.
+   */
+  private InetAddress registrarAmostra(final String nome, final String nomeRede, final int porta,
+      final Amostra amostra) {
+    final InetAddress enderecoIp;
+    if (amostra == null) {
+      enderecoIp = null;
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_7);
+    } else {
+      enderecoIp = amostra.getEnderecoIp();
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_8, nomeRede, porta, enderecoIp);
+      // O cache de uma instância encerrada durante a corrida já foi descartado
+      if (!encerrado) {
+        cache.put(nome, enderecoIp);
+        if (corridaOrigens) {
+          registraOrigem(nome, amostra.getOrigem());
+        }
+        registra(nome, nomeRede, porta, enderecoIp, amostra.getClassificacao());
+      }
+    }
+    return enderecoIp;
+  }
+
+  /**
+   * Armazena a origem vencedora no cache, com a mesma validade do IP, ou a remove quando a origem
+   * foi escolhida pelo sistema.
+   * 
+   * @param nome chave do cache
+   * @param origem endereço local de origem ou null
+   */
+  private void registraOrigem(final String nome, final InetAddress origem) {
+    if (origem == null) {
+      cache.remove(chaveOrigem(nome));
+    } else {
+      cache.put(chaveOrigem(nome), origem);
+    }
+  }
+
+  /**
+   * Registra o IP vencedor no cache próximo e no registro dos vencedores, com os instantes de
+   * expiração, de renovação e de descarte. Os instantes são calculados a partir do tempo de vida
+   * configurado no cache.
+   * 
+   * @param nome chave do cache
+   * @param nomeRede Nome do servidor.
+   * @param porta Porta do servidor.
+   * @param enderecoIp IP vencedor
+   * @param classificacao endereços classificados pela corrida ou null
+   */
+  private void registra(final String nome, final String nomeRede, final int porta,
+      final InetAddress enderecoIp, final List<IpClassificado> classificacao) {
+    final Duration validade =
+        cache.getRuntimeConfiguration().getExpiry().getExpiryForCreation(nome, enderecoIp);
+    final boolean finita = validade != null && !validade.isInfinite();
+    final long agora = System.nanoTime();
+    final long vida =
+        finita ? validade.getTimeUnit().toNanos(validade.getLength()) : VIDA_INFINITA;
+    final long renovacao = limiarRenovacao > 0L ? vida / 100L * limiarRenovacao : vida;
+    proximo.armazenar(nomeRede, new CacheProximo.Entrada(porta, enderecoIp, agora + vida,
+        agora + renovacao, classificacao));
+    registros.put(nome, new Registro(enderecoIp, classificacao, agora + vida, agora + renovacao,
+        finita ? agora + vida + TimeUnit.MILLISECONDS.toNanos(tempoMaximoExpirado) : agora + vida,
+        Math.max(vida - renovacao, TimeUnit.MILLISECONDS.toNanos(tempoExpiracao))));
+  }
+
+  /**
+   * Retorna a exceção de falha recente caso o nome e porta estejam no cache negativo.
+   * 
+   * @param nome chave do cache
+   * @param nomeRede Nome do servidor.
+   * @param porta Porta do servidor.
+   * @return exceção a ser lançada sem nova tentativa ou null
+   */
+  private FalhaRecenteException obtemFalhaRecente(final String nome, final String nomeRede,
+      final int porta) {
+    FalhaRecenteException recente = null;
+    final Falha falha = falhas.get(nome);
+    if (falha != null) {
+      final long restante = falha.ate - System.nanoTime();
+      if (restante > 0L) {
+        LOGGER.debug(Mensagens.HAPPYEYEBALLS_52, nomeRede, porta);
+        recente = new FalhaRecenteException(Mensagens.HAPPYEYEBALLS_50, falha.excecao,
+            TimeUnit.NANOSECONDS.toMillis(restante));
+      }
+    }
+    return recente;
+  }
+
+  /**
+   * Registra o resultado de uma busca no cache negativo. O sucesso limpa as falhas do nome e porta.
+   * Um nome inexistente ou um destino inalcançável fica no cache negativo pelo tempo da sua
+   * categoria, dobrado a cada falha repetida até o tempo máximo.
+   * 
+   * @param nome chave do cache
+   * @param nomeRede Nome do servidor.
+   * @param porta Porta do servidor.
+   * @param excep falha da busca ou null
+   */
+  private void registraResultado(final String nome, final String nomeRede, final int porta,
+      final Throwable excep) {
+    final Throwable causa = excep instanceof CompletionException ? excep.getCause() : excep;
+    final long tempoBase;
+    if (causa == null) {
+      falhas.remove(nome);
+      tempoBase = 0L;
+    } else if (causa instanceof NomeNaoEncontradoException) {
+      tempoBase = tempoNegativoNome;
+    } else if (causa instanceof DestinoInalcancavelException) {
+      tempoBase = tempoNegativoConexao;
+    } else {
+      tempoBase = 0L;
+    }
+    if (tempoBase > 0L) {
+      final long agora = System.nanoTime();
+      final Falha anterior = falhas.get(nome);
+      final int repeticoes = anterior == null
+          || agora - anterior.ate > TimeUnit.MILLISECONDS.toNanos(tempoNegativoMaximo) ? 1
+              : anterior.repeticoes + 1;
+      final long tempo = Math.min(tempoNegativoMaximo, tempoBase << Math.min(repeticoes - 1, 30));
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_51, nomeRede, porta, tempo);
+      falhas.put(nome, new Falha((HappyEyeBallsException) causa, repeticoes,
+          agora + TimeUnit.MILLISECONDS.toNanos(tempo)));
+    }
+  }
+
+  /**
+   * Remove o nome e porta do cache, como se a entrada tivesse expirado.
+   * 
+   * @param nomeRede Nome do servidor.
+   * @param porta Porta do servidor.
+   */
+  void expirar(final String nomeRede, final int porta) {
+    proximo.remover(nomeRede, porta);
+    cache.remove(chave(nomeRede, porta));
+    cache.remove(chaveOrigem(chave(nomeRede, porta)));
+  }
+
+  /**
+   * Monta a chave do ehcache e das buscas em andamento.
+   * 
+   * @param nomeRede Nome do servidor.
+   * @param porta Porta do servidor.
+   * @return chave no formato nome:porta
+   */
+  static String chave(final String nomeRede, final int porta) {
+    return new StringBuffer(nomeRede).append(':').append(porta).toString();
+  }
+
+  /**
+   * Monta a chave do ehcache da origem vencedora, que não coincide com nenhuma chave de nome.
+   * 
+   * @param nome chave do cache do IP
+   * @return chave no formato @nome:porta
+   */
+  private static String chaveOrigem(final String nome) {
+    return new StringBuffer().append('@').append(nome).toString();
+  }
+
+  /**
+   * Cria a atividade para buscar os tempo de conexão e a inicia no reator compartilhado. A conexão
+   * direta aos endereços em cache não é uma corrida e não entra nas métricas de corrida.
    * 
    * @param enderecosIp Lista de endereços IP
+   * @param nomeRede nome do servidor, verificado no handshake TLS
    * @param porta porta do serviço
-   * @return tarefa ser executada ou nulo caso não consiga
+   * @param contexto contexto TLS da corrida por handshake ou null
+   * @return tarefa em execução, que entrega o canal vencedor conectado
    * @throws HappyEyeBallsException caso ocorra algum problema.
    */
-  private Future<Amostra> criaAtividade(final List<? extends InetAddress> enderecosIp,
-      final int porta) throws HappyEyeBallsException {
+  private CompletableFuture<Amostra> criaAtividade(final List<? extends InetAddress> enderecosIp,
+      final String nomeRede, final int porta, final SSLContext contexto)
+      throws HappyEyeBallsException {
     if (enderecosIp == null || enderecosIp.isEmpty()) {
       throw new IllegalArgumentException(Mensagens.HAPPYEYEBALLS_9);
     } else {
-      final MelhorIp melhorIp = new MelhorIp(TEMPO_EXPIRACAO, enderecosIp, porta);
-      return EXECUTOR.submit(melhorIp);
+      final MelhorIp melhorIp = new MelhorIp(tempoExpiracao, enderecosIp, porta,
+          tempoEntreTentativas, true).preferencia(tempoPreferencia)
+              .corridaOrigens(corridaOrigens).handshakeTls(contexto, nomeRede)
+              .executorTls(executorTls);
+      return melhorIp.iniciar(Reator.getReator());
     }
   }
 
   /**
-   * Executa a tarefa e retorna a Amosta.
+   * Inicia a corrida no reator compartilhado e registra o seu início e o seu resultado nas
+   * métricas.
+   * 
+   * @param melhorIp corrida a iniciar
+   * @return tarefa em execução
+   * @throws HappyEyeBallsException caso o reator não possa ser iniciado.
+   */
+  private CompletableFuture<Amostra> mede(final MelhorIp melhorIp) throws HappyEyeBallsException {
+    final Reator reator = Reator.getReator();
+    metricas.corridaIniciada();
+    // O resultado é registrado antes de ser entregue aos dependentes da corrida
+    return melhorIp.iniciar(reator).whenComplete(
+        (amostra, excep) -> metricas.corridaTerminada(amostra, melhorIp.isExpirou()));
+  }
+
+  /**
+   * Aguarda a tarefa e retorna o seu resultado.
    * 
-   * @param tarefa tarefa para buscar o tempo de execução
-   * @return amostra do tempo de conexão
+   * @param tarefa tarefa em execução
+   * @return resultado da tarefa
    * @throws HappyEyeBallsException caso ocorra algum problema.
    */
-  private Amostra executarTarefa(final Future<Amostra> tarefa) throws HappyEyeBallsException {
+  private <T> T executarTarefa(final Future<T> tarefa) throws HappyEyeBallsException {
     try {
       if (tarefa == null) {
         throw new IllegalArgumentException(Mensagens.HAPPYEYEBALLS_10);
@@ -194,46 +1323,105 @@ final class HappyEyeballsImpl implements HappyEyeballs {
     } catch (InterruptedException exce) {
       throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_11, exce);
     } catch (ExecutionException exce) {
+      if (exce.getCause() instanceof HappyEyeBallsException) {
+        throw (HappyEyeBallsException) exce.getCause();
+      }
       throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_12, exce);
     }
   }
 
   /**
-   * Obtém o melhor IP usando busca em threads e conexão assíncrona.
-   * 
-   * @param enderecosIpV4 Lista de IPV4
-   * @param enderecosIpV6 Lista de IPV6
-   * @param porta Porta de conexão
-   * @return O melhor IP
-   * @throws HappyEyeBallsException Exceção caso ocorra algum problema.
+   * Último IP vencedor de um nome e porta.
    */
-  private Amostra obterMelhorIp(final List<Inet4Address> enderecosIpV4,
-      final List<Inet6Address> enderecosIpV6, final int porta) throws HappyEyeBallsException {
+  private static final class Registro {
 
-    Future<Amostra> ipv6Futuro = null;
-    Future<Amostra> ipv4Futuro = null;
-    Amostra melhorIpV6 = null;
-    Amostra melhorIpV4 = null;
+    /**
+     * IP vencedor.
+     */
+    private final InetAddress endereco;
+    /**
+     * Endereços classificados pela corrida, ou null quando a corrida não os classificou.
+     */
+    private final List<IpClassificado> classificacao;
+    /**
+     * Instante em nanossegundos em que a entrada do cache expira.
+     */
+    private final long expiraEm;
+    /**
+     * Instante em nanossegundos a partir do qual um acerto no cache refaz a corrida.
+     */
+    private final long renovarApos;
+    /**
+     * Instante em nanossegundos a partir do qual o IP não é mais servido.
+     */
+    private final long descartarApos;
+    /**
+     * Intervalo em nanossegundos até a nova tentativa de uma renovação que falhou.
+     */
+    private final long adiamento;
 
-    if (enderecosIpV6 != null && !enderecosIpV6.isEmpty()) {
-      ipv6Futuro = criaAtividade(enderecosIpV6, porta);
-    }
-    if (enderecosIpV4 != null && !enderecosIpV4.isEmpty()) {
-      ipv4Futuro = criaAtividade(enderecosIpV4, porta);
+    /**
+     * Construtor.
+     * 
+     * @param endereco IP vencedor
+     * @param classificacao endereços classificados ou null
+     * @param expiraEm instante da expiração em nanossegundos
+     * @param renovarApos instante da renovação antecipada em nanossegundos
+     * @param descartarApos instante do descarte em nanossegundos
+     * @param adiamento intervalo até a nova tentativa de renovação em nanossegundos
+     */
+    Registro(final InetAddress endereco, final List<IpClassificado> classificacao,
+        final long expiraEm, final long renovarApos, final long descartarApos,
+        final long adiamento) {
+      this.endereco = endereco;
+      this.classificacao = classificacao;
+      this.expiraEm = expiraEm;
+      this.renovarApos = renovarApos;
+      this.descartarApos = descartarApos;
+      this.adiamento = adiamento;
     }
-    if (ipv6Futuro != null) {
-      melhorIpV6 = executarTarefa(ipv6Futuro);
-    }
-    if (ipv4Futuro != null) {
-      melhorIpV4 = executarTarefa(ipv4Futuro);
+
+    /**
+     * Retorna o registro com a renovação antecipada adiada a partir do instante informado.
+     * 
+     * @param agora instante da falha da renovação em nanossegundos
+     * @return registro adiado
+     */
+    Registro adiar(final long agora) {
+      return new Registro(endereco, classificacao, expiraEm, agora + adiamento, descartarApos,
+          adiamento);
     }
-    // Verifica se existem endereços IPV6
-    Amostra melhor;
-    if (melhorIpV6 == null) {
-      melhor = melhorIpV4;
-    } else {
-      melhor = melhorIpV6.compareTo(melhorIpV4) < 0 ? melhorIpV6 : melhorIpV4;
+  }
+
+  /**
+   * Falha recente de um nome e porta.
+   */
+  private static final class Falha {
+
+    /**
+     * Exceção da última falha.
+     */
+    private final HappyEyeBallsException excecao;
+    /**
+     * Quantidade de falhas consecutivas.
+     */
+    private final int repeticoes;
+    /**
+     * Instante em nanossegundos até o qual novas tentativas são suspensas.
+     */
+    private final long ate;
+
+    /**
+     * Construtor.
+     * 
+     * @param excecao exceção da última falha
+     * @param repeticoes quantidade de falhas consecutivas
+     * @param ate instante do fim da suspensão em nanossegundos
+     */
+    Falha(final HappyEyeBallsException excecao, final int repeticoes, final long ate) {
+      this.excecao = excecao;
+      this.repeticoes = repeticoes;
+      this.ate = ate;
     }
-    return melhor;
   }
 }
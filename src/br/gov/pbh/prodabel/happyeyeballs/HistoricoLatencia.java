@@ -0,0 +1,258 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Histórico de latência de conexão por endereço, compartilhado por todas as corridas. Cada endereço
+ * ocupa uma posição de vetores primitivos com a média móvel exponencial (EWMA) dos tempos de
+ * conexão em nanossegundos, as contagens de sucessos e falhas e a quantidade de falhas seguidas
+ * desde o último sucesso, que decide se o endereço está funcionando. Quando o histórico está cheio,
+ * o endereço atualizado há mais tempo é descartado.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+final class HistoricoLatencia {
+
+  /**
+   * Capacidade padrão do histórico.
+   */
+  static final int CAPACIDADE_PADRAO = 4096;
+
+  /**
+   * Deslocamento do fator de suavização: cada amostra pesa 1/8 na média, como o SRTT do TCP
+   * (RFC 6298).
+   */
+  private static final int SUAVIZACAO = 3;
+
+  /**
+   * Valor da média para endereços sem nenhum sucesso.
+   */
+  static final long SEM_MEDIA = -1L;
+
+  /**
+   * Histórico compartilhado.
+   */
+  private static final HistoricoLatencia HISTORICO = new HistoricoLatencia(CAPACIDADE_PADRAO);
+
+  /**
+   * Posição de cada endereço nos vetores.
+   */
+  private final Map<InetAddress, Integer> posicoes;
+
+  /**
+   * Endereço de cada posição.
+   */
+  private final InetAddress[] enderecos;
+
+  /**
+   * Média móvel exponencial do tempo de conexão em nanossegundos.
+   */
+  private final long[] medias;
+
+  /**
+   * Quantidade de conexões bem sucedidas.
+   */
+  private final int[] sucessos;
+
+  /**
+   * Quantidade de conexões que falharam.
+   */
+  private final int[] falhas;
+
+  /**
+   * Quantidade de falhas seguidas desde o último sucesso.
+   */
+  private final int[] falhasSeguidas;
+
+  /**
+   * Ordem da última atualização de cada posição.
+   */
+  private final long[] atualizacoes;
+
+  /**
+   * Contador de atualizações.
+   */
+  private long relogio;
+
+  /**
+   * Quantidade de posições ocupadas.
+   */
+  private int ocupadas;
+
+  /**
+   * Construtor.
+   *
+   * @param capacidade quantidade máxima de endereços
+   */
+  HistoricoLatencia(final int capacidade) {
+    super();
+    posicoes = new HashMap<InetAddress, Integer>(capacidade * 2);
+    enderecos = new InetAddress[capacidade];
+    medias = new long[capacidade];
+    sucessos = new int[capacidade];
+    falhas = new int[capacidade];
+    falhasSeguidas = new int[capacidade];
+    atualizacoes = new long[capacidade];
+  }
+
+  /**
+   * Retorna o histórico compartilhado.
+   *
+   * @return histórico compartilhado
+   */
+  static HistoricoLatencia getHistorico() {
+    return HISTORICO;
+  }
+
+  /**
+   * Registra uma conexão bem sucedida, atualiza a média do endereço e zera as suas falhas seguidas.
+   *
+   * @param endereco endereço conectado
+   * @param tempo tempo de conexão em nanossegundos
+   * @return média suavizada do endereço em nanossegundos, já com esta amostra
+   */
+  synchronized long registrarSucesso(final InetAddress endereco, final long tempo) {
+    final int posicao = posicao(endereco);
+    final long amostra = Math.max(0L, tempo);
+    if (sucessos[posicao] == 0) {
+      medias[posicao] = amostra;
+    } else {
+      medias[posicao] += (amostra - medias[posicao]) >> SUAVIZACAO;
+    }
+    sucessos[posicao]++;
+    falhasSeguidas[posicao] = 0;
+    return medias[posicao];
+  }
+
+  /**
+   * Registra uma conexão que falhou ou expirou.
+   *
+   * @param endereco endereço que não conectou
+   */
+  synchronized void registrarFalha(final InetAddress endereco) {
+    final int posicao = posicao(endereco);
+    falhas[posicao]++;
+    falhasSeguidas[posicao]++;
+  }
+
+  /**
+   * Retorna a média suavizada do tempo de conexão do endereço.
+   *
+   * @param endereco endereço consultado
+   * @return média em nanossegundos ou {@link #SEM_MEDIA} caso não exista sucesso registrado
+   */
+  synchronized long getMedia(final InetAddress endereco) {
+    final Integer posicao = posicoes.get(endereco);
+    return posicao == null || sucessos[posicao] == 0 ? SEM_MEDIA : medias[posicao];
+  }
+
+  /**
+   * Retorna a quantidade de conexões bem sucedidas do endereço.
+   *
+   * @param endereco endereço consultado
+   * @return quantidade de sucessos
+   */
+  synchronized int getSucessos(final InetAddress endereco) {
+    final Integer posicao = posicoes.get(endereco);
+    return posicao == null ? 0 : sucessos[posicao];
+  }
+
+  /**
+   * Retorna a quantidade de conexões que falharam no endereço.
+   *
+   * @param endereco endereço consultado
+   * @return quantidade de falhas
+   */
+  synchronized int getFalhas(final InetAddress endereco) {
+    final Integer posicao = posicoes.get(endereco);
+    return posicao == null ? 0 : falhas[posicao];
+  }
+
+  /**
+   * Ordena os endereços pelo histórico, mantendo a ordem original entre os empatados. Endereços
+   * cuja última tentativa conectou vêm primeiro, pela menor média; em seguida os desconhecidos; por
+   * último os que falharam desde o último sucesso, de forma que um endereço que deixa de funcionar
+   * perde a frente logo na primeira falha, por mais sucessos que tenha acumulado.
+   *
+   * @param lista endereços a ordenar
+   * @return nova lista ordenada
+   */
+  synchronized List<InetAddress> ordenar(final List<? extends InetAddress> lista) {
+    final List<InetAddress> ordenados = new ArrayList<InetAddress>(lista);
+    if (ordenados.size() > 1) {
+      final Map<InetAddress, Long> chaves = new HashMap<InetAddress, Long>(ordenados.size() * 2);
+      for (final InetAddress endereco : ordenados) {
+        chaves.put(endereco, chave(endereco));
+      }
+      Collections.sort(ordenados, (primeiro, segundo) -> Long.compare(chaves.get(primeiro),
+          chaves.get(segundo)));
+    }
+    return ordenados;
+  }
+
+  /**
+   * Descarta todo o histórico.
+   */
+  synchronized void limpar() {
+    posicoes.clear();
+    Arrays.fill(enderecos, null);
+    ocupadas = 0;
+  }
+
+  /**
+   * Chave de ordenação de um endereço.
+   *
+   * @param endereco endereço
+   * @return chave, menor para os endereços preferidos
+   */
+  private long chave(final InetAddress endereco) {
+    final Integer posicao = posicoes.get(endereco);
+    final long chave;
+    if (posicao == null || sucessos[posicao] == 0 && falhas[posicao] == 0) {
+      chave = Long.MAX_VALUE - 1L;
+    } else if (falhasSeguidas[posicao] > 0) {
+      chave = Long.MAX_VALUE;
+    } else {
+      chave = medias[posicao];
+    }
+    return chave;
+  }
+
+  /**
+   * Retorna a posição do endereço, ocupando uma nova posição ou reutilizando a mais antiga.
+   *
+   * @param endereco endereço
+   * @return posição do endereço nos vetores
+   */
+  private int posicao(final InetAddress endereco) {
+    Integer posicao = posicoes.get(endereco);
+    if (posicao == null) {
+      if (ocupadas < enderecos.length) {
+        posicao = ocupadas++;
+      } else {
+        posicao = 0;
+        for (int i = 1; i < atualizacoes.length; i++) {
+          if (atualizacoes[i] < atualizacoes[posicao]) {
+            posicao = i;
+          }
+        }
+        posicoes.remove(enderecos[posicao]);
+      }
+      enderecos[posicao] = endereco;
+      medias[posicao] = 0L;
+      sucessos[posicao] = 0;
+      falhas[posicao] = 0;
+      falhasSeguidas[posicao] = 0;
+      posicoes.put(endereco, posicao);
+    }
+    atualizacoes[posicao] = ++relogio;
+    return posicao;
+  }
+}
@@ -0,0 +1,560 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InterfaceAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Endereços das interfaces de rede locais, compartilhados por todas as corridas. A consulta ao
+ * {@link NetworkInterface} é guardada em uma {@link Vista} imutável, renovada em segundo plano
+ * quando fica mais velha que o intervalo de atualização ou quando uma conexão falha ao iniciar, de
+ * forma que a ordenação dos destinos não consulta o sistema operacional a cada corrida.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+final class InterfacesLocais {
+
+  /**
+   * Intervalo padrão de atualização das interfaces em milissegundos.
+   */
+  static final long ATUALIZACAO_PADRAO = 5000L;
+
+  /**
+   * Interface de log.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(InterfacesLocais.class);
+
+  /**
+   * Interfaces compartilhadas.
+   */
+  private static final InterfacesLocais INTERFACES =
+      new InterfacesLocais(Long.getLong(Mensagens.HAPPYEYEBALLS_69, ATUALIZACAO_PADRAO));
+
+  /**
+   * Intervalo de atualização em nanossegundos.
+   */
+  private final long atualizacao;
+
+  /**
+   * Indica se uma atualização está em andamento.
+   */
+  private final AtomicBoolean atualizando = new AtomicBoolean();
+
+  /**
+   * Última consulta às interfaces.
+   */
+  private volatile Vista vista;
+
+  /**
+   * Instante em nanossegundos da última consulta.
+   */
+  private volatile long atualizadaEm;
+
+  /**
+   * Construtor.
+   *
+   * @param atualizacao intervalo de atualização em milissegundos
+   */
+  InterfacesLocais(final long atualizacao) {
+    super();
+    this.atualizacao = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, atualizacao));
+  }
+
+  /**
+   * Retorna as interfaces compartilhadas.
+   *
+   * @return interfaces compartilhadas
+   */
+  static InterfacesLocais getInterfaces() {
+    return INTERFACES;
+  }
+
+  /**
+   * Retorna a última consulta às interfaces. A primeira chamada consulta o sistema; depois, uma
+   * consulta vencida é devolvida enquanto a atualização corre em segundo plano.
+   *
+   * @return vista das interfaces
+   */
+  Vista getVista() {
+    Vista atual = vista;
+    if (atual == null) {
+      synchronized (this) {
+        if (vista == null) {
+          vista = consultar();
+          atualizadaEm = System.nanoTime();
+        }
+        atual = vista;
+      }
+    } else if (System.nanoTime() - atualizadaEm >= atualizacao
+        && atualizando.compareAndSet(false, true)) {
+      try {
+        CompletableFuture.runAsync(this::atualizar);
+      } catch (RejectedExecutionException excep) {
+        atualizando.set(false);
+      }
+    }
+    return atual;
+  }
+
+  /**
+   * Força a atualização das interfaces na próxima consulta.
+   */
+  void invalidar() {
+    atualizadaEm = System.nanoTime() - atualizacao;
+  }
+
+  /**
+   * Consulta as interfaces e substitui a vista.
+   */
+  private void atualizar() {
+    try {
+      vista = consultar();
+      atualizadaEm = System.nanoTime();
+    } finally {
+      atualizando.set(false);
+    }
+  }
+
+  /**
+   * Consulta os endereços das interfaces ativas.
+   *
+   * @return vista das interfaces, desconhecida caso a consulta falhe
+   */
+  static Vista consultar() {
+    Vista consultada;
+    try {
+      final List<InetAddress> enderecos = new ArrayList<InetAddress>();
+      final List<Integer> prefixos = new ArrayList<Integer>();
+      final Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+      while (interfaces != null && interfaces.hasMoreElements()) {
+        final NetworkInterface rede = interfaces.nextElement();
+        if (rede.isUp()) {
+          for (final InterfaceAddress endereco : rede.getInterfaceAddresses()) {
+            enderecos.add(endereco.getAddress());
+            prefixos.add((int) endereco.getNetworkPrefixLength());
+          }
+        }
+      }
+      final int[] tamanhos = new int[prefixos.size()];
+      for (int i = 0; i < tamanhos.length; i++) {
+        tamanhos[i] = prefixos.get(i);
+      }
+      consultada = new Vista(enderecos.toArray(new InetAddress[enderecos.size()]), tamanhos);
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_70, consultada);
+    } catch (SocketException excep) {
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_71, excep);
+      consultada = new Vista(null, null);
+    }
+    return consultada;
+  }
+
+  /**
+   * Endereços locais em um instante, com a seleção de endereços de destino da RFC 6724. Cada
+   * destino é associado ao endereço local que seria a sua origem; os destinos sem origem possível
+   * são inalcançáveis e os demais são ordenados pelas regras da seção 6.
+   */
+  static final class Vista {
+
+    /**
+     * Escopo de enlace.
+     */
+    private static final int ESCOPO_ENLACE = 0x2;
+
+    /**
+     * Escopo de site, obsoleto.
+     */
+    private static final int ESCOPO_SITE = 0x5;
+
+    /**
+     * Escopo global.
+     */
+    private static final int ESCOPO_GLOBAL = 0xE;
+
+    /**
+     * Endereço IPV6 de loopback (::1).
+     */
+    private static final byte[] LOOPBACK = prefixo(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1);
+
+    /**
+     * Prefixo dos endereços IPV4 mapeados em IPV6 (::ffff:0:0/96).
+     */
+    private static final byte[] MAPEADO = prefixo(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0xff, 0xff);
+
+    /**
+     * Prefixos da tabela de política padrão (RFC 6724, seção 2.1).
+     */
+    private static final byte[][] POLITICA_PREFIXOS = {LOOPBACK, prefixo(), MAPEADO,
+        prefixo(0x20, 0x02), prefixo(0x20, 0x01, 0, 0), prefixo(0xfc), prefixo(),
+        prefixo(0xfe, 0xc0), prefixo(0x3f, 0xfe)};
+
+    /**
+     * Tamanho dos prefixos da tabela de política.
+     */
+    private static final int[] POLITICA_TAMANHOS = {128, 0, 96, 16, 32, 7, 96, 10, 16};
+
+    /**
+     * Precedência de cada prefixo da tabela de política.
+     */
+    private static final int[] POLITICA_PRECEDENCIAS = {50, 40, 35, 30, 5, 3, 1, 1, 1};
+
+    /**
+     * Rótulo de cada prefixo da tabela de política.
+     */
+    private static final int[] POLITICA_ROTULOS = {0, 1, 4, 2, 5, 13, 3, 11, 12};
+
+    /**
+     * Endereços locais, ou null quando a consulta falhou.
+     */
+    private final InetAddress[] locais;
+
+    /**
+     * Endereços locais em 16 bytes, com os IPV4 mapeados em IPV6.
+     */
+    private final byte[][] bytes;
+
+    /**
+     * Tamanho do prefixo de rede de cada endereço local.
+     */
+    private final int[] prefixos;
+
+    /**
+     * Escopo de cada endereço local.
+     */
+    private final int[] escopos;
+
+    /**
+     * Rótulo de cada endereço local.
+     */
+    private final int[] rotulos;
+
+    /**
+     * Construtor.
+     *
+     * @param locais endereços locais, ou null quando desconhecidos
+     * @param prefixos tamanho do prefixo de rede de cada endereço local
+     */
+    Vista(final InetAddress[] locais, final int[] prefixos) {
+      super();
+      this.locais = locais == null ? null : locais.clone();
+      final int tamanho = locais == null ? 0 : locais.length;
+      this.prefixos = new int[tamanho];
+      bytes = new byte[tamanho][];
+      escopos = new int[tamanho];
+      rotulos = new int[tamanho];
+      for (int i = 0; i < tamanho; i++) {
+        bytes[i] = mapeia(locais[i]);
+        this.prefixos[i] = locais[i] instanceof Inet4Address ? prefixos[i] + 96 : prefixos[i];
+        escopos[i] = escopo(bytes[i]);
+        rotulos[i] = POLITICA_ROTULOS[politica(bytes[i])];
+      }
+    }
+
+    /**
+     * Indica se existe um endereço local capaz de alcançar o destino. Com as interfaces
+     * desconhecidas, todos os destinos são considerados alcançáveis.
+     *
+     * @param destino endereço de destino
+     * @return verdadeiro caso o destino seja alcançável
+     */
+    boolean isAlcancavel(final InetAddress destino) {
+      return locais == null || origem(destino, mapeia(destino)) >= 0;
+    }
+
+    /**
+     * Ordena destinos da mesma família pela RFC 6724, mantendo a ordem original entre os empatados.
+     * Os destinos inalcançáveis são retirados da lista e acrescentados aos descartados.
+     *
+     * @param destinos destinos da mesma família a ordenar
+     * @param descartados recebe os destinos inalcançáveis
+     * @return nova lista com os destinos alcançáveis ordenados
+     */
+    List<InetAddress> ordenar(final Collection<? extends InetAddress> destinos,
+        final Collection<InetAddress> descartados) {
+      final List<Destino> alcancaveis = new ArrayList<Destino>(destinos.size());
+      for (final InetAddress endereco : destinos) {
+        final byte[] destino = mapeia(endereco);
+        final int origem = locais == null ? -1 : origem(endereco, destino);
+        if (locais != null && origem < 0) {
+          LOGGER.debug(Mensagens.HAPPYEYEBALLS_72, endereco);
+          descartados.add(endereco);
+        } else {
+          alcancaveis.add(new Destino(endereco, destino, origem));
+        }
+      }
+      Collections.sort(alcancaveis);
+      final List<InetAddress> ordenados = new ArrayList<InetAddress>(alcancaveis.size());
+      for (final Destino destino : alcancaveis) {
+        ordenados.add(destino.endereco);
+      }
+      return ordenados;
+    }
+
+    /**
+     * Retorna os endereços locais que podem ser a origem de uma conexão ao destino: os da mesma
+     * família com o menor escopo que alcança o destino, sem repetição, da melhor para a pior
+     * origem. Num host com vários enlaces, cada endereço global é uma rota de saída diferente.
+     *
+     * @param destino endereço de destino
+     * @return origens possíveis, vazia quando as interfaces são desconhecidas ou nenhuma alcança
+     *         o destino
+     */
+    List<InetAddress> origens(final InetAddress destino) {
+      final List<InetAddress> origens = new ArrayList<InetAddress>();
+      final int escolhida = locais == null ? -1 : origem(destino, mapeia(destino));
+      if (escolhida >= 0) {
+        final boolean ipv4 = destino instanceof Inet4Address;
+        origens.add(locais[escolhida]);
+        for (int i = 0; i < locais.length; i++) {
+          if (locais[i] instanceof Inet4Address == ipv4 && escopos[i] == escopos[escolhida]
+              && !origens.contains(locais[i])) {
+            origens.add(locais[i]);
+          }
+        }
+      }
+      return origens;
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.toString(locais);
+    }
+
+    /**
+     * Escolhe o endereço local de origem do destino: entre os da mesma família cujo escopo alcança
+     * o destino, o de menor escopo, depois o de mesmo rótulo e depois o de maior prefixo comum
+     * (RFC 6724, seção 5).
+     *
+     * @param endereco endereço de destino
+     * @param destino destino em 16 bytes
+     * @return posição do endereço local ou -1 caso nenhum alcance o destino
+     */
+    private int origem(final InetAddress endereco, final byte[] destino) {
+      final boolean ipv4 = endereco instanceof Inet4Address;
+      final int escopo = escopo(destino);
+      final int rotulo = POLITICA_ROTULOS[politica(destino)];
+      int escolhida = -1;
+      int comumEscolhida = -1;
+      for (int i = 0; i < bytes.length; i++) {
+        if (locais[i] instanceof Inet4Address == ipv4 && escopos[i] >= escopo) {
+          final int comum = prefixoComum(bytes[i], destino, prefixos[i]);
+          if (escolhida < 0 || comparaOrigens(i, comum, escolhida, comumEscolhida, rotulo) < 0) {
+            escolhida = i;
+            comumEscolhida = comum;
+          }
+        }
+      }
+      return escolhida;
+    }
+
+    /**
+     * Compara dois endereços locais como origem de um destino.
+     *
+     * @param primeira posição do primeiro endereço local
+     * @param comumPrimeira prefixo comum do primeiro endereço com o destino
+     * @param segunda posição do segundo endereço local
+     * @param comumSegunda prefixo comum do segundo endereço com o destino
+     * @param rotulo rótulo do destino
+     * @return negativo caso o primeiro endereço seja a melhor origem
+     */
+    private int comparaOrigens(final int primeira, final int comumPrimeira, final int segunda,
+        final int comumSegunda, final int rotulo) {
+      int ret = Integer.compare(escopos[primeira], escopos[segunda]);
+      if (ret == 0) {
+        ret = Boolean.compare(rotulos[segunda] == rotulo, rotulos[primeira] == rotulo);
+      }
+      if (ret == 0) {
+        ret = Integer.compare(comumSegunda, comumPrimeira);
+      }
+      return ret;
+    }
+
+    /**
+     * Monta um prefixo de 16 bytes a partir dos bytes iniciais.
+     *
+     * @param inicio bytes iniciais do prefixo
+     * @return prefixo em 16 bytes
+     */
+    private static byte[] prefixo(final int... inicio) {
+      final byte[] prefixo = new byte[16];
+      for (int i = 0; i < inicio.length; i++) {
+        prefixo[i] = (byte) inicio[i];
+      }
+      return prefixo;
+    }
+
+    /**
+     * Retorna o endereço em 16 bytes, com o IPV4 mapeado em IPV6 (::ffff:a.b.c.d).
+     *
+     * @param endereco endereço
+     * @return endereço em 16 bytes
+     */
+    private static byte[] mapeia(final InetAddress endereco) {
+      final byte[] original = endereco.getAddress();
+      final byte[] mapeado;
+      if (original.length == 4) {
+        mapeado = prefixo(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0xff, 0xff);
+        System.arraycopy(original, 0, mapeado, 12, 4);
+      } else {
+        mapeado = original;
+      }
+      return mapeado;
+    }
+
+    /**
+     * Retorna o escopo do endereço (RFC 6724, seção 3.1). Os endereços IPV4 de loopback e de
+     * enlace têm escopo de enlace e os demais, escopo global.
+     *
+     * @param endereco endereço em 16 bytes
+     * @return escopo
+     */
+    private static int escopo(final byte[] endereco) {
+      final int escopo;
+      if (prefixoComum(endereco, MAPEADO, 96) == 96) {
+        escopo = endereco[12] == 127 || endereco[12] == (byte) 169 && endereco[13] == (byte) 254
+            ? ESCOPO_ENLACE : ESCOPO_GLOBAL;
+      } else if (endereco[0] == (byte) 0xff) {
+        escopo = endereco[1] & 0x0f;
+      } else if (endereco[0] == (byte) 0xfe && (endereco[1] & 0xc0) == 0x80
+          || prefixoComum(endereco, LOOPBACK, 128) == 128) {
+        escopo = ESCOPO_ENLACE;
+      } else if (endereco[0] == (byte) 0xfe && (endereco[1] & 0xc0) == 0xc0) {
+        escopo = ESCOPO_SITE;
+      } else {
+        escopo = ESCOPO_GLOBAL;
+      }
+      return escopo;
+    }
+
+    /**
+     * Retorna a posição na tabela de política do maior prefixo que contém o endereço.
+     *
+     * @param endereco endereço em 16 bytes
+     * @return posição na tabela de política
+     */
+    private static int politica(final byte[] endereco) {
+      int escolhida = 1;
+      for (int i = 0; i < POLITICA_PREFIXOS.length; i++) {
+        if (POLITICA_TAMANHOS[i] > POLITICA_TAMANHOS[escolhida] && prefixoComum(endereco,
+            POLITICA_PREFIXOS[i], POLITICA_TAMANHOS[i]) == POLITICA_TAMANHOS[i]) {
+          escolhida = i;
+        }
+      }
+      return escolhida;
+    }
+
+    /**
+     * Retorna a quantidade de bits iniciais iguais dos dois endereços.
+     *
+     * @param primeiro endereço em 16 bytes
+     * @param segundo endereço em 16 bytes
+     * @param limite quantidade máxima de bits comparados
+     * @return quantidade de bits iguais
+     */
+    private static int prefixoComum(final byte[] primeiro, final byte[] segundo,
+        final int limite) {
+      int comum = 0;
+      boolean iguais = true;
+      for (int i = 0; iguais && i < limite; i++) {
+        final int deslocamento = 7 - (i & 7);
+        iguais = (primeiro[i >> 3] >> deslocamento & 1) == (segundo[i >> 3] >> deslocamento & 1);
+        if (iguais) {
+          comum++;
+        }
+      }
+      return comum;
+    }
+
+    /**
+     * Destino com os atributos comparados pelas regras da RFC 6724, seção 6.
+     */
+    private final class Destino implements Comparable<Destino> {
+
+      /**
+       * Endereço de destino.
+       */
+      private final InetAddress endereco;
+
+      /**
+       * Regra 2: o escopo do destino é igual ao da origem.
+       */
+      private final boolean escopoIgual;
+
+      /**
+       * Regra 5: o rótulo do destino é igual ao da origem.
+       */
+      private final boolean rotuloIgual;
+
+      /**
+       * Regra 6: precedência do destino.
+       */
+      private final int precedencia;
+
+      /**
+       * Regra 8: escopo do destino.
+       */
+      private final int escopo;
+
+      /**
+       * Regra 9: prefixo comum com a origem, somente entre destinos IPV6.
+       */
+      private final int prefixo;
+
+      /**
+       * Indica se o destino é IPV6.
+       */
+      private final boolean ipv6;
+
+      /**
+       * Construtor.
+       *
+       * @param endereco endereço de destino
+       * @param destino destino em 16 bytes
+       * @param origem posição do endereço local de origem ou -1 quando desconhecido
+       */
+      Destino(final InetAddress endereco, final byte[] destino, final int origem) {
+        this.endereco = endereco;
+        final int posicao = politica(destino);
+        escopo = escopo(destino);
+        precedencia = POLITICA_PRECEDENCIAS[posicao];
+        ipv6 = !(endereco instanceof Inet4Address);
+        escopoIgual = origem < 0 || escopos[origem] == escopo;
+        rotuloIgual = origem < 0 || rotulos[origem] == POLITICA_ROTULOS[posicao];
+        prefixo = origem < 0 || !ipv6 ? 0 : prefixoComum(bytes[origem], destino, prefixos[origem]);
+      }
+
+      @Override
+      public int compareTo(final Destino outro) {
+        int ret = Boolean.compare(outro.escopoIgual, escopoIgual);
+        if (ret == 0) {
+          ret = Boolean.compare(outro.rotuloIgual, rotuloIgual);
+        }
+        if (ret == 0) {
+          ret = Integer.compare(outro.precedencia, precedencia);
+        }
+        if (ret == 0) {
+          ret = Integer.compare(escopo, outro.escopo);
+        }
+        if (ret == 0 && ipv6 && outro.ipv6) {
+          ret = Integer.compare(outro.prefixo, prefixo);
+        }
+        return ret;
+      }
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.net.InetAddress;
+
+/**
+ * Endereço que conectou numa corrida de classificação, com o seu tempo de conexão.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+public final class IpClassificado {
+
+  /**
+   * IP de destino.
+   */
+  private final InetAddress endereco;
+  /**
+   * Endereço local de origem, ou null quando escolhido pelo sistema.
+   */
+  private final InetAddress origem;
+  /**
+   * Tempo de conexão em nanossegundos.
+   */
+  private final long latencia;
+
+  /**
+   * Construtor.
+   *
+   * @param endereco IP de destino
+   * @param origem endereço local de origem ou null
+   * @param latencia tempo de conexão em nanossegundos
+   */
+  IpClassificado(final InetAddress endereco, final InetAddress origem, final long latencia) {
+    super();
+    this.endereco = endereco;
+    this.origem = origem;
+    this.latencia = latencia;
+  }
+
+  /**
+   * Retorna o IP de destino.
+   *
+   * @return IP de destino
+   */
+  public InetAddress getEndereco() {
+    return endereco;
+  }
+
+  /**
+   * Retorna o endereço local de origem.
+   *
+   * @return endereço de origem ou null caso a corrida não tenha escolhido a origem
+   */
+  public InetAddress getOrigem() {
+    return origem;
+  }
+
+  /**
+   * Retorna o tempo de conexão, pela média suavizada do histórico do endereço quando existente.
+   *
+   * @return tempo de conexão em nanossegundos
+   */
+  public long getLatencia() {
+    return latencia;
+  }
+
+  /**
+   * Retorna a representação em texto do endereço.
+   *
+   * @return endereço, origem e tempo de conexão
+   */
+  @Override
+  public String toString() {
+    return new StringBuffer(Mensagens.HAPPYEYEBALLS_87).append(endereco)
+        .append(Mensagens.HAPPYEYEBALLS_88).append(origem).append(Mensagens.HAPPYEYEBALLS_89)
+        .append(latencia).append(Mensagens.HAPPYEYEBALLS_15).toString();
+  }
+}
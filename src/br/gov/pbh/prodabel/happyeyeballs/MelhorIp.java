@@ -3,27 +3,60 @@ package br.gov.pbh.prodabel.happyeyeballs;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
 
 /**
- * Tarefa para coletar os IPs que conectaram no menor tempo.
- * 
+ * Corrida para coletar os IPs que conectaram no menor tempo. A corrida é conduzida pelo
+ * {@link Reator} compartilhado, sem ocupar uma thread enquanto aguarda as conexões.
+ *
  * @author Guilherme
  * @version 0.1
  */
-class MelhorIp implements Callable<Amostra> {
+class MelhorIp {
 
+  /**
+   * Valor mínimo do intervalo entre tentativas de conexão em milissegundos (RFC 8305).
+   */
+  static final long TEMPO_ENTRE_TENTATIVAS_MINIMO = 10L;
+  /**
+   * Valor máximo do intervalo entre tentativas de conexão em milissegundos (RFC 8305).
+   */
+  static final long TEMPO_ENTRE_TENTATIVAS_MAXIMO = 2000L;
+  /**
+   * Valor padrão do intervalo entre tentativas de conexão em milissegundos (RFC 8305).
+   */
+  static final long TEMPO_ENTRE_TENTATIVAS_PADRAO = 250L;
+  /**
+   * Valor padrão do tempo de espera pelos endereços IPV6 após a chegada dos IPV4 (RFC 8305).
+   */
+  static final long TEMPO_RESOLUCAO_PADRAO = 50L;
   /**
    * Interface de log.
    */
@@ -33,26 +66,157 @@ class MelhorIp implements Callable<Amostra> {
    */
   private final long tempoTimeOut;
   /**
-   * Lista de IPs.
+   * Resolução que fornece os IPs da corrida.
    */
-  private final List<? extends InetAddress> enderecosIp;
+  private final Resolucao resolucao;
   /**
    * Porta para teste de conectividade.
    */
   private final int porta;
+  /**
+   * Intervalo entre o início de duas tentativas de conexão em milissegundos.
+   */
+  private final long tempoEntreTentativas;
+  /**
+   * Tempo de espera pelos endereços IPV6 após a chegada dos IPV4 em milissegundos.
+   */
+  private final long tempoResolucao;
+  /**
+   * Indica se o canal vencedor deve ser entregue conectado em vez de fechado.
+   */
+  private final boolean manterVencedor;
+  /**
+   * Resultado da corrida.
+   */
+  private final CompletableFuture<Amostra> resultado = new CompletableFuture<Amostra>();
+  /**
+   * Amostras que conectaram no ciclo corrente do reator.
+   */
+  private final SortedSet<Amostra> amostras = new TreeSet<Amostra>();
+  /**
+   * Histórico de latência dos endereços.
+   */
+  private final HistoricoLatencia historico = HistoricoLatencia.getHistorico();
+  /**
+   * Saúde das famílias de endereços.
+   */
+  private final SaudeFamilia saude = SaudeFamilia.getSaude();
+  /**
+   * Interfaces de rede locais.
+   */
+  private final InterfacesLocais interfaces = InterfacesLocais.getInterfaces();
+  /**
+   * Endereços que nenhuma interface local alcança, tentados somente após todos os outros.
+   */
+  private final List<InetAddress> descartados = new ArrayList<InetAddress>();
+  /**
+   * Conexões concluídas por família.
+   */
+  private final int[] conexoes = new int[FamiliaEndereco.values().length];
+  /**
+   * Endereços que ainda não tiveram a conexão iniciada, na ordem de preferência.
+   */
+  private List<InetAddress> pendentes = new ArrayList<InetAddress>();
 
   /**
    * Lista de conexões assíncronas.
    */
-  private List<SocketChannel> canais;
+  private Map<SocketChannel, InetAddress> canais;
+  /**
+   * Reator que conduz a corrida.
+   */
+  private Reator reator;
+  /**
+   * Temporizador de expiração da corrida.
+   */
+  private Reator.Temporizador expiracao;
+  /**
+   * Temporizador do início da próxima tentativa de conexão.
+   */
+  private Reator.Temporizador proximaTentativa;
+  /**
+   * Temporizador da espera pelos endereços IPV6 (Resolution Delay).
+   */
+  private Reator.Temporizador esperaResolucao;
+  /**
+   * Tempo em milissegundos que uma conexão da outra família aguarda pela família preferida, ou
+   * zero para vencer imediatamente.
+   */
+  private long tempoPreferencia;
+  /**
+   * Temporizador da janela de preferência aberta por uma conexão da outra família.
+   */
+  private Reator.Temporizador janelaPreferencia;
+  /**
+   * Instante do início da última tentativa de conexão em nanossegundos.
+   */
+  private long ultimoInicio;
   /**
-   * Gerenciador de conexões assíncronas.
+   * Indica se alguma tentativa de conexão foi iniciada.
    */
-  private Selector selector;
+  private boolean iniciou;
+  /**
+   * Quantidade de famílias cuja resolução ainda não terminou.
+   */
+  private int resolucoesPendentes;
+  /**
+   * Indica se alguma tentativa de conexão expirou.
+   */
+  private boolean expirou;
+  /**
+   * Última falha ao iniciar uma conexão.
+   */
+  private IOException ultimaFalha;
+  /**
+   * Falha de cada endereço que não conectou, na ordem das falhas.
+   */
+  private final Map<InetAddress, IOException> falhas =
+      new LinkedHashMap<InetAddress, IOException>();
+  /**
+   * Falha da resolução de alguma família.
+   */
+  private Throwable falhaResolucao;
+  /**
+   * Família pela qual a corrida começa.
+   */
+  private FamiliaEndereco preferida = FamiliaEndereco.IPV6;
+  /**
+   * Indica se a outra família está suspensa e só deve ser tentada após a preferida.
+   */
+  private boolean rebaixada;
+  /**
+   * Indica se cada destino é tentado a partir de todos os endereços locais que o alcançam.
+   */
+  private boolean corridaOrigens;
+  /**
+   * Indica se a corrida tenta todos os endereços e os classifica.
+   */
+  private boolean classificar;
+  /**
+   * Amostras que conectaram na corrida de classificação.
+   */
+  private final List<Amostra> classificadas = new ArrayList<Amostra>();
+  /**
+   * Futuro completado com a primeira amostra que conectou na corrida de classificação, ou null.
+   */
+  private CompletableFuture<Amostra> primeiraConexao;
+  /**
+   * Contexto TLS da corrida por handshake, ou null para a corrida por conexão.
+   */
+  private SSLContext contextoTls;
+  /**
+   * Nome do servidor informado no handshake, usado na indicação do nome (SNI), na verificação do
+   * certificado e no cache de sessões do contexto.
+   */
+  private String nomeTls;
+  /**
+   * Executor das tarefas delegadas do motor TLS, para que não ocupem a thread do reator.
+   */
+  private Executor executorTls = ForkJoinPool.commonPool();
 
   /**
    * Construtor simples.
-   * 
+   *
    * @param tempoTimeOut Tempo de expiração de teste de conexão.
    * @param enderecosIpV Lista de IPs para testar.
    * @param porta Porta para teste de conectividade
@@ -60,121 +224,1092 @@ class MelhorIp implements Callable<Amostra> {
    */
   public MelhorIp(final long tempoTimeOut, final List<? extends InetAddress> enderecosIpV,
       final int porta) throws HappyEyeBallsException {
-    super();
+    this(tempoTimeOut, enderecosIpV, porta, TEMPO_ENTRE_TENTATIVAS_PADRAO, false);
+  }
+
+  /**
+   * Construtor completo. As conexões são iniciadas uma a uma, separadas pelo intervalo entre
+   * tentativas, até que alguma conecte. Os endereços de cada família são ordenados pelo
+   * {@link HistoricoLatencia} e intercalados, começando pelo IPV6, exceto quando uma família está
+   * suspensa pela {@link SaudeFamilia}: nesse caso ela vai para o fim da fila. Quando mantido, o
+   * canal vencedor é entregue na {@link Amostra} em modo bloqueante e os demais são abortados.
+   *
+   * @param tempoTimeOut Tempo de expiração de teste de conexão.
+   * @param enderecosIpV Lista de IPs para testar, na ordem de preferência.
+   * @param porta Porta para teste de conectividade
+   * @param tempoEntreTentativas intervalo entre tentativas em milissegundos, limitado aos valores
+   *        mínimo e máximo da RFC 8305
+   * @param manterVencedor entrega o canal vencedor conectado em vez de fechá-lo
+   * @throws HappyEyeBallsException caso a lista estiver vazia ou nula, ou porta fora do range
+   */
+  public MelhorIp(final long tempoTimeOut, final List<? extends InetAddress> enderecosIpV,
+      final int porta, final long tempoEntreTentativas, final boolean manterVencedor)
+      throws HappyEyeBallsException {
+    this(tempoTimeOut, null, porta, tempoEntreTentativas, TEMPO_RESOLUCAO_PADRAO, manterVencedor);
     if (enderecosIpV == null || enderecosIpV.isEmpty()) {
       throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_16);
     }
-    if (porta <= 0 || porta > Short.MAX_VALUE) {
+    pendentes.addAll(enderecosIpV);
+  }
+
+  /**
+   * Construtor a partir de uma resolução em andamento. A corrida começa pela família que responder
+   * primeiro; caso os endereços IPV4 cheguem antes, os IPV6 são aguardados pelo tempo de resolução
+   * (Resolution Delay da RFC 8305). Endereços que chegam durante a corrida entram na fila das
+   * próximas tentativas, intercalados por família.
+   *
+   * @param tempoTimeOut Tempo de expiração de teste de conexão.
+   * @param resolucao resolução que fornece os IPs para testar
+   * @param porta Porta para teste de conectividade
+   * @param tempoEntreTentativas intervalo entre tentativas em milissegundos, limitado aos valores
+   *        mínimo e máximo da RFC 8305
+   * @param tempoResolucao tempo de espera pelos endereços IPV6 em milissegundos
+   * @param manterVencedor entrega o canal vencedor conectado em vez de fechá-lo
+   * @throws HappyEyeBallsException caso a porta esteja fora do range
+   */
+  public MelhorIp(final long tempoTimeOut, final Resolucao resolucao, final int porta,
+      final long tempoEntreTentativas, final long tempoResolucao, final boolean manterVencedor)
+      throws HappyEyeBallsException {
+    super();
+    if (porta <= 0 || porta > 0xFFFF) {
       throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_17);
     }
     this.tempoTimeOut = tempoTimeOut;
+    this.resolucao = resolucao;
     this.porta = porta;
-    enderecosIp = enderecosIpV;
+    this.tempoEntreTentativas = Math.min(TEMPO_ENTRE_TENTATIVAS_MAXIMO,
+        Math.max(TEMPO_ENTRE_TENTATIVAS_MINIMO, tempoEntreTentativas));
+    this.tempoResolucao = Math.max(0L, tempoResolucao);
+    this.manterVencedor = manterVencedor;
+  }
+
+  /**
+   * Intercala os endereços das duas famílias, começando pela família preferida (RFC 8305).
+   *
+   * @param preferidos endereços da família preferida
+   * @param outros endereços da outra família
+   * @return lista intercalada de endereços
+   */
+  static List<InetAddress> intercala(final List<? extends InetAddress> preferidos,
+      final List<? extends InetAddress> outros) {
+    final List<InetAddress> enderecos =
+        new ArrayList<InetAddress>(preferidos.size() + outros.size());
+    final Iterator<? extends InetAddress> primeiro = preferidos.iterator();
+    final Iterator<? extends InetAddress> segundo = outros.iterator();
+    while (primeiro.hasNext() || segundo.hasNext()) {
+      if (primeiro.hasNext()) {
+        enderecos.add(primeiro.next());
+      }
+      if (segundo.hasNext()) {
+        enderecos.add(segundo.next());
+      }
+    }
+    return enderecos;
+  }
+
+  /**
+   * Inicia a corrida no reator.
+   *
+   * @param reator reator que conduz a corrida
+   * @return futuro completado com a amostra de menor tempo de conexão
+   */
+  public CompletableFuture<Amostra> iniciar(final Reator reator) {
+    this.reator = reator;
+    resultado.whenComplete((amostra, erro) -> registraSaude());
+    try {
+      reator.executar(this::inicializaCanais);
+    } catch (RejectedExecutionException excep) {
+      falha(Mensagens.HAPPYEYEBALLS_26, excep);
+    }
+    return resultado;
+  }
+
+  /**
+   * Ativa a corrida de origens: cada destino é tentado ao mesmo tempo a partir de cada endereço
+   * local que o alcança, com o canal associado ao endereço local, e a {@link Amostra} vencedora
+   * informa a origem. Sem a corrida de origens, a origem é escolhida pelo sistema.
+   *
+   * @param ativa ativa a corrida de origens
+   * @return esta corrida
+   */
+  MelhorIp corridaOrigens(final boolean ativa) {
+    corridaOrigens = ativa;
+    return this;
+  }
+
+  /**
+   * Define a janela de preferência: quando a primeira conexão é da família não preferida e ainda
+   * há tentativas da preferida em andamento, a corrida aguarda a janela antes de decidir, e uma
+   * conexão da preferida que chegue nesse tempo vence. As demais tentativas são abortadas ao fim
+   * da janela. Com zero, a primeira conexão vence no mesmo ciclo do reator.
+   *
+   * @param milissegundos duração da janela
+   * @return esta corrida
+   */
+  MelhorIp preferencia(final long milissegundos) {
+    tempoPreferencia = Math.max(0L, milissegundos);
+    return this;
+  }
+
+  /**
+   * Ativa a classificação: a corrida não termina na primeira conexão, tenta todos os endereços e
+   * termina quando todos conectarem, falharem ou expirarem. A {@link Amostra} vencedora, a mais
+   * rápida, informa a classificação dos endereços que conectaram. Não se aplica quando o vencedor é
+   * mantido.
+   *
+   * @param ativa ativa a classificação
+   * @return esta corrida
+   */
+  MelhorIp classificar(final boolean ativa) {
+    classificar = ativa && !manterVencedor;
+    return this;
+  }
+
+  /**
+   * Define o futuro completado com a primeira amostra que conectar na corrida de classificação,
+   * antes que os demais endereços conectem, falhem ou expirem. O futuro não é completado caso
+   * nenhum endereço conecte.
+   *
+   * @param futuro futuro da primeira conexão
+   * @return esta corrida
+   */
+  MelhorIp primeiraConexao(final CompletableFuture<Amostra> futuro) {
+    primeiraConexao = futuro;
+    return this;
+  }
+
+  /**
+   * Ativa a corrida por handshake: depois de conectar, cada canal conduz um handshake TLS não
+   * bloqueante no reator, e o tempo da amostra vai até o fim do handshake. Quando o vencedor é
+   * mantido, a {@link Amostra} entrega a {@link ConexaoTls} com o handshake concluído; senão, a
+   * sessão fica no cache de sessões do contexto.
+   *
+   * @param contexto contexto TLS ou null para a corrida por conexão
+   * @param nomeServidor nome do servidor verificado no certificado
+   * @return esta corrida
+   */
+  MelhorIp handshakeTls(final SSLContext contexto, final String nomeServidor) {
+    contextoTls = contexto;
+    nomeTls = nomeServidor;
+    return this;
+  }
+
+  /**
+   * Define o executor das tarefas delegadas do motor TLS, como a verificação do certificado. Sem
+   * ele, as tarefas executam no pool comum.
+   *
+   * @param executor executor das tarefas delegadas
+   * @return esta corrida
+   */
+  MelhorIp executorTls(final Executor executor) {
+    executorTls = executor;
+    return this;
+  }
+
+  /**
+   * Indica se a corrida atingiu o tempo de expiração. Deve ser consultado após o término da
+   * corrida.
+   *
+   * @return verdadeiro caso alguma tentativa tenha expirado
+   */
+  boolean isExpirou() {
+    return expirou;
+  }
+
+  /**
+   * Registra na {@link SaudeFamilia} o resultado da corrida: a família que conectou tem sucesso e
+   * a outra, caso alguma tentativa dela tenha sido recusada, falhado ou expirado, falha. Uma
+   * tentativa que apenas perdeu a corrida, abandonada quando a outra família venceu, não conta
+   * como falha.
+   */
+  private void registraSaude() {
+    final boolean[] falhou = new boolean[FamiliaEndereco.values().length];
+    for (final InetAddress endereco : falhas.keySet()) {
+      falhou[FamiliaEndereco.de(endereco).ordinal()] = true;
+    }
+    for (final FamiliaEndereco familia : FamiliaEndereco.values()) {
+      final int outra = 1 - familia.ordinal();
+      if (conexoes[familia.ordinal()] > 0) {
+        saude.registrarSucesso(familia);
+      } else if (falhou[familia.ordinal()] && conexoes[outra] > 0) {
+        saude.registrarFalha(familia);
+      }
+    }
   }
 
   /**
    * Fecha todas as conexões.
-   * 
-   * @throws HappyEyeBallsException exceção de entrada ou saída
    */
-  private void fechaConexoes() throws HappyEyeBallsException {
+  private void fechaConexoes() {
+    for (final SocketChannel canal : canais.keySet()) {
+      fechaCanal(canal);
+    }
+    canais.clear();
+  }
+
+  /**
+   * Fecha um canal.
+   *
+   * @param canal canal a ser fechado
+   */
+  static void fechaCanal(final SocketChannel canal) {
     try {
-      try {
-        for (final SocketChannel canal : canais) {
-          if (canal.isConnected()) {
-            canal.finishConnect();
-          }
-          if (canal.isOpen()) {
-            canal.close();
-          }
-        }
-      } finally {
-        selector.close();
-        canais.clear();
+      if (canal.isOpen()) {
+        canal.close();
       }
     } catch (IOException excep) {
-      throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_18, excep);
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_18, excep);
     }
   }
 
   /**
    * Inicializa os canais para conexões assíncronas.
-   * 
-   * @throws HappyEyeBallsException caso ocorra algum erro
    */
-  private void inicializaCanais() throws HappyEyeBallsException {
-    // Cria o selector para realizar as conexões de forma assíncrona.
+  private void inicializaCanais() {
+    canais = new LinkedHashMap<SocketChannel, InetAddress>();
+    preferida = saude.getPreferida();
+    rebaixada = saude.isSuspensa(
+        preferida == FamiliaEndereco.IPV6 ? FamiliaEndereco.IPV4 : FamiliaEndereco.IPV6);
+    if (resolucao == null) {
+      pendentes = ordena(pendentes);
+      iniciaTentativa();
+    } else {
+      resolucoesPendentes = FamiliaEndereco.values().length;
+      for (final FamiliaEndereco familia : FamiliaEndereco.values()) {
+        resolucao.getEnderecos(familia).whenComplete((enderecos, erro) -> {
+          try {
+            reator.executar(() -> resolveu(familia, enderecos, erro));
+          } catch (RejectedExecutionException excep) {
+            falha(Mensagens.HAPPYEYEBALLS_26, excep);
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * Recebe os endereços de uma família. Quando a outra família chega antes da preferida e nenhuma
+   * tentativa foi iniciada, a corrida aguarda o tempo de resolução antes de começar.
+   *
+   * @param familia família resolvida
+   * @param enderecos endereços da família ou nulo em caso de falha
+   * @param erro falha da resolução ou nulo
+   */
+  private void resolveu(final FamiliaEndereco familia, final List<InetAddress> enderecos,
+      final Throwable erro) {
+    resolucoesPendentes--;
+    if (resultado.isDone()) {
+      return;
+    }
+    if (erro != null) {
+      falhaResolucao = erro;
+    } else if (!enderecos.isEmpty()) {
+      pendentes.addAll(enderecos);
+      pendentes = ordena(pendentes);
+    }
+    if (familia != preferida && resolucoesPendentes > 0 && !pendentes.isEmpty()
+        && !iniciou) {
+      esperaResolucao = reator.agendar(tempoResolucao, TimeUnit.MILLISECONDS, this::fimEspera);
+    } else if (esperaResolucao == null) {
+      iniciaSeOcioso();
+    } else if (resolucoesPendentes == 0) {
+      esperaResolucao.cancelar();
+      fimEspera();
+    }
+  }
+
+  /**
+   * Ordena os endereços de cada família pela seleção de destino da RFC 6724, conforme as
+   * interfaces locais, e pelo histórico de latência, e os intercala começando pela família
+   * preferida (RFC 8305). Quando a outra família está suspensa, seus endereços vão para o fim da
+   * fila. Os endereços que nenhuma interface local alcança são separados nos descartados.
+   *
+   * @param enderecos endereços a ordenar
+   * @return endereços ordenados
+   */
+  private List<InetAddress> ordena(final List<InetAddress> enderecos) {
+    final InterfacesLocais.Vista vista = interfaces.getVista();
+    final List<InetAddress> preferidos = new ArrayList<InetAddress>();
+    final List<InetAddress> outros = new ArrayList<InetAddress>();
+    for (final InetAddress endereco : enderecos) {
+      (FamiliaEndereco.de(endereco) == preferida ? preferidos : outros).add(endereco);
+    }
+    final List<InetAddress> ordenados =
+        historico.ordenar(vista.ordenar(preferidos, descartados));
+    final List<InetAddress> ordenadosOutros = historico.ordenar(vista.ordenar(outros, descartados));
+    return rebaixada ? concatena(ordenados, ordenadosOutros)
+        : intercala(ordenados, ordenadosOutros);
+  }
+
+  /**
+   * Acrescenta os endereços da outra família ao fim dos preferidos.
+   *
+   * @param preferidos endereços da família preferida
+   * @param outros endereços da outra família
+   * @return lista dos preferidos seguidos dos outros
+   */
+  private static List<InetAddress> concatena(final List<InetAddress> preferidos,
+      final List<InetAddress> outros) {
+    preferidos.addAll(outros);
+    return preferidos;
+  }
+
+  /**
+   * Encerra a espera pelos endereços IPV6 e inicia a corrida com os endereços disponíveis.
+   */
+  private void fimEspera() {
+    esperaResolucao = null;
+    iniciaSeOcioso();
+  }
+
+  /**
+   * Inicia uma tentativa com os endereços recém-chegados caso nenhuma esteja agendada, respeitando
+   * o intervalo desde a última tentativa iniciada.
+   */
+  private void iniciaSeOcioso() {
+    if (proximaTentativa == null) {
+      final long decorrido = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ultimoInicio);
+      if (canais.isEmpty() || decorrido >= tempoEntreTentativas) {
+        iniciaTentativa();
+      } else {
+        proximaTentativa = reator.agendar(tempoEntreTentativas - decorrido, TimeUnit.MILLISECONDS,
+            this::iniciaTentativa);
+      }
+    }
+  }
+
+  /**
+   * Inicia a conexão ao próximo endereço pendente e agenda a tentativa seguinte, escalonando as
+   * tentativas como na RFC 8305. Um endereço que falha ao iniciar a conexão dá lugar imediatamente
+   * ao próximo. Cada tentativa iniciada renova o tempo de expiração da corrida.
+   */
+  private void iniciaTentativa() {
+    proximaTentativa = null;
+    boolean iniciada = false;
+    while (!resultado.isDone() && !iniciada && !pendentes.isEmpty()) {
+      iniciada = conecta(pendentes.remove(0));
+    }
+    if (iniciada) {
+      ultimoInicio = System.nanoTime();
+      iniciou = true;
+      if (expiracao != null) {
+        expiracao.cancelar();
+      }
+      expiracao = reator.agendar(tempoTimeOut, TimeUnit.MILLISECONDS, this::expira);
+      if (!pendentes.isEmpty()) {
+        proximaTentativa =
+            reator.agendar(tempoEntreTentativas, TimeUnit.MILLISECONDS, this::iniciaTentativa);
+      }
+    } else {
+      verificaFim();
+    }
+  }
+
+  /**
+   * Completa a corrida com falha, ou com a classificação quando algum endereço conectou, quando
+   * não há conexões em andamento, endereços pendentes nem resoluções por terminar. Antes de
+   * falhar, os endereços descartados por nenhuma interface local os alcançar são tentados, já que
+   * as interfaces podem ter mudado desde a última consulta.
+   */
+  private void verificaFim() {
+    if (!resultado.isDone() && canais.isEmpty() && pendentes.isEmpty()
+        && resolucoesPendentes == 0 && esperaResolucao == null) {
+      cancelaTemporizadores();
+      if (!classificadas.isEmpty()) {
+        completaClassificacao();
+      } else if (!descartados.isEmpty()) {
+        pendentes.addAll(descartados);
+        descartados.clear();
+        iniciaTentativa();
+      } else if (expirou) {
+        resultado.completeExceptionally(
+            new DestinoInalcancavelException(Mensagens.HAPPYEYEBALLS_20, null, falhas));
+      } else if (ultimaFalha != null) {
+        resultado.completeExceptionally(
+            new DestinoInalcancavelException(Mensagens.HAPPYEYEBALLS_19, ultimaFalha, falhas));
+      } else if (falhaResolucao == null) {
+        resultado.completeExceptionally(new NomeNaoEncontradoException(Mensagens.HAPPYEYEBALLS_3));
+      } else if (falhaResolucao instanceof CompletionException
+          && falhaResolucao.getCause() instanceof HappyEyeBallsException) {
+        resultado.completeExceptionally(falhaResolucao.getCause());
+      } else if (falhaResolucao instanceof HappyEyeBallsException) {
+        resultado.completeExceptionally(falhaResolucao);
+      } else {
+        falha(Mensagens.HAPPYEYEBALLS_3, falhaResolucao);
+      }
+    }
+  }
+
+  /**
+   * Inicia as conexões a um endereço: uma só, com a origem escolhida pelo sistema, ou uma por
+   * origem local na corrida de origens.
+   *
+   * @param endereco endereço a ser conectado
+   * @return verdadeiro caso alguma conexão tenha sido iniciada
+   */
+  private boolean conecta(final InetAddress endereco) {
+    boolean iniciada = false;
+    final List<InetAddress> origens = corridaOrigens ? interfaces.getVista().origens(endereco)
+        : Collections.<InetAddress>emptyList();
+    if (origens.isEmpty()) {
+      iniciada = conecta(endereco, null);
+    } else {
+      for (final InetAddress origem : origens) {
+        iniciada = conecta(endereco, origem) || iniciada;
+      }
+    }
+    return iniciada;
+  }
+
+  /**
+   * Cria o canal para um endereço, o associa à origem, o registra no reator e inicia a conexão.
+   *
+   * @param endereco endereço a ser conectado
+   * @param origem endereço local de origem ou nulo para deixar a escolha ao sistema
+   * @return verdadeiro caso a conexão tenha sido iniciada
+   */
+  private boolean conecta(final InetAddress endereco, final InetAddress origem) {
+    boolean iniciada;
+    SocketChannel canal = null;
+    if (origem == null) {
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_31, endereco, porta);
+    } else {
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_74, endereco, porta, origem);
+    }
     try {
-      selector = Selector.open();
-      canais = new ArrayList<SocketChannel>(enderecosIp.size());
-      for (final InetAddress endereco : enderecosIp) {
-        // Cria os canais e os registram no selector
-        final SocketChannel canal = SocketChannel.open();
-        canal.configureBlocking(false);
-        canal.register(selector, SelectionKey.OP_CONNECT,
-            new Amostra(endereco, System.currentTimeMillis()));
-        canal.connect(new InetSocketAddress(endereco, porta));
-        canais.add(canal);
+      canal = SocketChannel.open();
+      canais.put(canal, endereco);
+      canal.configureBlocking(false);
+      if (origem != null) {
+        canal.bind(new InetSocketAddress(origem, 0));
+      }
+      final Amostra amostra = new Amostra(endereco, System.nanoTime());
+      amostra.setOrigem(origem);
+      amostra.setCanal(canal);
+      final Tentativa tentativa = new Tentativa(amostra);
+      reator.registrar(canal, SelectionKey.OP_CONNECT, tentativa);
+      if (canal.connect(new InetSocketAddress(endereco, porta))) {
+        conectou(tentativa);
       }
+      iniciada = true;
     } catch (IOException excep) {
-      throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_19, excep);
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_30, endereco, excep);
+      historico.registrarFalha(endereco);
+      interfaces.invalidar();
+      anotaFalha(endereco, excep);
+      if (canal != null) {
+        canais.remove(canal);
+        fechaCanal(canal);
+      }
+      iniciada = false;
     }
+    return iniciada;
   }
 
   /**
-   * Verifica as conexões e retorna o melhor IP.
-   * 
-   * @return Amostra com melhor tempo de conexão
-   * @throws HappyEyeBallsException caso o tempo de conexão tenha expirado
+   * Cancela os temporizadores de expiração, da próxima tentativa e da espera pela resolução.
    */
-  private Amostra checaCanais() throws HappyEyeBallsException {
-    final SortedSet<Amostra> amostras = new TreeSet<Amostra>();
-    try {
-      if (selector.select(tempoTimeOut) > 0) {
-        final long fim = System.currentTimeMillis();
-        final Set<SelectionKey> chaves = selector.selectedKeys();
-        for (final SelectionKey chave : chaves) {
-          final Amostra dados = (Amostra) chave.attachment();
-          dados.setTempoFim(fim);
-          amostras.add(dados);
-        }
+  private void cancelaTemporizadores() {
+    if (expiracao != null) {
+      expiracao.cancelar();
+    }
+    if (proximaTentativa != null) {
+      proximaTentativa.cancelar();
+      proximaTentativa = null;
+    }
+    if (esperaResolucao != null) {
+      esperaResolucao.cancelar();
+      esperaResolucao = null;
+    }
+  }
+
+  /**
+   * Recebe um canal pronto para concluir a conexão. Na corrida por handshake, um canal que conectou
+   * inicia o handshake TLS e só é registrado ao concluí-lo.
+   *
+   * @param tentativa tentativa de conexão que ficou pronta
+   */
+  private void conectou(final Tentativa tentativa) {
+    if (!resultado.isDone()) {
+      final Amostra dados = tentativa.dados;
+      final boolean conectado = concluiConexao(dados);
+      if (conectado && contextoTls != null) {
+        new Handshake(dados).iniciar();
       } else {
-        throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_20);
+        registra(dados, conectado);
+      }
+    }
+  }
+
+  /**
+   * Registra a amostra de uma tentativa terminada. O tempo de uma conexão concluída entra no
+   * histórico do endereço e a amostra passa a ser comparada pela média suavizada. As amostras do
+   * mesmo ciclo do reator são comparadas ao final do ciclo. Uma tentativa recusada ou inalcançável
+   * sai da corrida, que continua com os demais endereços.
+   *
+   * @param dados amostra da tentativa
+   * @param conectado indica se a conexão, e o handshake quando houver, foi estabelecida
+   */
+  private void registra(final Amostra dados, final boolean conectado) {
+    if (!resultado.isDone()) {
+      dados.setTempoFim(System.nanoTime());
+      if (conectado) {
+        conexoes[FamiliaEndereco.de(dados.getEnderecoIp()).ordinal()]++;
+        dados.setTempoSuavizado(
+            historico.registrarSucesso(dados.getEnderecoIp(), dados.getTempoTotal()));
+      } else {
+        historico.registrarFalha(dados.getEnderecoIp());
+      }
+      if (classificar || !conectado) {
+        classifica(dados, conectado);
+      } else {
+        if (amostras.isEmpty()) {
+          agendaChecagem(dados);
+        } else if (janelaPreferencia != null
+            && FamiliaEndereco.de(dados.getEnderecoIp()) == preferida) {
+          encerraJanela();
+        }
+        amostras.add(dados);
+      }
+    }
+  }
+
+  /**
+   * Agenda a verificação das amostras para o fim do ciclo do reator, ou para o fim da janela de
+   * preferência quando a primeira conexão é da outra família e a preferida ainda está em
+   * andamento. Durante a janela nenhuma tentativa nova é iniciada e a corrida não expira.
+   *
+   * @param dados primeira amostra conectada do ciclo
+   */
+  private void agendaChecagem(final Amostra dados) {
+    if (tempoPreferencia > 0L && FamiliaEndereco.de(dados.getEnderecoIp()) != preferida
+        && preferidaEmAndamento()) {
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_97, dados.getEnderecoIp(),
+          FamiliaEndereco.de(dados.getEnderecoIp()), tempoPreferencia);
+      cancelaTemporizadores();
+      janelaPreferencia =
+          reator.agendar(tempoPreferencia, TimeUnit.MILLISECONDS, this::checaCanais);
+    } else {
+      reator.agendar(0L, TimeUnit.MILLISECONDS, this::checaCanais);
+    }
+  }
+
+  /**
+   * Encerra a janela de preferência antes do tempo, quando a preferida conectou ou não resta
+   * nenhuma tentativa dela, e verifica as amostras no fim do ciclo.
+   */
+  private void encerraJanela() {
+    janelaPreferencia.cancelar();
+    janelaPreferencia = null;
+    reator.agendar(0L, TimeUnit.MILLISECONDS, this::checaCanais);
+  }
+
+  /**
+   * Indica se há alguma tentativa da família preferida em andamento, conectando ou no handshake.
+   *
+   * @return verdadeiro caso algum canal aberto da família preferida ainda não tenha sido registrado
+   */
+  private boolean preferidaEmAndamento() {
+    boolean emAndamento = false;
+    for (final Map.Entry<SocketChannel, InetAddress> canal : canais.entrySet()) {
+      if (FamiliaEndereco.de(canal.getValue()) == preferida && canal.getKey().isOpen()
+          && !registrado(canal.getKey())) {
+        emAndamento = true;
+        break;
+      }
+    }
+    return emAndamento;
+  }
+
+  /**
+   * Indica se a tentativa de um canal já foi registrada nas amostras do ciclo.
+   *
+   * @param canal canal da tentativa
+   * @return verdadeiro caso alguma amostra seja do canal
+   */
+  private boolean registrado(final SocketChannel canal) {
+    boolean registrado = false;
+    for (final Amostra amostra : amostras) {
+      if (amostra.getCanal() == canal) {
+        registrado = true;
+        break;
+      }
+    }
+    return registrado;
+  }
+
+  /**
+   * Fecha o canal de uma tentativa que falhou, ou de uma terminada na corrida de classificação, e
+   * guarda a amostra caso tenha conectado. Sem conexões em andamento, a próxima tentativa começa
+   * sem esperar o intervalo.
+   *
+   * @param dados amostra da tentativa
+   * @param conectado indica se a conexão foi estabelecida
+   */
+  private void classifica(final Amostra dados, final boolean conectado) {
+    canais.remove(dados.getCanal());
+    fechaCanal(dados.getCanal());
+    dados.setCanal(null);
+    if (conectado) {
+      classificadas.add(dados);
+      if (primeiraConexao != null) {
+        primeiraConexao.complete(dados);
+      }
+    }
+    continua();
+  }
+
+  /**
+   * Continua a corrida depois que uma tentativa saiu dela: sem tentativas da família preferida em
+   * andamento, a janela de preferência termina; sem conexões em andamento, a próxima tentativa
+   * começa sem esperar o intervalo; senão verifica se a corrida terminou.
+   */
+  private void continua() {
+    if (janelaPreferencia != null && !preferidaEmAndamento()) {
+      encerraJanela();
+    } else if (canais.isEmpty() && proximaTentativa != null) {
+      proximaTentativa.cancelar();
+      iniciaTentativa();
+    } else {
+      verificaFim();
+    }
+  }
+
+  /**
+   * Completa a corrida de classificação com a amostra mais rápida, que leva a classificação de
+   * todas as que conectaram.
+   */
+  private void completaClassificacao() {
+    Collections.sort(classificadas);
+    final List<IpClassificado> classificacao = new ArrayList<IpClassificado>(classificadas.size());
+    for (final Amostra amostra : classificadas) {
+      classificacao.add(new IpClassificado(amostra.getEnderecoIp(), amostra.getOrigem(),
+          amostra.getTempoReferencia()));
+    }
+    LOGGER.debug(Mensagens.HAPPYEYEBALLS_86, classificacao);
+    final Amostra vencedor = classificadas.get(0);
+    vencedor.setClassificacao(Collections.unmodifiableList(classificacao));
+    classificadas.clear();
+    resultado.complete(vencedor);
+  }
+
+  /**
+   * Verifica as conexões do ciclo e completa a corrida com o melhor IP. Quando o vencedor é
+   * mantido, somente um canal cuja conexão foi concluída pode vencer. Ao fim de uma janela de
+   * preferência, uma conexão da família preferida vence as da outra família.
+   */
+  private void checaCanais() {
+    if (!resultado.isDone()) {
+      final boolean aguardouPreferida = janelaPreferencia != null;
+      janelaPreferencia = null;
+      cancelaTemporizadores();
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_21, amostras);
+      Amostra ret = null;
+      for (final Amostra amostra : amostras) {
+        if (!manterVencedor || concluiConexao(amostra)) {
+          if (ret == null) {
+            ret = amostra;
+          }
+          if (!aguardouPreferida || (FamiliaEndereco.de(amostra.getEnderecoIp()) == preferida
+              && amostra.getCanal().isConnected())) {
+            ret = amostra;
+            break;
+          }
+        }
       }
-      LOGGER.debug(Mensagens.HAPPYEYEBALLS_21, amostras.toString());
-      final Amostra ret = amostras.first();
       LOGGER.debug(Mensagens.HAPPYEYEBALLS_22, ret);
       amostras.clear();
-      return ret;
-    } catch (IOException excep) {
-      throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_23, excep); // $NON-NLS-1$
+      if (ret == null) {
+        fechaConexoes();
+        resultado.completeExceptionally(
+            new DestinoInalcancavelException(Mensagens.HAPPYEYEBALLS_28, ultimaFalha, falhas));
+      } else if (manterVencedor) {
+        canais.remove(ret.getCanal());
+        fechaConexoes();
+        entregaVencedor(ret);
+      } else {
+        ret.setCanal(null);
+        fechaConexoes();
+        resultado.complete(ret);
+      }
     }
   }
 
   /**
-   * Busca o melhor IP.
-   * 
-   * @return Tupla IP e tempo para conexão.
-   * @throws HappyEyeBallsException caso ocorra algum problema.
+   * Conclui a conexão do canal de uma tentativa. A recusa ou a falta de rota até o endereço é
+   * anotada como a falha do endereço.
+   *
+   * @param dados amostra da tentativa pronta para concluir a conexão
+   * @return verdadeiro caso a conexão tenha sido estabelecida
    */
-  private Amostra melhorIp() throws HappyEyeBallsException {
+  private boolean concluiConexao(final Amostra dados) {
+    boolean conectado;
     try {
-      inicializaCanais();
-      return checaCanais();
-    } finally {
-      fechaConexoes();
+      conectado = dados.getCanal().finishConnect();
+    } catch (IOException excep) {
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_98, dados.getEnderecoIp(), excep.toString());
+      anotaFalha(dados.getEnderecoIp(), excep);
+      conectado = false;
     }
+    return conectado;
   }
 
   /**
-   * Executa a tarefa de buscar o melhor IP.
-   * 
-   * @return o IP com o menor tempo de conexão ou nulo caso a lista esteja vazia.
-   * @throws HappyEyeBallsException caso ocorra algum problema.
+   * Anota a falha de um endereço, informada na exceção caso a corrida não tenha vencedor.
+   *
+   * @param endereco endereço que falhou
+   * @param excep falha do endereço
    */
-  @Override
-  public Amostra call() throws HappyEyeBallsException {
-    return melhorIp();
+  private void anotaFalha(final InetAddress endereco, final IOException excep) {
+    ultimaFalha = excep;
+    falhas.put(endereco, excep);
+  }
+
+  /**
+   * Retira o canal vencedor do reator e o entrega em modo bloqueante.
+   *
+   * @param vencedor amostra com o canal vencedor
+   */
+  private void entregaVencedor(final Amostra vencedor) {
+    final SocketChannel canal = vencedor.getCanal();
+    reator.liberar(canal, () -> {
+      try {
+        canal.configureBlocking(true);
+        resultado.complete(vencedor);
+      } catch (IOException excep) {
+        fechaCanal(canal);
+        falha(Mensagens.HAPPYEYEBALLS_29, excep);
+      }
+    });
+  }
+
+  /**
+   * Abandona as conexões que expiraram. As tentativas já registradas nas amostras do ciclo, que
+   * conectaram no mesmo ciclo do reator em que a expiração venceu, não são abandonadas e a corrida
+   * termina com elas. Sem amostras, a corrida continua com os endereços que chegaram depois da
+   * última tentativa e termina com falha quando não restar nenhum.
+   */
+  private void expira() {
+    if (!resultado.isDone()) {
+      final Iterator<Map.Entry<SocketChannel, InetAddress>> abertos =
+          canais.entrySet().iterator();
+      while (abertos.hasNext()) {
+        final Map.Entry<SocketChannel, InetAddress> canal = abertos.next();
+        if (!registrado(canal.getKey())) {
+          expirou = true;
+          historico.registrarFalha(canal.getValue());
+          falhas.put(canal.getValue(), new SocketTimeoutException(Mensagens.HAPPYEYEBALLS_20));
+          fechaCanal(canal.getKey());
+          abertos.remove();
+        }
+      }
+      if (amostras.isEmpty()) {
+        if (proximaTentativa != null) {
+          proximaTentativa.cancelar();
+        }
+        iniciaTentativa();
+      } else {
+        checaCanais();
+      }
+    }
+  }
+
+  /**
+   * Abandona uma tentativa cujo handshake TLS falhou.
+   *
+   * @param dados amostra da tentativa
+   * @param excep falha do handshake
+   */
+  private void falhaHandshake(final Amostra dados, final IOException excep) {
+    LOGGER.debug(Mensagens.HAPPYEYEBALLS_92, dados.getEnderecoIp(), excep);
+    historico.registrarFalha(dados.getEnderecoIp());
+    anotaFalha(dados.getEnderecoIp(), excep);
+    canais.remove(dados.getCanal());
+    fechaCanal(dados.getCanal());
+    if (!resultado.isDone()) {
+      continua();
+    }
+  }
+
+  /**
+   * Completa a corrida com falha.
+   *
+   * @param mensagem mensagem da exceção
+   * @param causa causa da falha ou nulo
+   */
+  private void falha(final String mensagem, final Throwable causa) {
+    resultado.completeExceptionally(new HappyEyeBallsException(mensagem, causa));
+  }
+
+  /**
+   * Tentativa de conexão a um endereço, anexada à chave do canal no reator.
+   */
+  private final class Tentativa implements Reator.Tratador {
+
+    /**
+     * Amostra de tempo da tentativa.
+     */
+    private final Amostra dados;
+
+    /**
+     * Construtor.
+     *
+     * @param dados amostra de tempo da tentativa
+     */
+    Tentativa(final Amostra dados) {
+      this.dados = dados;
+    }
+
+    /**
+     * Canal pronto para concluir a conexão.
+     *
+     * @param chave chave selecionada
+     */
+    @Override
+    public void pronto(final SelectionKey chave) {
+      chave.interestOps(0);
+      conectou(this);
+    }
+  }
+
+  /**
+   * Handshake TLS não bloqueante sobre o canal de uma tentativa que conectou, conduzido pelo
+   * reator. As tarefas delegadas do motor, como a verificação do certificado, são executadas no
+   * executor das tarefas TLS, e o handshake volta ao reator quando elas terminam; caso o executor
+   * as recuse, elas são executadas na própria thread do reator.
+   */
+  private final class Handshake implements Reator.Tratador {
+
+    /**
+     * Amostra de tempo da tentativa.
+     */
+    private final Amostra dados;
+
+    /**
+     * Motor TLS em modo cliente.
+     */
+    private final SSLEngine motor;
+
+    /**
+     * Registros TLS a enviar, prontos para escrita no canal.
+     */
+    private final ByteBuffer saida;
+
+    /**
+     * Registros TLS recebidos, prontos para receber a leitura do canal.
+     */
+    private ByteBuffer entrada;
+
+    /**
+     * Dados de aplicação decifrados, descartados durante o handshake.
+     */
+    private ByteBuffer aplicacao;
+
+    /**
+     * Construtor. Cria o motor com o nome do servidor, que habilita a verificação do certificado
+     * e a retomada da sessão pelo contexto.
+     *
+     * @param dados amostra de tempo da tentativa
+     */
+    Handshake(final Amostra dados) {
+      this.dados = dados;
+      motor = contextoTls.createSSLEngine(nomeTls, porta);
+      motor.setUseClientMode(true);
+      final SSLParameters parametros = motor.getSSLParameters();
+      parametros.setEndpointIdentificationAlgorithm(Mensagens.HAPPYEYEBALLS_93);
+      motor.setSSLParameters(parametros);
+      saida = ByteBuffer.allocate(motor.getSession().getPacketBufferSize());
+      saida.flip();
+      entrada = ByteBuffer.allocate(motor.getSession().getPacketBufferSize());
+      aplicacao = ByteBuffer.allocate(motor.getSession().getApplicationBufferSize());
+    }
+
+    /**
+     * Inicia o handshake.
+     */
+    void iniciar() {
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_91, dados.getEnderecoIp(), porta);
+      try {
+        motor.beginHandshake();
+        avanca();
+      } catch (IOException excep) {
+        falhaHandshake(dados, excep);
+      }
+    }
+
+    /**
+     * Canal pronto para leitura ou escrita.
+     *
+     * @param chave chave selecionada
+     */
+    @Override
+    public void pronto(final SelectionKey chave) {
+      chave.interestOps(0);
+      if (!resultado.isDone()) {
+        try {
+          avanca();
+        } catch (IOException excep) {
+          falhaHandshake(dados, excep);
+        }
+      }
+    }
+
+    /**
+     * Avança o handshake até concluí-lo ou até o canal precisar de leitura ou escrita, quando o
+     * canal é registrado no reator com a operação que falta.
+     *
+     * @throws IOException caso o handshake falhe ou o servidor feche a conexão
+     */
+    private void avanca() throws IOException {
+      int interesse = 0;
+      boolean concluido = false;
+      boolean delegado = false;
+      while (interesse == 0 && !concluido && !delegado) {
+        final SSLEngineResult.HandshakeStatus estado = motor.getHandshakeStatus();
+        if (saida.hasRemaining()) {
+          dados.getCanal().write(saida);
+          interesse = saida.hasRemaining() ? SelectionKey.OP_WRITE : 0;
+        } else if (estado == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING
+            || estado == SSLEngineResult.HandshakeStatus.FINISHED) {
+          concluido = true;
+        } else if (estado == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+          delegado = delega();
+        } else if (estado == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+          saida.clear();
+          final SSLEngineResult resultadoTls = motor.wrap(ByteBuffer.allocate(0), saida);
+          saida.flip();
+          verificaFechamento(resultadoTls);
+        } else {
+          interesse = desembrulha();
+        }
+      }
+      if (concluido) {
+        concluiu();
+      } else if (!delegado) {
+        reator.registrar(dados.getCanal(), interesse, this);
+      }
+    }
+
+    /**
+     * Envia as tarefas delegadas do motor ao executor das tarefas TLS, que devolve o handshake ao
+     * reator quando elas terminam.
+     *
+     * @return verdadeiro caso as tarefas tenham sido enviadas, ou falso caso o executor as recuse e
+     *         elas tenham sido executadas nesta thread
+     */
+    private boolean delega() {
+      boolean delegado;
+      try {
+        executorTls.execute(() -> {
+          executaTarefas();
+          try {
+            reator.executar(this::retoma);
+          } catch (RejectedExecutionException excep) {
+            falha(Mensagens.HAPPYEYEBALLS_26, excep);
+          }
+        });
+        delegado = true;
+      } catch (RejectedExecutionException excep) {
+        executaTarefas();
+        delegado = false;
+      }
+      return delegado;
+    }
+
+    /**
+     * Executa as tarefas delegadas pendentes do motor.
+     */
+    private void executaTarefas() {
+      Runnable tarefa = motor.getDelegatedTask();
+      while (tarefa != null) {
+        tarefa.run();
+        tarefa = motor.getDelegatedTask();
+      }
+    }
+
+    /**
+     * Retoma o handshake na thread do reator depois das tarefas delegadas, caso a corrida e a
+     * tentativa continuem em andamento.
+     */
+    private void retoma() {
+      if (!resultado.isDone() && canais.containsKey(dados.getCanal())) {
+        try {
+          avanca();
+        } catch (IOException excep) {
+          falhaHandshake(dados, excep);
+        }
+      }
+    }
+
+    /**
+     * Processa os registros recebidos, lendo do canal quando não há um registro completo.
+     *
+     * @return {@link SelectionKey#OP_READ} caso o canal não tenha dados, senão zero
+     * @throws IOException caso o handshake falhe ou o servidor feche a conexão
+     */
+    private int desembrulha() throws IOException {
+      int interesse = 0;
+      entrada.flip();
+      final SSLEngineResult resultadoTls = motor.unwrap(entrada, aplicacao);
+      entrada.compact();
+      verificaFechamento(resultadoTls);
+      if (resultadoTls.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+        aplicacao = amplia(aplicacao, motor.getSession().getApplicationBufferSize());
+      } else if (resultadoTls.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+        if (!entrada.hasRemaining()) {
+          entrada = amplia(entrada, motor.getSession().getPacketBufferSize());
+        }
+        final int lidos = dados.getCanal().read(entrada);
+        if (lidos < 0) {
+          throw new EOFException(Mensagens.HAPPYEYEBALLS_94);
+        }
+        interesse = lidos == 0 ? SelectionKey.OP_READ : 0;
+      }
+      return interesse;
+    }
+
+    /**
+     * Registra a tentativa com o tempo até o fim do handshake. Quando o vencedor é mantido, a
+     * amostra leva a conexão TLS com os registros recebidos após o handshake, num buffer com
+     * espaço para um registro completo.
+     */
+    private void concluiu() {
+      if (manterVencedor) {
+        entrada.flip();
+        final ByteBuffer recebidos = ByteBuffer.allocate(
+            Math.max(entrada.remaining(), motor.getSession().getPacketBufferSize()));
+        recebidos.put(entrada);
+        recebidos.flip();
+        dados.setConexaoTls(new ConexaoTls(dados.getCanal(), motor, recebidos));
+      }
+      registra(dados, true);
+    }
+
+    /**
+     * Verifica se o motor foi fechado pelo servidor durante o handshake.
+     *
+     * @param resultadoTls resultado da última operação do motor
+     * @throws SSLException caso o motor tenha sido fechado
+     */
+    private void verificaFechamento(final SSLEngineResult resultadoTls) throws SSLException {
+      if (resultadoTls.getStatus() == SSLEngineResult.Status.CLOSED) {
+        throw new SSLException(Mensagens.HAPPYEYEBALLS_94);
+      }
+    }
+
+    /**
+     * Cria um buffer maior com o conteúdo de outro, pronto para receber mais dados.
+     *
+     * @param buffer buffer atual, pronto para escrita
+     * @param minimo capacidade mínima
+     * @return novo buffer com o conteúdo do atual
+     */
+    private ByteBuffer amplia(final ByteBuffer buffer, final int minimo) {
+      final ByteBuffer novo = ByteBuffer.allocate(Math.max(minimo, buffer.capacity() * 2));
+      buffer.flip();
+      novo.put(buffer);
+      return novo;
+    }
   }
 
 }
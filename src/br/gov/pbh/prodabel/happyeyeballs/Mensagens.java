@@ -117,6 +117,334 @@ final class Mensagens {
    * Mensagem 23.
    */
   public static final String HAPPYEYEBALLS_23 = RESOURCE_BUNDLE.getString("HappyEyeballs.23");
+  /**
+   * Mensagem 24.
+   */
+  public static final String HAPPYEYEBALLS_24 = RESOURCE_BUNDLE.getString("HappyEyeballs.24");
+  /**
+   * Mensagem 25.
+   */
+  public static final String HAPPYEYEBALLS_25 = RESOURCE_BUNDLE.getString("HappyEyeballs.25");
+  /**
+   * Mensagem 26.
+   */
+  public static final String HAPPYEYEBALLS_26 = RESOURCE_BUNDLE.getString("HappyEyeballs.26");
+  /**
+   * Mensagem 27.
+   */
+  public static final String HAPPYEYEBALLS_27 = RESOURCE_BUNDLE.getString("HappyEyeballs.27");
+  /**
+   * Mensagem 28.
+   */
+  public static final String HAPPYEYEBALLS_28 = RESOURCE_BUNDLE.getString("HappyEyeballs.28");
+  /**
+   * Mensagem 29.
+   */
+  public static final String HAPPYEYEBALLS_29 = RESOURCE_BUNDLE.getString("HappyEyeballs.29");
+  /**
+   * Mensagem 30.
+   */
+  public static final String HAPPYEYEBALLS_30 = RESOURCE_BUNDLE.getString("HappyEyeballs.30");
+  /**
+   * Mensagem 31.
+   */
+  public static final String HAPPYEYEBALLS_31 = RESOURCE_BUNDLE.getString("HappyEyeballs.31");
+  /**
+   * Mensagem 32.
+   */
+  public static final String HAPPYEYEBALLS_32 = RESOURCE_BUNDLE.getString("HappyEyeballs.32");
+  /**
+   * Mensagem 33.
+   */
+  public static final String HAPPYEYEBALLS_33 = RESOURCE_BUNDLE.getString("HappyEyeballs.33");
+  /**
+   * Mensagem 34.
+   */
+  public static final String HAPPYEYEBALLS_34 = RESOURCE_BUNDLE.getString("HappyEyeballs.34");
+  /**
+   * Mensagem 35.
+   */
+  public static final String HAPPYEYEBALLS_35 = RESOURCE_BUNDLE.getString("HappyEyeballs.35");
+  /**
+   * Mensagem 36.
+   */
+  public static final String HAPPYEYEBALLS_36 = RESOURCE_BUNDLE.getString("HappyEyeballs.36");
+  /**
+   * Mensagem 37.
+   */
+  public static final String HAPPYEYEBALLS_37 = RESOURCE_BUNDLE.getString("HappyEyeballs.37");
+  /**
+   * Mensagem 38.
+   */
+  public static final String HAPPYEYEBALLS_38 = RESOURCE_BUNDLE.getString("HappyEyeballs.38");
+  /**
+   * Mensagem 39.
+   */
+  public static final String HAPPYEYEBALLS_39 = RESOURCE_BUNDLE.getString("HappyEyeballs.39");
+  /**
+   * Mensagem 40.
+   */
+  public static final String HAPPYEYEBALLS_40 = RESOURCE_BUNDLE.getString("HappyEyeballs.40");
+  /**
+   * Mensagem 41.
+   */
+  public static final String HAPPYEYEBALLS_41 = RESOURCE_BUNDLE.getString("HappyEyeballs.41");
+  /**
+   * Mensagem 42.
+   */
+  public static final String HAPPYEYEBALLS_42 = RESOURCE_BUNDLE.getString("HappyEyeballs.42");
+  /**
+   * Mensagem 43.
+   */
+  public static final String HAPPYEYEBALLS_43 = RESOURCE_BUNDLE.getString("HappyEyeballs.43");
+  /**
+   * Mensagem 44.
+   */
+  public static final String HAPPYEYEBALLS_44 = RESOURCE_BUNDLE.getString("HappyEyeballs.44");
+  /**
+   * Mensagem 45.
+   */
+  public static final String HAPPYEYEBALLS_45 = RESOURCE_BUNDLE.getString("HappyEyeballs.45");
+  /**
+   * Mensagem 46.
+   */
+  public static final String HAPPYEYEBALLS_46 = RESOURCE_BUNDLE.getString("HappyEyeballs.46");
+  /**
+   * Mensagem 47.
+   */
+  public static final String HAPPYEYEBALLS_47 = RESOURCE_BUNDLE.getString("HappyEyeballs.47");
+  /**
+   * Mensagem 48.
+   */
+  public static final String HAPPYEYEBALLS_48 = RESOURCE_BUNDLE.getString("HappyEyeballs.48");
+  /**
+   * Mensagem 49.
+   */
+  public static final String HAPPYEYEBALLS_49 = RESOURCE_BUNDLE.getString("HappyEyeballs.49");
+  /**
+   * Mensagem 50.
+   */
+  public static final String HAPPYEYEBALLS_50 = RESOURCE_BUNDLE.getString("HappyEyeballs.50");
+  /**
+   * Mensagem 51.
+   */
+  public static final String HAPPYEYEBALLS_51 = RESOURCE_BUNDLE.getString("HappyEyeballs.51");
+  /**
+   * Mensagem 52.
+   */
+  public static final String HAPPYEYEBALLS_52 = RESOURCE_BUNDLE.getString("HappyEyeballs.52");
+  /**
+   * Mensagem 53.
+   */
+  public static final String HAPPYEYEBALLS_53 = RESOURCE_BUNDLE.getString("HappyEyeballs.53");
+  /**
+   * Mensagem 54.
+   */
+  public static final String HAPPYEYEBALLS_54 = RESOURCE_BUNDLE.getString("HappyEyeballs.54");
+  /**
+   * Mensagem 55.
+   */
+  public static final String HAPPYEYEBALLS_55 = RESOURCE_BUNDLE.getString("HappyEyeballs.55");
+  /**
+   * Mensagem 56.
+   */
+  public static final String HAPPYEYEBALLS_56 = RESOURCE_BUNDLE.getString("HappyEyeballs.56");
+  /**
+   * Mensagem 57.
+   */
+  public static final String HAPPYEYEBALLS_57 = RESOURCE_BUNDLE.getString("HappyEyeballs.57");
+  /**
+   * Mensagem 58.
+   */
+  public static final String HAPPYEYEBALLS_58 = RESOURCE_BUNDLE.getString("HappyEyeballs.58");
+  /**
+   * Mensagem 59.
+   */
+  public static final String HAPPYEYEBALLS_59 = RESOURCE_BUNDLE.getString("HappyEyeballs.59");
+  /**
+   * Mensagem 60.
+   */
+  public static final String HAPPYEYEBALLS_60 = RESOURCE_BUNDLE.getString("HappyEyeballs.60");
+  /**
+   * Mensagem 61.
+   */
+  public static final String HAPPYEYEBALLS_61 = RESOURCE_BUNDLE.getString("HappyEyeballs.61");
+  /**
+   * Mensagem 62.
+   */
+  public static final String HAPPYEYEBALLS_62 = RESOURCE_BUNDLE.getString("HappyEyeballs.62");
+  /**
+   * Mensagem 63.
+   */
+  public static final String HAPPYEYEBALLS_63 = RESOURCE_BUNDLE.getString("HappyEyeballs.63");
+  /**
+   * Mensagem 64.
+   */
+  public static final String HAPPYEYEBALLS_64 = RESOURCE_BUNDLE.getString("HappyEyeballs.64");
+  /**
+   * Mensagem 65.
+   */
+  public static final String HAPPYEYEBALLS_65 = RESOURCE_BUNDLE.getString("HappyEyeballs.65");
+  /**
+   * Mensagem 66.
+   */
+  public static final String HAPPYEYEBALLS_66 = RESOURCE_BUNDLE.getString("HappyEyeballs.66");
+  /**
+   * Mensagem 67.
+   */
+  public static final String HAPPYEYEBALLS_67 = RESOURCE_BUNDLE.getString("HappyEyeballs.67");
+  /**
+   * Mensagem 68.
+   */
+  public static final String HAPPYEYEBALLS_68 = RESOURCE_BUNDLE.getString("HappyEyeballs.68");
+  /**
+   * Mensagem 69.
+   */
+  public static final String HAPPYEYEBALLS_69 = RESOURCE_BUNDLE.getString("HappyEyeballs.69");
+  /**
+   * Mensagem 70.
+   */
+  public static final String HAPPYEYEBALLS_70 = RESOURCE_BUNDLE.getString("HappyEyeballs.70");
+  /**
+   * Mensagem 71.
+   */
+  public static final String HAPPYEYEBALLS_71 = RESOURCE_BUNDLE.getString("HappyEyeballs.71");
+  /**
+   * Mensagem 72.
+   */
+  public static final String HAPPYEYEBALLS_72 = RESOURCE_BUNDLE.getString("HappyEyeballs.72");
+  /**
+   * Mensagem 73.
+   */
+  public static final String HAPPYEYEBALLS_73 = RESOURCE_BUNDLE.getString("HappyEyeballs.73");
+  /**
+   * Mensagem 74.
+   */
+  public static final String HAPPYEYEBALLS_74 = RESOURCE_BUNDLE.getString("HappyEyeballs.74");
+  /**
+   * Mensagem 75.
+   */
+  public static final String HAPPYEYEBALLS_75 = RESOURCE_BUNDLE.getString("HappyEyeballs.75");
+  /**
+   * Mensagem 76.
+   */
+  public static final String HAPPYEYEBALLS_76 = RESOURCE_BUNDLE.getString("HappyEyeballs.76");
+  /**
+   * Mensagem 77.
+   */
+  public static final String HAPPYEYEBALLS_77 = RESOURCE_BUNDLE.getString("HappyEyeballs.77");
+  /**
+   * Mensagem 78.
+   */
+  public static final String HAPPYEYEBALLS_78 = RESOURCE_BUNDLE.getString("HappyEyeballs.78");
+  /**
+   * Mensagem 79.
+   */
+  public static final String HAPPYEYEBALLS_79 = RESOURCE_BUNDLE.getString("HappyEyeballs.79");
+  /**
+   * Mensagem 80.
+   */
+  public static final String HAPPYEYEBALLS_80 = RESOURCE_BUNDLE.getString("HappyEyeballs.80");
+  /**
+   * Mensagem 81.
+   */
+  public static final String HAPPYEYEBALLS_81 = RESOURCE_BUNDLE.getString("HappyEyeballs.81");
+  /**
+   * Mensagem 82.
+   */
+  public static final String HAPPYEYEBALLS_82 = RESOURCE_BUNDLE.getString("HappyEyeballs.82");
+  /**
+   * Mensagem 83.
+   */
+  public static final String HAPPYEYEBALLS_83 = RESOURCE_BUNDLE.getString("HappyEyeballs.83");
+  /**
+   * Mensagem 84.
+   */
+  public static final String HAPPYEYEBALLS_84 = RESOURCE_BUNDLE.getString("HappyEyeballs.84");
+  /**
+   * Mensagem 85.
+   */
+  public static final String HAPPYEYEBALLS_85 = RESOURCE_BUNDLE.getString("HappyEyeballs.85");
+  /**
+   * Mensagem 86.
+   */
+  public static final String HAPPYEYEBALLS_86 = RESOURCE_BUNDLE.getString("HappyEyeballs.86");
+  /**
+   * Mensagem 87.
+   */
+  public static final String HAPPYEYEBALLS_87 = RESOURCE_BUNDLE.getString("HappyEyeballs.87");
+  /**
+   * Mensagem 88.
+   */
+  public static final String HAPPYEYEBALLS_88 = RESOURCE_BUNDLE.getString("HappyEyeballs.88");
+  /**
+   * Mensagem 89.
+   */
+  public static final String HAPPYEYEBALLS_89 = RESOURCE_BUNDLE.getString("HappyEyeballs.89");
+  /**
+   * Mensagem 90.
+   */
+  public static final String HAPPYEYEBALLS_90 = RESOURCE_BUNDLE.getString("HappyEyeballs.90");
+  /**
+   * Mensagem 91.
+   */
+  public static final String HAPPYEYEBALLS_91 = RESOURCE_BUNDLE.getString("HappyEyeballs.91");
+  /**
+   * Mensagem 92.
+   */
+  public static final String HAPPYEYEBALLS_92 = RESOURCE_BUNDLE.getString("HappyEyeballs.92");
+  /**
+   * Mensagem 93.
+   */
+  public static final String HAPPYEYEBALLS_93 = RESOURCE_BUNDLE.getString("HappyEyeballs.93");
+  /**
+   * Mensagem 94.
+   */
+  public static final String HAPPYEYEBALLS_94 = RESOURCE_BUNDLE.getString("HappyEyeballs.94");
+  /**
+   * Mensagem 95.
+   */
+  public static final String HAPPYEYEBALLS_95 = RESOURCE_BUNDLE.getString("HappyEyeballs.95");
+  /**
+   * Mensagem 96.
+   */
+  public static final String HAPPYEYEBALLS_96 = RESOURCE_BUNDLE.getString("HappyEyeballs.96");
+  /**
+   * Mensagem 97.
+   */
+  public static final String HAPPYEYEBALLS_97 = RESOURCE_BUNDLE.getString("HappyEyeballs.97");
+  /**
+   * Mensagem 98.
+   */
+  public static final String HAPPYEYEBALLS_98 = RESOURCE_BUNDLE.getString("HappyEyeballs.98");
+  /**
+   * Mensagem 99.
+   */
+  public static final String HAPPYEYEBALLS_99 = RESOURCE_BUNDLE.getString("HappyEyeballs.99");
+  /**
+   * Mensagem 100.
+   */
+  public static final String HAPPYEYEBALLS_100 = RESOURCE_BUNDLE.getString("HappyEyeballs.100");
+  /**
+   * Mensagem 101.
+   */
+  public static final String HAPPYEYEBALLS_101 = RESOURCE_BUNDLE.getString("HappyEyeballs.101");
+  /**
+   * Mensagem 102.
+   */
+  public static final String HAPPYEYEBALLS_102 = RESOURCE_BUNDLE.getString("HappyEyeballs.102");
+  /**
+   * Mensagem 103.
+   */
+  public static final String HAPPYEYEBALLS_103 = RESOURCE_BUNDLE.getString("HappyEyeballs.103");
+  /**
+   * Mensagem 104.
+   */
+  public static final String HAPPYEYEBALLS_104 = RESOURCE_BUNDLE.getString("HappyEyeballs.104");
+  /**
+   * Mensagem 105.
+   */
+  public static final String HAPPYEYEBALLS_105 = RESOURCE_BUNDLE.getString("HappyEyeballs.105");
 
   /**
    * Construtor privado, esta classe somente armazena dados.
@@ -0,0 +1,234 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de uma instância do algoritmo Happy Eyeballs. Os contadores utilizam {@link LongAdder}
+ * para não disputar memória entre as threads que registram os eventos, e cada evento também é
+ * encaminhado ao {@link RegistroMetricas} configurado.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+public final class Metricas implements MetricasMBean {
+
+  /**
+   * Limites superiores das faixas dos histogramas em milissegundos.
+   */
+  private static final long[] LIMITES = {1L, 2L, 5L, 10L, 20L, 50L, 100L, 200L, 500L, 1000L,
+      2000L, 5000L};
+
+  /**
+   * Registro externo que recebe os eventos.
+   */
+  private final RegistroMetricas registro;
+  /**
+   * Executor das consultas de nomes, ou null caso a instância não utilize executor.
+   */
+  private final ExecutorService executor;
+  /**
+   * Buscas que encontraram o IP no cache.
+   */
+  private final LongAdder acertosCache = new LongAdder();
+  /**
+   * Buscas que não encontraram o IP no cache.
+   */
+  private final LongAdder faltasCache = new LongAdder();
+  /**
+   * Corridas iniciadas.
+   */
+  private final LongAdder corridasIniciadas = new LongAdder();
+  /**
+   * Corridas que atingiram o tempo de expiração.
+   */
+  private final LongAdder corridasExpiradas = new LongAdder();
+  /**
+   * Corridas em andamento.
+   */
+  private final LongAdder corridasEmAndamento = new LongAdder();
+  /**
+   * Histograma do tempo de conexão dos IPV6 vencedores.
+   */
+  private final LongAdder[] histogramaIpv6 = criaHistograma();
+  /**
+   * Histograma do tempo de conexão dos IPV4 vencedores.
+   */
+  private final LongAdder[] histogramaIpv4 = criaHistograma();
+
+  /**
+   * Construtor.
+   *
+   * @param registro registro externo que recebe os eventos
+   * @param executor executor das consultas de nomes ou null
+   */
+  Metricas(final RegistroMetricas registro, final ExecutorService executor) {
+    super();
+    this.registro = registro;
+    this.executor = executor;
+  }
+
+  /**
+   * Cria as faixas de um histograma, uma a mais que os limites.
+   *
+   * @return faixas zeradas
+   */
+  private static LongAdder[] criaHistograma() {
+    final LongAdder[] faixas = new LongAdder[LIMITES.length + 1];
+    for (int i = 0; i < faixas.length; i++) {
+      faixas[i] = new LongAdder();
+    }
+    return faixas;
+  }
+
+  /**
+   * Registra uma busca que encontrou o IP no cache.
+   */
+  void acertoCache() {
+    acertosCache.increment();
+    registro.acertoCache();
+  }
+
+  /**
+   * Registra uma busca que não encontrou o IP no cache.
+   */
+  void faltaCache() {
+    faltasCache.increment();
+    registro.faltaCache();
+  }
+
+  /**
+   * Registra o início de uma corrida.
+   */
+  void corridaIniciada() {
+    corridasIniciadas.increment();
+    corridasEmAndamento.increment();
+    registro.corridaIniciada();
+  }
+
+  /**
+   * Registra o fim de uma corrida.
+   *
+   * @param vencedor amostra vencedora ou null
+   * @param expirou indica se a corrida atingiu o tempo de expiração
+   */
+  void corridaTerminada(final Amostra vencedor, final boolean expirou) {
+    corridasEmAndamento.decrement();
+    if (expirou) {
+      corridasExpiradas.increment();
+      registro.corridaExpirada();
+    }
+    if (vencedor != null) {
+      final FamiliaEndereco familia = FamiliaEndereco.de(vencedor.getEnderecoIp());
+      final long tempo = vencedor.getTempoTotal();
+      final long milissegundos = TimeUnit.NANOSECONDS.toMillis(tempo);
+      int faixa = 0;
+      while (faixa < LIMITES.length && milissegundos >= LIMITES[faixa]) {
+        faixa++;
+      }
+      (familia == FamiliaEndereco.IPV6 ? histogramaIpv6 : histogramaIpv4)[faixa].increment();
+      registro.vitoria(familia, tempo);
+    }
+  }
+
+  @Override
+  public long getAcertosCache() {
+    return acertosCache.sum();
+  }
+
+  @Override
+  public long getFaltasCache() {
+    return faltasCache.sum();
+  }
+
+  @Override
+  public double getTaxaAcertoCache() {
+    final long acertos = acertosCache.sum();
+    final long total = acertos + faltasCache.sum();
+    return total == 0L ? 0D : (double) acertos / total;
+  }
+
+  @Override
+  public long getCorridasIniciadas() {
+    return corridasIniciadas.sum();
+  }
+
+  @Override
+  public long getCorridasExpiradas() {
+    return corridasExpiradas.sum();
+  }
+
+  @Override
+  public long getVitoriasIpv6() {
+    return soma(histogramaIpv6);
+  }
+
+  @Override
+  public long getVitoriasIpv4() {
+    return soma(histogramaIpv4);
+  }
+
+  @Override
+  public long getCorridasEmAndamento() {
+    return corridasEmAndamento.sum();
+  }
+
+  @Override
+  public long getFilaExecutor() {
+    final long fila;
+    if (executor instanceof ThreadPoolExecutor) {
+      fila = ((ThreadPoolExecutor) executor).getQueue().size();
+    } else if (executor instanceof ForkJoinPool) {
+      fila = ((ForkJoinPool) executor).getQueuedSubmissionCount();
+    } else {
+      fila = -1L;
+    }
+    return fila;
+  }
+
+  @Override
+  public long[] getLimitesHistograma() {
+    return LIMITES.clone();
+  }
+
+  @Override
+  public long[] getHistogramaIpv6() {
+    return valores(histogramaIpv6);
+  }
+
+  @Override
+  public long[] getHistogramaIpv4() {
+    return valores(histogramaIpv4);
+  }
+
+  /**
+   * Soma as faixas de um histograma.
+   *
+   * @param histograma faixas do histograma
+   * @return total de amostras
+   */
+  private static long soma(final LongAdder[] histograma) {
+    long total = 0L;
+    for (final LongAdder faixa : histograma) {
+      total += faixa.sum();
+    }
+    return total;
+  }
+
+  /**
+   * Copia os valores das faixas de um histograma.
+   *
+   * @param histograma faixas do histograma
+   * @return quantidade de amostras por faixa
+   */
+  private static long[] valores(final LongAdder[] histograma) {
+    final long[] valores = new long[histograma.length];
+    for (int i = 0; i < histograma.length; i++) {
+      valores[i] = histograma[i].sum();
+    }
+    return valores;
+  }
+}
@@ -0,0 +1,96 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+/**
+ * Interface JMX das métricas de uma instância do algoritmo Happy Eyeballs.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+public interface MetricasMBean {
+
+  /**
+   * Retorna a quantidade de buscas que encontraram o IP no cache.
+   *
+   * @return acertos do cache
+   */
+  long getAcertosCache();
+
+  /**
+   * Retorna a quantidade de buscas que não encontraram o IP no cache.
+   *
+   * @return faltas do cache
+   */
+  long getFaltasCache();
+
+  /**
+   * Retorna a fração das buscas que encontraram o IP no cache.
+   *
+   * @return taxa de acerto entre 0 e 1, ou zero sem buscas
+   */
+  double getTaxaAcertoCache();
+
+  /**
+   * Retorna a quantidade de corridas de conexões iniciadas. A conexão direta ao IP em cache não é
+   * contada.
+   *
+   * @return corridas iniciadas
+   */
+  long getCorridasIniciadas();
+
+  /**
+   * Retorna a quantidade de corridas que atingiram o tempo de expiração.
+   *
+   * @return corridas expiradas
+   */
+  long getCorridasExpiradas();
+
+  /**
+   * Retorna a quantidade de corridas vencidas por um IPV6.
+   *
+   * @return vitórias do IPV6
+   */
+  long getVitoriasIpv6();
+
+  /**
+   * Retorna a quantidade de corridas vencidas por um IPV4.
+   *
+   * @return vitórias do IPV4
+   */
+  long getVitoriasIpv4();
+
+  /**
+   * Retorna a quantidade de corridas em andamento.
+   *
+   * @return corridas em andamento
+   */
+  long getCorridasEmAndamento();
+
+  /**
+   * Retorna a quantidade de consultas de nomes aguardando na fila do executor.
+   *
+   * @return tamanho da fila, ou -1 caso o executor não informe
+   */
+  long getFilaExecutor();
+
+  /**
+   * Retorna os limites superiores, em milissegundos, das faixas dos histogramas de tempo de
+   * conexão. A última faixa dos histogramas não tem limite.
+   *
+   * @return limites das faixas
+   */
+  long[] getLimitesHistograma();
+
+  /**
+   * Retorna o histograma do tempo de conexão dos IPV6 vencedores.
+   *
+   * @return quantidade de vitórias por faixa
+   */
+  long[] getHistogramaIpv6();
+
+  /**
+   * Retorna o histograma do tempo de conexão dos IPV4 vencedores.
+   *
+   * @return quantidade de vitórias por faixa
+   */
+  long[] getHistogramaIpv4();
+}
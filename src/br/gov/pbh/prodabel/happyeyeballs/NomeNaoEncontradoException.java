@@ -0,0 +1,35 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+/**
+ * Exceção lançada quando o nome do servidor não existe ou não possui endereços.
+ * 
+ * @author guilherme
+ * @version 0.1
+ */
+public class NomeNaoEncontradoException extends HappyEyeBallsException {
+
+  /**
+   * Serial Version ID.
+   */
+  private static final long serialVersionUID = 4205926147036842713L;
+
+  /**
+   * Cria uma exceção com uma mensagem e a causa.
+   * 
+   * @param mensagem mensagem
+   * @param causa causa
+   */
+  public NomeNaoEncontradoException(final String mensagem, final Throwable causa) {
+    super(mensagem, causa);
+  }
+
+  /**
+   * Cria uma exceção com uma mensagem.
+   * 
+   * @param mensagem mensagem
+   */
+  public NomeNaoEncontradoException(final String mensagem) {
+    super(mensagem);
+  }
+
+}
@@ -0,0 +1,60 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.util.List;
+
+/**
+ * Política que escolhe, a cada chamada, o IP entregue entre os endereços classificados pela última
+ * corrida. Com uma política diferente de {@link #maisRapido()}, as corridas tentam todos os
+ * endereços e o cache guarda a classificação completa, de forma que as chamadas podem ser
+ * distribuídas entre os servidores de um nome com vários endereços.
+ *
+ * <p>As implementações são chamadas no caminho de acerto do cache, por várias threads ao mesmo
+ * tempo, e não devem bloquear.</p>
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+public interface PoliticaSelecao {
+
+  /**
+   * Escolhe um dos endereços classificados.
+   *
+   * @param classificacao endereços que conectaram, do mais rápido para o mais lento, nunca vazia
+   * @return endereço escolhido
+   */
+  IpClassificado selecionar(final List<IpClassificado> classificacao);
+
+  /**
+   * Retorna a política que sempre entrega o endereço mais rápido, com corridas que terminam na
+   * primeira conexão. É a política padrão.
+   *
+   * @return política do mais rápido
+   */
+  static PoliticaSelecao maisRapido() {
+    return Politicas.MAIS_RAPIDO;
+  }
+
+  /**
+   * Retorna a política das duas escolhas: sorteia dois endereços e entrega o mais rápido deles.
+   *
+   * @return política das duas escolhas
+   */
+  static PoliticaSelecao duasEscolhas() {
+    return Politicas::duasEscolhas;
+  }
+
+  /**
+   * Retorna a política do sorteio ponderado: sorteia entre os endereços cujo tempo não excede o do
+   * mais rápido em mais que o percentual informado, com peso inverso ao tempo de conexão.
+   *
+   * @param percentual tolerância sobre o tempo do mais rápido, zero para considerar somente os
+   *        empatados
+   * @return política do sorteio ponderado
+   */
+  static PoliticaSelecao ponderada(final int percentual) {
+    if (percentual < 0) {
+      throw new IllegalArgumentException(Mensagens.HAPPYEYEBALLS_90);
+    }
+    return classificacao -> Politicas.ponderada(classificacao, percentual);
+  }
+}
@@ -0,0 +1,88 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Implementações das políticas de seleção de {@link PoliticaSelecao}. Os sorteios usam
+ * {@link ThreadLocalRandom} e não alocam memória.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+final class Politicas {
+
+  /**
+   * Política do mais rápido.
+   */
+  static final PoliticaSelecao MAIS_RAPIDO = classificacao -> classificacao.get(0);
+
+  /**
+   * Construtor privado.
+   */
+  private Politicas() {
+    super();
+  }
+
+  /**
+   * Sorteia dois endereços distintos e retorna o mais rápido deles.
+   *
+   * @param classificacao endereços do mais rápido para o mais lento
+   * @return endereço escolhido
+   */
+  static IpClassificado duasEscolhas(final List<IpClassificado> classificacao) {
+    final int tamanho = classificacao.size();
+    final IpClassificado escolhido;
+    if (tamanho == 1) {
+      escolhido = classificacao.get(0);
+    } else {
+      final ThreadLocalRandom sorteio = ThreadLocalRandom.current();
+      final int primeiro = sorteio.nextInt(tamanho);
+      // O segundo é sorteado entre os demais, deslocando os posteriores ao primeiro
+      int segundo = sorteio.nextInt(tamanho - 1);
+      if (segundo >= primeiro) {
+        segundo++;
+      }
+      // A lista está ordenada, portanto o de menor posição é o mais rápido
+      escolhido = classificacao.get(Math.min(primeiro, segundo));
+    }
+    return escolhido;
+  }
+
+  /**
+   * Sorteia entre os endereços dentro da tolerância sobre o mais rápido, com peso inverso ao tempo
+   * de conexão.
+   *
+   * @param classificacao endereços do mais rápido para o mais lento
+   * @param percentual tolerância sobre o tempo do mais rápido
+   * @return endereço escolhido
+   */
+  static IpClassificado ponderada(final List<IpClassificado> classificacao,
+      final int percentual) {
+    final double limite = classificacao.get(0).getLatencia() * (1.0 + percentual / 100.0);
+    int candidatos = 1;
+    double total = peso(classificacao.get(0));
+    while (candidatos < classificacao.size()
+        && classificacao.get(candidatos).getLatencia() <= limite) {
+      total += peso(classificacao.get(candidatos));
+      candidatos++;
+    }
+    double sorteado = ThreadLocalRandom.current().nextDouble(total);
+    int posicao = 0;
+    while (posicao < candidatos - 1 && sorteado >= peso(classificacao.get(posicao))) {
+      sorteado -= peso(classificacao.get(posicao));
+      posicao++;
+    }
+    return classificacao.get(posicao);
+  }
+
+  /**
+   * Retorna o peso do endereço no sorteio ponderado.
+   *
+   * @param endereco endereço classificado
+   * @return inverso do tempo de conexão
+   */
+  private static double peso(final IpClassificado endereco) {
+    return 1.0 / Math.max(1L, endereco.getLatencia());
+  }
+}
@@ -0,0 +1,410 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool de conexões aquecidas por nome e porta. Os canais são vencedores de corridas mantidos
+ * conectados e em modo bloqueante, repostos em segundo plano pelo melhor IP do cache sempre que um
+ * canal é retirado; um IP em cache que não conecta é descartado e a reposição refaz a corrida.
+ * Canais ociosos além do limite, fechados pelo servidor ou conectados a um IP que deixou de estar
+ * em cache são descartados. Destinos sem uso pelo tempo ocioso deixam de ser repostos.
+ *
+ * <p>A verificação na retirada considera morta uma conexão que recebeu dados enquanto ociosa, por
+ * isso o pool serve a protocolos em que o cliente fala primeiro, como HTTP e TLS.</p>
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+final class PoolConexoes {
+
+  /**
+   * Intervalo da manutenção do pool em milissegundos.
+   */
+  static final long INTERVALO_MANUTENCAO = 1000L;
+
+  /**
+   * Interface de log.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(PoolConexoes.class);
+
+  /**
+   * Instância que conduz as corridas de reposição.
+   */
+  private final HappyEyeballsImpl happyEyeballs;
+
+  /**
+   * Limites dos destinos sem limites próprios.
+   */
+  private final Limites padrao;
+
+  /**
+   * Limites próprios por nome e porta.
+   */
+  private final Map<String, Limites> limites;
+
+  /**
+   * Destinos em uso por nome e porta.
+   */
+  private final ConcurrentMap<String, Destino> destinos = new ConcurrentHashMap<String, Destino>();
+
+  /**
+   * Execução periódica da manutenção.
+   */
+  private final ScheduledFuture<?> tarefa;
+
+  /**
+   * Indica se o pool foi encerrado.
+   */
+  private volatile boolean encerrado;
+
+  /**
+   * Construtor. Inicia a manutenção periódica no agendador.
+   *
+   * @param happyEyeballs instância que conduz as corridas de reposição
+   * @param padrao limites dos destinos sem limites próprios
+   * @param limites limites próprios por nome e porta
+   * @param agendador agendador da instância
+   */
+  PoolConexoes(final HappyEyeballsImpl happyEyeballs, final Limites padrao,
+      final Map<String, Limites> limites, final ScheduledExecutorService agendador) {
+    super();
+    this.happyEyeballs = happyEyeballs;
+    this.padrao = padrao;
+    this.limites = limites;
+    tarefa = agendador.scheduleWithFixedDelay(this::manutencao, INTERVALO_MANUTENCAO,
+        INTERVALO_MANUTENCAO, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Retira uma conexão aquecida do destino e inicia a reposição em segundo plano. A primeira
+   * retirada de um destino apenas o inclui no pool.
+   *
+   * @param nome chave do nome e porta
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @return canal conectado em modo bloqueante ou null caso o pool não tenha conexão válida
+   */
+  SocketChannel retirar(final String nome, final String nomeRede, final int porta) {
+    SocketChannel canal = null;
+    final Destino destino = destino(nome, nomeRede, porta);
+    if (destino != null) {
+      final long agora = System.nanoTime();
+      destino.ultimoUso = agora;
+      boolean procurar = true;
+      while (procurar) {
+        final Ociosa ociosa = destino.ociosas.pollLast();
+        if (ociosa == null) {
+          procurar = false;
+        } else if (isValida(destino, ociosa, agora)
+            && happyEyeballs.isVigente(nomeRede, porta, ociosa.endereco)
+            && !recebeu(ociosa.canal)) {
+          canal = ociosa.canal;
+          procurar = false;
+          LOGGER.debug(Mensagens.HAPPYEYEBALLS_80, canal);
+        } else {
+          descarta(ociosa);
+        }
+      }
+      repor(destino);
+    }
+    return canal;
+  }
+
+  /**
+   * Encerra a manutenção e fecha todas as conexões ociosas.
+   */
+  void encerrar() {
+    encerrado = true;
+    tarefa.cancel(false);
+    for (final Destino destino : destinos.values()) {
+      esvazia(destino);
+    }
+    destinos.clear();
+  }
+
+  /**
+   * Retorna a quantidade de conexões ociosas do destino.
+   *
+   * @param nome chave do nome e porta
+   * @return quantidade de conexões ociosas
+   */
+  int getOciosas(final String nome) {
+    final Destino destino = destinos.get(nome);
+    return destino == null ? 0 : destino.ociosas.size();
+  }
+
+  /**
+   * Retorna o destino do nome e porta, incluindo-o no pool caso o seu limite permita conexões.
+   *
+   * @param nome chave do nome e porta
+   * @param nomeRede nome do servidor
+   * @param porta porta do servidor
+   * @return destino ou null caso o destino não tenha pool
+   */
+  private Destino destino(final String nome, final String nomeRede, final int porta) {
+    Destino destino = destinos.get(nome);
+    if (destino == null && !encerrado) {
+      final Limites limite = limites.getOrDefault(nome, padrao);
+      if (limite.isAtivo()) {
+        destino = destinos.computeIfAbsent(nome, chave -> new Destino(nomeRede, porta, limite));
+      }
+    }
+    return destino;
+  }
+
+  /**
+   * Inicia as corridas que faltam para completar as conexões ociosas do destino.
+   *
+   * @param destino destino a repor
+   */
+  private void repor(final Destino destino) {
+    int faltam = destino.limite.conexoes - destino.ociosas.size() - destino.pendentes.get();
+    while (!encerrado && faltam > 0) {
+      destino.pendentes.incrementAndGet();
+      final CompletableFuture<Amostra> corrida =
+          happyEyeballs.conectarAsync(destino.nomeRede, destino.porta);
+      corrida.whenComplete((amostra, excep) -> recebe(destino, amostra, excep));
+      faltam--;
+    }
+  }
+
+  /**
+   * Recebe o vencedor de uma corrida de reposição.
+   *
+   * @param destino destino reposto
+   * @param amostra amostra vencedora ou null
+   * @param excep falha da corrida ou null
+   */
+  private void recebe(final Destino destino, final Amostra amostra, final Throwable excep) {
+    destino.pendentes.decrementAndGet();
+    if (excep != null || amostra == null) {
+      LOGGER.debug(Mensagens.HAPPYEYEBALLS_82, destino.nomeRede, destino.porta, excep);
+    } else if (encerrado || destino.ociosas.size() >= destino.limite.conexoes) {
+      MelhorIp.fechaCanal(amostra.getCanal());
+    } else {
+      destino.ociosas.addLast(
+          new Ociosa(amostra.getCanal(), amostra.getEnderecoIp(), System.nanoTime()));
+      // O pool pode ter sido encerrado durante a inclusão
+      if (encerrado) {
+        esvazia(destino);
+      }
+    }
+  }
+
+  /**
+   * Descarta as conexões ociosas vencidas ou fechadas, repõe os destinos em uso e retira do pool
+   * os destinos sem uso. Uma falha inesperada é registrada no log, para que a execução periódica
+   * não seja cancelada.
+   */
+  private void manutencao() {
+    try {
+      final long agora = System.nanoTime();
+      for (final Map.Entry<String, Destino> entrada : destinos.entrySet()) {
+        final Destino destino = entrada.getValue();
+        for (final Ociosa ociosa : destino.ociosas) {
+          if (!isValida(destino, ociosa, agora)
+              && destino.ociosas.removeFirstOccurrence(ociosa)) {
+            descarta(ociosa);
+          }
+        }
+        if (agora - destino.ultimoUso < destino.limite.tempoOcioso) {
+          repor(destino);
+        } else if (destino.ociosas.isEmpty() && destino.pendentes.get() == 0) {
+          destinos.remove(entrada.getKey(), destino);
+        }
+      }
+    } catch (RuntimeException excep) {
+      LOGGER.error(Mensagens.HAPPYEYEBALLS_103, excep);
+    }
+  }
+
+  /**
+   * Verifica se uma conexão ociosa ainda pode ser entregue, sem operações de entrada e saída.
+   *
+   * @param destino destino da conexão
+   * @param ociosa conexão ociosa
+   * @param agora instante atual em nanossegundos
+   * @return verdadeiro caso a conexão esteja aberta e dentro do tempo ocioso
+   */
+  private static boolean isValida(final Destino destino, final Ociosa ociosa, final long agora) {
+    return ociosa.canal.isOpen() && ociosa.canal.isConnected()
+        && agora - ociosa.desde < destino.limite.tempoOcioso;
+  }
+
+  /**
+   * Verifica, sem bloquear, se a conexão recebeu dados ou o fim do fluxo enquanto ociosa.
+   *
+   * @param canal canal ocioso em modo bloqueante
+   * @return verdadeiro caso a conexão não possa mais ser entregue
+   */
+  private static boolean recebeu(final SocketChannel canal) {
+    boolean recebeu;
+    try {
+      canal.configureBlocking(false);
+      recebeu = canal.read(ByteBuffer.allocate(1)) != 0;
+      canal.configureBlocking(true);
+    } catch (IOException excep) {
+      recebeu = true;
+    }
+    return recebeu;
+  }
+
+  /**
+   * Fecha todas as conexões ociosas do destino.
+   *
+   * @param destino destino a esvaziar
+   */
+  private static void esvazia(final Destino destino) {
+    Ociosa ociosa = destino.ociosas.pollFirst();
+    while (ociosa != null) {
+      MelhorIp.fechaCanal(ociosa.canal);
+      ociosa = destino.ociosas.pollFirst();
+    }
+  }
+
+  /**
+   * Fecha uma conexão ociosa descartada.
+   *
+   * @param ociosa conexão descartada
+   */
+  private static void descarta(final Ociosa ociosa) {
+    LOGGER.debug(Mensagens.HAPPYEYEBALLS_81, ociosa.canal);
+    MelhorIp.fechaCanal(ociosa.canal);
+  }
+
+  /**
+   * Quantidade de conexões e tempo ocioso máximo de um destino.
+   */
+  static final class Limites {
+
+    /**
+     * Quantidade de conexões aquecidas mantidas.
+     */
+    private final int conexoes;
+
+    /**
+     * Tempo ocioso máximo em nanossegundos.
+     */
+    private final long tempoOcioso;
+
+    /**
+     * Construtor.
+     *
+     * @param conexoes quantidade de conexões aquecidas mantidas, zero para não manter
+     * @param tempoOcioso tempo ocioso máximo em milissegundos
+     */
+    Limites(final int conexoes, final long tempoOcioso) {
+      this.conexoes = conexoes;
+      this.tempoOcioso = TimeUnit.MILLISECONDS.toNanos(tempoOcioso);
+    }
+
+    /**
+     * Indica se os limites mantêm alguma conexão.
+     *
+     * @return verdadeiro caso a quantidade de conexões seja positiva
+     */
+    boolean isAtivo() {
+      return conexoes > 0;
+    }
+  }
+
+  /**
+   * Conexões ociosas e reposições em andamento de um nome e porta.
+   */
+  private static final class Destino {
+
+    /**
+     * Nome do servidor.
+     */
+    private final String nomeRede;
+
+    /**
+     * Porta do servidor.
+     */
+    private final int porta;
+
+    /**
+     * Limites do destino.
+     */
+    private final Limites limite;
+
+    /**
+     * Conexões ociosas, da mais antiga para a mais recente.
+     */
+    private final Deque<Ociosa> ociosas = new ConcurrentLinkedDeque<Ociosa>();
+
+    /**
+     * Corridas de reposição em andamento.
+     */
+    private final AtomicInteger pendentes = new AtomicInteger();
+
+    /**
+     * Instante em nanossegundos da última retirada.
+     */
+    private volatile long ultimoUso;
+
+    /**
+     * Construtor.
+     *
+     * @param nomeRede nome do servidor
+     * @param porta porta do servidor
+     * @param limite limites do destino
+     */
+    Destino(final String nomeRede, final int porta, final Limites limite) {
+      this.nomeRede = nomeRede;
+      this.porta = porta;
+      this.limite = limite;
+      ultimoUso = System.nanoTime();
+    }
+  }
+
+  /**
+   * Conexão ociosa.
+   */
+  private static final class Ociosa {
+
+    /**
+     * Canal conectado em modo bloqueante.
+     */
+    private final SocketChannel canal;
+
+    /**
+     * IP ao qual o canal está conectado.
+     */
+    private final InetAddress endereco;
+
+    /**
+     * Instante em nanossegundos em que o canal ficou ocioso.
+     */
+    private final long desde;
+
+    /**
+     * Construtor.
+     *
+     * @param canal canal conectado
+     * @param endereco IP conectado
+     * @param desde instante em que o canal ficou ocioso em nanossegundos
+     */
+    Ociosa(final SocketChannel canal, final InetAddress endereco, final long desde) {
+      this.canal = canal;
+      this.endereco = endereco;
+      this.desde = desde;
+    }
+  }
+}
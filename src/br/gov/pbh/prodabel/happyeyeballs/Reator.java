@@ -0,0 +1,409 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Laço de eventos único que multiplexa, em um só {@link Selector}, os canais de todas as corridas
+ * em andamento. Os canais, as chaves e os temporizadores somente são manipulados pela thread do
+ * reator; as demais threads enviam tarefas por {@link #executar(Runnable)}.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+final class Reator implements Runnable {
+
+  /**
+   * Interface de log.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(Reator.class);
+
+  /**
+   * Semáforo para criação e término do reator padrão.
+   */
+  private static final Object MUTEX = new Object();
+
+  /**
+   * Reator compartilhado por todas as corridas.
+   */
+  private static Reator padrao;
+
+  /**
+   * Quantidade de instâncias abertas que utilizam o reator compartilhado.
+   */
+  private static int instancias;
+
+  /**
+   * Gerenciador de conexões assíncronas.
+   */
+  private final Selector selector;
+
+  /**
+   * Tarefas enviadas por outras threads para execução no laço de eventos.
+   */
+  private final Queue<Runnable> tarefas = new ConcurrentLinkedQueue<Runnable>();
+
+  /**
+   * Temporizadores ordenados pelo instante de disparo. Acessado somente pela thread do reator.
+   */
+  private final PriorityQueue<Temporizador> temporizadores = new PriorityQueue<Temporizador>();
+
+  /**
+   * Tarefas que aguardam a remoção de chaves canceladas do selector. Acessado somente pela thread
+   * do reator.
+   */
+  private final List<Runnable> liberacoes = new ArrayList<Runnable>();
+
+  /**
+   * Thread do laço de eventos.
+   */
+  private final Thread thread;
+
+  /**
+   * Indica se o laço de eventos deve continuar executando.
+   */
+  private volatile boolean ativo = true;
+
+  /**
+   * Cria o reator e inicia a thread do laço de eventos.
+   *
+   * @throws IOException caso não consiga abrir o selector
+   */
+  private Reator() throws IOException {
+    super();
+    selector = Selector.open();
+    thread = new Thread(this, Mensagens.HAPPYEYEBALLS_24);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Retorna o reator compartilhado, criando-o caso não exista ou tenha sido encerrado.
+   *
+   * @return reator compartilhado
+   * @throws HappyEyeBallsException caso não consiga criar o reator
+   */
+  static Reator getReator() throws HappyEyeBallsException {
+    synchronized (MUTEX) {
+      if (padrao == null || !padrao.ativo) {
+        try {
+          padrao = new Reator();
+        } catch (IOException excep) {
+          throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_25, excep);
+        }
+      }
+      return padrao;
+    }
+  }
+
+  /**
+   * Registra uma instância aberta que utiliza o reator compartilhado.
+   */
+  static void adquirir() {
+    synchronized (MUTEX) {
+      instancias++;
+    }
+  }
+
+  /**
+   * Libera o reator de uma instância encerrada. O reator compartilhado é encerrado quando nenhuma
+   * instância permanece aberta.
+   */
+  static void devolver() {
+    synchronized (MUTEX) {
+      if (instancias > 0) {
+        instancias--;
+        if (instancias == 0) {
+          terminar();
+        }
+      }
+    }
+  }
+
+  /**
+   * Indica se alguma instância aberta utiliza o reator compartilhado.
+   *
+   * @return verdadeiro caso exista instância aberta
+   */
+  static boolean isEmUso() {
+    synchronized (MUTEX) {
+      return instancias > 0;
+    }
+  }
+
+  /**
+   * Encerra o reator compartilhado. As corridas pendentes terminam por expiração.
+   */
+  static void terminar() {
+    synchronized (MUTEX) {
+      if (padrao != null) {
+        padrao.ativo = false;
+        padrao.selector.wakeup();
+        padrao = null;
+      }
+    }
+  }
+
+  /**
+   * Envia uma tarefa para ser executada na thread do reator.
+   *
+   * @param tarefa tarefa a ser executada
+   * @throws RejectedExecutionException caso o reator esteja encerrado
+   */
+  void executar(final Runnable tarefa) {
+    tarefas.add(tarefa);
+    if (!ativo && tarefas.remove(tarefa)) {
+      throw new RejectedExecutionException(Mensagens.HAPPYEYEBALLS_26);
+    }
+    selector.wakeup();
+  }
+
+  /**
+   * Agenda uma tarefa para ser executada depois de um intervalo. Deve ser chamado na thread do
+   * reator. Tarefas com atraso zero executam ao final do ciclo corrente, depois do tratamento de
+   * todas as chaves selecionadas.
+   *
+   * @param atraso intervalo até a execução
+   * @param unidade unidade do intervalo
+   * @param tarefa tarefa a ser executada
+   * @return temporizador que permite cancelar a execução
+   */
+  Temporizador agendar(final long atraso, final TimeUnit unidade, final Runnable tarefa) {
+    final Temporizador temporizador =
+        new Temporizador(System.nanoTime() + unidade.toNanos(atraso), tarefa);
+    temporizadores.add(temporizador);
+    return temporizador;
+  }
+
+  /**
+   * Registra um canal no selector do reator. Deve ser chamado na thread do reator.
+   *
+   * @param canal canal não bloqueante
+   * @param operacoes operações de interesse
+   * @param tratador tratador dos eventos do canal
+   * @return chave do registro
+   * @throws ClosedChannelException caso o canal esteja fechado
+   */
+  SelectionKey registrar(final SelectableChannel canal, final int operacoes,
+      final Tratador tratador) throws ClosedChannelException {
+    return canal.register(selector, operacoes, tratador);
+  }
+
+  /**
+   * Cancela o registro de um canal no selector e executa a tarefa depois do próximo select, quando
+   * a chave já foi removida e o canal pode voltar ao modo bloqueante. Deve ser chamado na thread do
+   * reator.
+   *
+   * @param canal canal registrado no reator
+   * @param depois tarefa executada depois da remoção da chave
+   */
+  void liberar(final SelectableChannel canal, final Runnable depois) {
+    final SelectionKey chave = canal.keyFor(selector);
+    if (chave != null) {
+      chave.cancel();
+    }
+    liberacoes.add(depois);
+  }
+
+  /**
+   * Laço de eventos.
+   */
+  @Override
+  public void run() {
+    try {
+      while (ativo) {
+        final long espera = calculaEspera();
+        if (espera < 0) {
+          selector.selectNow();
+        } else {
+          selector.select(espera);
+        }
+        executaLiberacoes();
+        processaChaves();
+        executaTemporizadores(false);
+        executaTarefas();
+      }
+    } catch (IOException | RuntimeException excep) {
+      LOGGER.error(Mensagens.HAPPYEYEBALLS_25, excep);
+    } finally {
+      ativo = false;
+      executaTarefas();
+      executaTemporizadores(true);
+      try {
+        selector.close();
+      } catch (IOException excep) {
+        LOGGER.debug(Mensagens.HAPPYEYEBALLS_25, excep);
+      }
+      executaLiberacoes();
+    }
+  }
+
+  /**
+   * Calcula o tempo de espera do select até o próximo temporizador.
+   *
+   * @return milissegundos de espera, zero para esperar indefinidamente ou negativo para não esperar
+   */
+  private long calculaEspera() {
+    final long espera;
+    final Temporizador proximo = temporizadores.peek();
+    if (!tarefas.isEmpty() || !liberacoes.isEmpty()) {
+      espera = -1L;
+    } else if (proximo == null) {
+      espera = 0L;
+    } else {
+      final long restante = proximo.instante - System.nanoTime();
+      espera =
+          restante <= 0 ? -1L : Math.max(1L, TimeUnit.NANOSECONDS.toMillis(restante + 999999L));
+    }
+    return espera;
+  }
+
+  /**
+   * Repassa as chaves selecionadas para seus tratadores.
+   */
+  private void processaChaves() {
+    final Iterator<SelectionKey> chaves = selector.selectedKeys().iterator();
+    while (chaves.hasNext()) {
+      final SelectionKey chave = chaves.next();
+      chaves.remove();
+      if (chave.isValid()) {
+        try {
+          ((Tratador) chave.attachment()).pronto(chave);
+        } catch (RuntimeException excep) {
+          LOGGER.error(Mensagens.HAPPYEYEBALLS_27, excep);
+        }
+      }
+    }
+  }
+
+  /**
+   * Executa os temporizadores vencidos.
+   *
+   * @param todos executa todos os temporizadores, vencidos ou não
+   */
+  private void executaTemporizadores(final boolean todos) {
+    final long agora = System.nanoTime();
+    Temporizador proximo = temporizadores.peek();
+    while (proximo != null && (todos || proximo.instante - agora <= 0)) {
+      temporizadores.poll();
+      if (!proximo.cancelado) {
+        executa(proximo.tarefa);
+      }
+      proximo = temporizadores.peek();
+    }
+  }
+
+  /**
+   * Executa as tarefas que aguardavam a remoção de chaves canceladas.
+   */
+  private void executaLiberacoes() {
+    if (!liberacoes.isEmpty()) {
+      final Runnable[] pendentes = liberacoes.toArray(new Runnable[liberacoes.size()]);
+      liberacoes.clear();
+      for (final Runnable tarefa : pendentes) {
+        executa(tarefa);
+      }
+    }
+  }
+
+  /**
+   * Executa as tarefas enviadas por outras threads.
+   */
+  private void executaTarefas() {
+    Runnable tarefa = tarefas.poll();
+    while (tarefa != null) {
+      executa(tarefa);
+      tarefa = tarefas.poll();
+    }
+  }
+
+  /**
+   * Executa uma tarefa protegendo o laço de eventos contra exceções.
+   *
+   * @param tarefa tarefa a ser executada
+   */
+  private void executa(final Runnable tarefa) {
+    try {
+      tarefa.run();
+    } catch (RuntimeException excep) {
+      LOGGER.error(Mensagens.HAPPYEYEBALLS_27, excep);
+    }
+  }
+
+  /**
+   * Tratador de eventos de um canal registrado no reator.
+   */
+  interface Tratador {
+
+    /**
+     * Chamado na thread do reator quando o canal está pronto para alguma operação de interesse.
+     *
+     * @param chave chave selecionada
+     */
+    void pronto(SelectionKey chave);
+  }
+
+  /**
+   * Tarefa agendada para um instante futuro.
+   */
+  static final class Temporizador implements Comparable<Temporizador> {
+
+    /**
+     * Instante de disparo em nanossegundos.
+     */
+    private final long instante;
+
+    /**
+     * Tarefa a ser executada.
+     */
+    private final Runnable tarefa;
+
+    /**
+     * Indica se o temporizador foi cancelado.
+     */
+    private boolean cancelado;
+
+    /**
+     * Construtor.
+     *
+     * @param instante instante de disparo em nanossegundos
+     * @param tarefa tarefa a ser executada
+     */
+    Temporizador(final long instante, final Runnable tarefa) {
+      this.instante = instante;
+      this.tarefa = tarefa;
+    }
+
+    /**
+     * Cancela a execução da tarefa. Deve ser chamado na thread do reator.
+     */
+    void cancelar() {
+      cancelado = true;
+    }
+
+    /**
+     * Compara os instantes de disparo.
+     *
+     * @param outro outro temporizador
+     * @return número negativo, zero, ou positivo caso dispare antes, junto, ou depois
+     */
+    @Override
+    public int compareTo(final Temporizador outro) {
+      return Long.signum(instante - outro.instante);
+    }
+  }
+}
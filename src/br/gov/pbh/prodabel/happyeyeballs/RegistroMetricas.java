@@ -0,0 +1,50 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+/**
+ * Ponto de extensão para encaminhar os eventos do algoritmo a um registro de métricas externo. Os
+ * métodos são chamados na thread que produziu o evento, muitas vezes a do reator, e não devem
+ * bloquear.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+public interface RegistroMetricas {
+
+  /**
+   * Uma busca encontrou o IP no cache.
+   */
+  default void acertoCache() {
+    // sem registro
+  }
+
+  /**
+   * Uma busca não encontrou o IP no cache.
+   */
+  default void faltaCache() {
+    // sem registro
+  }
+
+  /**
+   * Uma corrida de conexões foi iniciada.
+   */
+  default void corridaIniciada() {
+    // sem registro
+  }
+
+  /**
+   * Uma corrida de conexões atingiu o tempo de expiração.
+   */
+  default void corridaExpirada() {
+    // sem registro
+  }
+
+  /**
+   * Uma corrida de conexões terminou com um vencedor.
+   *
+   * @param familia família do IP vencedor
+   * @param tempo tempo de conexão do vencedor em nanossegundos
+   */
+  default void vitoria(final FamiliaEndereco familia, final long tempo) {
+    // sem registro
+  }
+}
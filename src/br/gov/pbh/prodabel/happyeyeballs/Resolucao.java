@@ -0,0 +1,49 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Resolução de um nome em andamento, com um futuro para cada família de endereços. Os futuros são
+ * completados de forma independente, permitindo que a corrida comece pela família que responder
+ * primeiro.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+public final class Resolucao {
+
+  /**
+   * Endereços IPV6 do nome.
+   */
+  private final CompletableFuture<List<InetAddress>> ipv6;
+
+  /**
+   * Endereços IPV4 do nome.
+   */
+  private final CompletableFuture<List<InetAddress>> ipv4;
+
+  /**
+   * Construtor.
+   *
+   * @param ipv6 futuro com os endereços IPV6, vazio caso não existam
+   * @param ipv4 futuro com os endereços IPV4, vazio caso não existam
+   */
+  public Resolucao(final CompletableFuture<List<InetAddress>> ipv6,
+      final CompletableFuture<List<InetAddress>> ipv4) {
+    super();
+    this.ipv6 = ipv6;
+    this.ipv4 = ipv4;
+  }
+
+  /**
+   * Retorna o futuro dos endereços de uma família.
+   *
+   * @param familia família de endereços
+   * @return futuro com os endereços da família
+   */
+  public CompletableFuture<List<InetAddress>> getEnderecos(final FamiliaEndereco familia) {
+    return familia == FamiliaEndereco.IPV6 ? ipv6 : ipv4;
+  }
+}
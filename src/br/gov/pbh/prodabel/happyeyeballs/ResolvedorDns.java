@@ -0,0 +1,477 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.IDN;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Resolvedor DNS não bloqueante. As consultas AAAA e A são enviadas em paralelo, por UDP, a partir
+ * do {@link Reator} compartilhado, e cada família é completada assim que a sua resposta chega. Os
+ * nomes são consultados como absolutos, sem domínios de busca nem arquivo de hosts.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+final class ResolvedorDns implements ResolvedorNomes {
+
+  /**
+   * Tempo padrão de espera de cada consulta em milissegundos.
+   */
+  static final long TEMPO_CONSULTA_PADRAO = 1000L;
+
+  /**
+   * Número padrão de envios de cada consulta.
+   */
+  static final int TENTATIVAS_PADRAO = 2;
+
+  /**
+   * Porta padrão do serviço DNS.
+   */
+  static final int PORTA_DNS = 53;
+
+  /**
+   * Tipo do registro A.
+   */
+  static final int TIPO_A = 1;
+
+  /**
+   * Tipo do registro AAAA.
+   */
+  static final int TIPO_AAAA = 28;
+
+  /**
+   * Classe Internet.
+   */
+  static final int CLASSE_IN = 1;
+
+  /**
+   * Código de resposta de nome inexistente.
+   */
+  static final int NOME_INEXISTENTE = 3;
+
+  /**
+   * Tamanho máximo de uma mensagem DNS por UDP sem EDNS.
+   */
+  private static final int TAMANHO_MENSAGEM = 512;
+
+  /**
+   * Palavra chave do servidor de nomes no arquivo de configuração do resolvedor do sistema.
+   */
+  private static final String SERVIDOR_NOMES = "nameserver";
+
+  /**
+   * Padrão de um endereço IPV4 literal.
+   */
+  private static final Pattern IPV4_LITERAL =
+      Pattern.compile("\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}\\.\\d{1,3}");
+
+  /**
+   * Classe de log.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResolvedorDns.class);
+
+  /**
+   * Servidor DNS consultado.
+   */
+  private final InetSocketAddress servidor;
+
+  /**
+   * Tempo de espera de cada envio em milissegundos.
+   */
+  private final long tempoConsulta;
+
+  /**
+   * Número de envios de cada consulta.
+   */
+  private final int tentativas;
+
+  /**
+   * Construtor com os tempos padrão.
+   *
+   * @param servidor endereço e porta do servidor DNS
+   */
+  ResolvedorDns(final InetSocketAddress servidor) {
+    this(servidor, TEMPO_CONSULTA_PADRAO, TENTATIVAS_PADRAO);
+  }
+
+  /**
+   * Construtor.
+   *
+   * @param servidor endereço e porta do servidor DNS
+   * @param tempoConsulta tempo de espera de cada envio em milissegundos
+   * @param tentativas número de envios de cada consulta
+   */
+  ResolvedorDns(final InetSocketAddress servidor, final long tempoConsulta,
+      final int tentativas) {
+    super();
+    this.servidor = servidor;
+    this.tempoConsulta = tempoConsulta;
+    this.tentativas = tentativas;
+  }
+
+  /**
+   * Retorna o primeiro servidor de nomes configurado no sistema.
+   *
+   * @return endereço e porta do servidor DNS
+   * @throws HappyEyeBallsException caso nenhum servidor de nomes esteja configurado
+   */
+  static InetSocketAddress servidorDoSistema() throws HappyEyeBallsException {
+    try (BufferedReader leitor = new BufferedReader(new InputStreamReader(
+        new FileInputStream(Mensagens.HAPPYEYEBALLS_39), StandardCharsets.US_ASCII))) {
+      String linha = leitor.readLine();
+      while (linha != null) {
+        final String[] campos = linha.trim().split("\\s+");
+        if (campos.length > 1 && SERVIDOR_NOMES.equals(campos[0])) {
+          return new InetSocketAddress(InetAddress.getByName(campos[1]), PORTA_DNS);
+        }
+        linha = leitor.readLine();
+      }
+    } catch (IOException excep) {
+      throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_38, excep);
+    }
+    throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_38);
+  }
+
+  /**
+   * Inicia as consultas AAAA e A em paralelo.
+   *
+   * @param nome nome do servidor
+   * @return resolução em andamento
+   */
+  @Override
+  public Resolucao resolver(final String nome) {
+    final Resolucao resolucao;
+    if (nome.indexOf(':') >= 0 || IPV4_LITERAL.matcher(nome).matches()) {
+      resolucao = resolverLiteral(nome);
+    } else {
+      final String semPonto = nome.endsWith(".") ? nome.substring(0, nome.length() - 1) : nome;
+      final String absoluto = IDN.toASCII(semPonto);
+      resolucao = new Resolucao(consultar(absoluto, FamiliaEndereco.IPV6),
+          consultar(absoluto, FamiliaEndereco.IPV4));
+    }
+    return resolucao;
+  }
+
+  /**
+   * Converte um endereço literal sem consultar o servidor.
+   *
+   * @param nome endereço literal
+   * @return resolução já completada
+   */
+  private static Resolucao resolverLiteral(final String nome) {
+    final CompletableFuture<List<InetAddress>> ipv6 = new CompletableFuture<List<InetAddress>>();
+    final CompletableFuture<List<InetAddress>> ipv4 = new CompletableFuture<List<InetAddress>>();
+    try {
+      final InetAddress endereco = InetAddress.getByName(nome);
+      final List<InetAddress> lista = Collections.singletonList(endereco);
+      final List<InetAddress> vazia = Collections.emptyList();
+      ipv6.complete(FamiliaEndereco.de(endereco) == FamiliaEndereco.IPV6 ? lista : vazia);
+      ipv4.complete(FamiliaEndereco.de(endereco) == FamiliaEndereco.IPV4 ? lista : vazia);
+    } catch (UnknownHostException excep) {
+      final HappyEyeBallsException falha =
+          new NomeNaoEncontradoException(Mensagens.HAPPYEYEBALLS_3, excep);
+      ipv6.completeExceptionally(falha);
+      ipv4.completeExceptionally(falha);
+    }
+    return new Resolucao(ipv6, ipv4);
+  }
+
+  /**
+   * Envia a consulta de uma família pelo reator.
+   *
+   * @param nome nome absoluto do servidor
+   * @param familia família consultada
+   * @return futuro com os endereços da família
+   */
+  private CompletableFuture<List<InetAddress>> consultar(final String nome,
+      final FamiliaEndereco familia) {
+    final Consulta consulta = new Consulta(nome, familia);
+    try {
+      consulta.reator = Reator.getReator();
+      consulta.reator.executar(consulta::iniciar);
+    } catch (HappyEyeBallsException excep) {
+      consulta.resultado.completeExceptionally(excep);
+    } catch (RejectedExecutionException excep) {
+      consulta.finaliza(null, new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_26, excep));
+    }
+    return consulta.resultado;
+  }
+
+  /**
+   * Monta a mensagem de consulta DNS.
+   *
+   * @param identificador identificador da consulta
+   * @param nome nome absoluto consultado
+   * @param tipo tipo do registro
+   * @return mensagem pronta para envio
+   */
+  static ByteBuffer montaConsulta(final int identificador, final String nome, final int tipo) {
+    final ByteBuffer consulta = ByteBuffer.allocate(TAMANHO_MENSAGEM);
+    consulta.putShort((short) identificador);
+    // Consulta padrão com recursão desejada
+    consulta.putShort((short) 0x0100);
+    consulta.putShort((short) 1);
+    consulta.putShort((short) 0);
+    consulta.putShort((short) 0);
+    consulta.putShort((short) 0);
+    for (final String rotulo : nome.split("\\.")) {
+      final byte[] bytes = rotulo.getBytes(StandardCharsets.US_ASCII);
+      consulta.put((byte) bytes.length);
+      consulta.put(bytes);
+    }
+    consulta.put((byte) 0);
+    consulta.putShort((short) tipo);
+    consulta.putShort((short) CLASSE_IN);
+    consulta.flip();
+    return consulta;
+  }
+
+  /**
+   * Lê os endereços da resposta DNS.
+   *
+   * @param resposta mensagem recebida
+   * @param identificador identificador da consulta
+   * @param nome nome consultado
+   * @param tipo tipo do registro consultado
+   * @return endereços da resposta ou nulo caso a resposta não seja desta consulta
+   * @throws HappyEyeBallsException caso o nome não exista ou a resposta seja inválida
+   */
+  static List<InetAddress> leResposta(final ByteBuffer resposta, final int identificador,
+      final String nome, final int tipo) throws HappyEyeBallsException {
+    List<InetAddress> enderecos = null;
+    try {
+      final int bandeiras = resposta.getShort(2) & 0xFFFF;
+      if ((resposta.getShort(0) & 0xFFFF) == identificador && (bandeiras & 0x8000) != 0) {
+        final int codigo = bandeiras & 0xF;
+        if (codigo == NOME_INEXISTENTE) {
+          throw new NomeNaoEncontradoException(Mensagens.HAPPYEYEBALLS_3);
+        } else if (codigo != 0) {
+          throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_36);
+        }
+        final int perguntas = resposta.getShort(4) & 0xFFFF;
+        final int respostas = resposta.getShort(6) & 0xFFFF;
+        final int tamanho = tipo == TIPO_AAAA ? 16 : 4;
+        resposta.position(12);
+        for (int i = 0; i < perguntas; i++) {
+          pulaNome(resposta);
+          resposta.position(resposta.position() + 4);
+        }
+        enderecos = new ArrayList<InetAddress>(respostas);
+        for (int i = 0; i < respostas; i++) {
+          pulaNome(resposta);
+          final int tipoRegistro = resposta.getShort() & 0xFFFF;
+          final int classe = resposta.getShort() & 0xFFFF;
+          resposta.getInt();
+          final int comprimento = resposta.getShort() & 0xFFFF;
+          if (tipoRegistro == tipo && classe == CLASSE_IN && comprimento == tamanho) {
+            final byte[] dados = new byte[comprimento];
+            resposta.get(dados);
+            enderecos.add(InetAddress.getByAddress(nome, dados));
+          } else {
+            resposta.position(resposta.position() + comprimento);
+          }
+        }
+      }
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+        | UnknownHostException excep) {
+      throw new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_40, excep);
+    }
+    return enderecos;
+  }
+
+  /**
+   * Avança a posição da mensagem para depois de um nome, inclusive comprimido.
+   *
+   * @param mensagem mensagem DNS
+   */
+  private static void pulaNome(final ByteBuffer mensagem) {
+    int tamanho = mensagem.get() & 0xFF;
+    while (tamanho != 0 && (tamanho & 0xC0) != 0xC0) {
+      mensagem.position(mensagem.position() + tamanho);
+      tamanho = mensagem.get() & 0xFF;
+    }
+    if (tamanho != 0) {
+      mensagem.get();
+    }
+  }
+
+  /**
+   * Consulta de uma família, conduzida pelo reator.
+   */
+  private final class Consulta implements Reator.Tratador {
+
+    /**
+     * Nome consultado.
+     */
+    private final String nome;
+
+    /**
+     * Família consultada.
+     */
+    private final FamiliaEndereco familia;
+
+    /**
+     * Tipo do registro consultado.
+     */
+    private final int tipo;
+
+    /**
+     * Identificador da consulta.
+     */
+    private final int identificador = ThreadLocalRandom.current().nextInt(0x10000);
+
+    /**
+     * Resultado da consulta.
+     */
+    private final CompletableFuture<List<InetAddress>> resultado =
+        new CompletableFuture<List<InetAddress>>();
+
+    /**
+     * Reator que conduz a consulta.
+     */
+    private Reator reator;
+
+    /**
+     * Canal UDP da consulta.
+     */
+    private DatagramChannel canal;
+
+    /**
+     * Mensagem de consulta.
+     */
+    private ByteBuffer mensagem;
+
+    /**
+     * Temporizador de espera da resposta.
+     */
+    private Reator.Temporizador espera;
+
+    /**
+     * Envios realizados.
+     */
+    private int enviadas;
+
+    /**
+     * Construtor.
+     *
+     * @param nome nome consultado
+     * @param familia família consultada
+     */
+    Consulta(final String nome, final FamiliaEndereco familia) {
+      this.nome = nome;
+      this.familia = familia;
+      tipo = familia == FamiliaEndereco.IPV6 ? TIPO_AAAA : TIPO_A;
+    }
+
+    /**
+     * Abre o canal e envia a consulta.
+     */
+    void iniciar() {
+      try {
+        mensagem = montaConsulta(identificador, nome, tipo);
+        canal = DatagramChannel.open();
+        canal.configureBlocking(false);
+        canal.connect(servidor);
+        reator.registrar(canal, SelectionKey.OP_READ, this);
+        envia();
+      } catch (IOException | IllegalArgumentException excep) {
+        finaliza(null, new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_36, excep));
+      }
+    }
+
+    /**
+     * Envia a consulta e agenda a espera da resposta.
+     *
+     * @throws IOException caso não consiga enviar
+     */
+    private void envia() throws IOException {
+      enviadas++;
+      canal.write(mensagem.duplicate());
+      espera = reator.agendar(tempoConsulta, TimeUnit.MILLISECONDS, this::expira);
+    }
+
+    /**
+     * Reenvia a consulta ou encerra por expiração.
+     */
+    private void expira() {
+      if (enviadas < tentativas) {
+        try {
+          envia();
+        } catch (IOException excep) {
+          finaliza(null, new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_36, excep));
+        }
+      } else {
+        finaliza(null, new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_37));
+      }
+    }
+
+    /**
+     * Lê a resposta recebida.
+     *
+     * @param chave chave selecionada
+     */
+    @Override
+    public void pronto(final SelectionKey chave) {
+      final ByteBuffer resposta = ByteBuffer.allocate(TAMANHO_MENSAGEM);
+      try {
+        if (canal.read(resposta) > 0) {
+          resposta.flip();
+          final List<InetAddress> enderecos = leResposta(resposta, identificador, nome, tipo);
+          if (enderecos != null) {
+            finaliza(enderecos, null);
+          }
+        }
+      } catch (IOException excep) {
+        finaliza(null, new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_36, excep));
+      } catch (HappyEyeBallsException excep) {
+        finaliza(null, excep);
+      }
+    }
+
+    /**
+     * Fecha o canal e completa a consulta.
+     *
+     * @param enderecos endereços encontrados
+     * @param excep falha da consulta
+     */
+    void finaliza(final List<InetAddress> enderecos, final HappyEyeBallsException excep) {
+      if (espera != null) {
+        espera.cancelar();
+      }
+      if (canal != null) {
+        try {
+          canal.close();
+        } catch (IOException excecao) {
+          LOGGER.debug(Mensagens.HAPPYEYEBALLS_36, excecao);
+        }
+      }
+      if (excep == null) {
+        LOGGER.debug(Mensagens.HAPPYEYEBALLS_35, nome, familia, enderecos);
+        resultado.complete(enderecos);
+      } else {
+        resultado.completeExceptionally(excep);
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Resolvedor de nomes que utiliza {@link InetAddress#getAllByName(String)}. A consulta é
+ * bloqueante e retorna as duas famílias juntas, por isso é executada em um pool de threads.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+final class ResolvedorJdk implements ResolvedorNomes {
+
+  /**
+   * Classe de log.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResolvedorJdk.class);
+
+  /**
+   * Executor das consultas bloqueantes.
+   */
+  private final Executor executor;
+
+  /**
+   * Construtor.
+   *
+   * @param executor executor das consultas bloqueantes
+   */
+  ResolvedorJdk(final Executor executor) {
+    super();
+    this.executor = executor;
+  }
+
+  /**
+   * Inicia a resolução do nome no executor.
+   *
+   * @param nome nome do servidor
+   * @return resolução em andamento
+   */
+  @Override
+  public Resolucao resolver(final String nome) {
+    CompletableFuture<InetAddress[]> todos;
+    try {
+      todos = CompletableFuture.supplyAsync(() -> buscar(nome), executor);
+    } catch (RejectedExecutionException excep) {
+      todos = new CompletableFuture<InetAddress[]>();
+      todos.completeExceptionally(new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_12, excep));
+    }
+    return new Resolucao(todos.thenApply(enderecos -> separa(enderecos, FamiliaEndereco.IPV6)),
+        todos.thenApply(enderecos -> separa(enderecos, FamiliaEndereco.IPV4)));
+  }
+
+  /**
+   * Obtem todos os ip de um nome.
+   *
+   * @param nome nome do servidor
+   * @return endereços do nome
+   * @throws CompletionException caso não encontre o servidor.
+   */
+  private static InetAddress[] buscar(final String nome) {
+    try {
+      final InetAddress[] enderecos = InetAddress.getAllByName(nome);
+      for (final InetAddress endereco : enderecos) {
+        LOGGER.debug(Mensagens.HAPPYEYEBALLS_2, nome, endereco);
+      }
+      return enderecos;
+    } catch (UnknownHostException exp) {
+      throw new CompletionException(
+          new NomeNaoEncontradoException(Mensagens.HAPPYEYEBALLS_3, exp));
+    }
+  }
+
+  /**
+   * Separa os endereços de uma família.
+   *
+   * @param enderecos todos os endereços do nome
+   * @param familia família desejada
+   * @return endereços da família
+   */
+  private static List<InetAddress> separa(final InetAddress[] enderecos,
+      final FamiliaEndereco familia) {
+    final List<InetAddress> separados = new ArrayList<InetAddress>(enderecos.length);
+    for (final InetAddress endereco : enderecos) {
+      if (FamiliaEndereco.de(endereco) == familia) {
+        separados.add(endereco);
+      }
+    }
+    return separados;
+  }
+}
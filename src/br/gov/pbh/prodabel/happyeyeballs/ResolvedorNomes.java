@@ -0,0 +1,56 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+
+/**
+ * Resolvedor de nomes utilizado pelo algoritmo Happy Eyeballs. As implementações devem consultar
+ * as famílias IPV6 e IPV4 em paralelo e completar cada futuro assim que a sua resposta chegar.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+public interface ResolvedorNomes {
+
+  /**
+   * Inicia a resolução de um nome sem bloquear a thread chamadora. Os futuros falham com
+   * {@link HappyEyeBallsException} caso o nome não seja encontrado.
+   *
+   * @param nome nome do servidor
+   * @return resolução em andamento
+   */
+  Resolucao resolver(final String nome);
+
+  /**
+   * Retorna o resolvedor da JDK, que executa {@code InetAddress.getAllByName} no executor
+   * informado e completa as duas famílias ao mesmo tempo.
+   *
+   * @param executor executor das consultas bloqueantes
+   * @return resolvedor da JDK
+   */
+  static ResolvedorNomes jdk(final Executor executor) {
+    return new ResolvedorJdk(executor);
+  }
+
+  /**
+   * Retorna o resolvedor DNS não bloqueante, que consulta os registros AAAA e A em paralelo no
+   * servidor informado.
+   *
+   * @param servidor endereço e porta do servidor DNS
+   * @return resolvedor DNS
+   */
+  static ResolvedorNomes dns(final InetSocketAddress servidor) {
+    return new ResolvedorDns(servidor);
+  }
+
+  /**
+   * Retorna o resolvedor DNS não bloqueante que consulta o primeiro servidor de nomes configurado
+   * no sistema.
+   *
+   * @return resolvedor DNS
+   * @throws HappyEyeBallsException caso nenhum servidor de nomes esteja configurado
+   */
+  static ResolvedorNomes dns() throws HappyEyeBallsException {
+    return new ResolvedorDns(ResolvedorDns.servidorDoSistema());
+  }
+}
@@ -0,0 +1,66 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Resultado da busca em lote dos melhores IPs, com o IP vencedor de cada destino que conectou e a
+ * falha de cada destino que não conectou.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+public final class ResultadoLote {
+
+  /**
+   * IP vencedor por destino.
+   */
+  private final Map<InetSocketAddress, InetAddress> enderecos;
+  /**
+   * Falha por destino.
+   */
+  private final Map<InetSocketAddress, HappyEyeBallsException> falhas;
+
+  /**
+   * Construtor.
+   *
+   * @param enderecos IP vencedor por destino
+   * @param falhas falha por destino
+   */
+  ResultadoLote(final Map<InetSocketAddress, InetAddress> enderecos,
+      final Map<InetSocketAddress, HappyEyeBallsException> falhas) {
+    super();
+    this.enderecos = Collections.unmodifiableMap(enderecos);
+    this.falhas = Collections.unmodifiableMap(falhas);
+  }
+
+  /**
+   * Retorna o IP vencedor de cada destino que conectou, na ordem dos destinos informados.
+   *
+   * @return mapa imutável do destino para o IP vencedor
+   */
+  public Map<InetSocketAddress, InetAddress> getEnderecos() {
+    return enderecos;
+  }
+
+  /**
+   * Retorna a falha de cada destino que não conectou, na ordem dos destinos informados.
+   *
+   * @return mapa imutável do destino para a falha
+   */
+  public Map<InetSocketAddress, HappyEyeBallsException> getFalhas() {
+    return falhas;
+  }
+
+  /**
+   * Indica se todos os destinos conectaram.
+   *
+   * @return true caso nenhum destino tenha falhado
+   */
+  public boolean isCompleto() {
+    return falhas.isEmpty();
+  }
+
+}
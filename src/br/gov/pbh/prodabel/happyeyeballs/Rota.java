@@ -0,0 +1,90 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * Par de endereços vencedor de uma corrida: o endereço local de origem e o IP de destino. Para
+ * conectar pela mesma rota, associe o socket a {@link #getEnderecoLocal()} antes de conectar a
+ * {@link #getEnderecoRemoto()}.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+public final class Rota {
+
+  /**
+   * Endereço local de origem, ou null quando escolhido pelo sistema.
+   */
+  private final InetAddress origem;
+  /**
+   * IP de destino.
+   */
+  private final InetAddress destino;
+  /**
+   * Porta de destino.
+   */
+  private final int porta;
+
+  /**
+   * Construtor.
+   *
+   * @param origem endereço local de origem ou null
+   * @param destino IP de destino
+   * @param porta porta de destino
+   */
+  Rota(final InetAddress origem, final InetAddress destino, final int porta) {
+    super();
+    this.origem = origem;
+    this.destino = destino;
+    this.porta = porta;
+  }
+
+  /**
+   * Retorna o endereço local de origem.
+   *
+   * @return endereço de origem ou null caso a corrida não tenha escolhido a origem
+   */
+  public InetAddress getOrigem() {
+    return origem;
+  }
+
+  /**
+   * Retorna o IP de destino.
+   *
+   * @return IP de destino
+   */
+  public InetAddress getDestino() {
+    return destino;
+  }
+
+  /**
+   * Retorna o endereço para associar o socket antes de conectar, com porta local livre.
+   *
+   * @return endereço local ou null, que associa o socket a uma origem escolhida pelo sistema
+   */
+  public InetSocketAddress getEnderecoLocal() {
+    return origem == null ? null : new InetSocketAddress(origem, 0);
+  }
+
+  /**
+   * Retorna o endereço para conectar.
+   *
+   * @return IP e porta de destino
+   */
+  public InetSocketAddress getEnderecoRemoto() {
+    return new InetSocketAddress(destino, porta);
+  }
+
+  /**
+   * Retorna a representação em texto da rota.
+   *
+   * @return origem e destino
+   */
+  @Override
+  public String toString() {
+    return new StringBuffer(Mensagens.HAPPYEYEBALLS_75).append(origem)
+        .append(Mensagens.HAPPYEYEBALLS_76).append(getEnderecoRemoto())
+        .append(Mensagens.HAPPYEYEBALLS_15).toString();
+  }
+}
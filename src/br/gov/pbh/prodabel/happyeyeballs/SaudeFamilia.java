@@ -0,0 +1,149 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saúde das famílias de endereços, compartilhada por todas as corridas. Uma família falha numa
+ * corrida quando nenhuma das suas tentativas conectou e a outra família conectou. Após uma
+ * quantidade de falhas consecutivas, a família é suspensa por um período: as corridas passam a
+ * começar pela outra família e só tentam a suspensa depois de esgotá-la. Qualquer conexão da
+ * família zera as falhas e encerra a suspensão.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+final class SaudeFamilia {
+
+  /**
+   * Quantidade padrão de falhas consecutivas que suspende uma família.
+   */
+  static final int FALHAS_PADRAO = 3;
+
+  /**
+   * Tempo padrão de suspensão de uma família em milissegundos.
+   */
+  static final long SUSPENSAO_PADRAO = 60000L;
+
+  /**
+   * Interface de log.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(SaudeFamilia.class);
+
+  /**
+   * Saúde compartilhada.
+   */
+  private static final SaudeFamilia SAUDE = new SaudeFamilia(
+      Integer.getInteger(Mensagens.HAPPYEYEBALLS_65, FALHAS_PADRAO),
+      Long.getLong(Mensagens.HAPPYEYEBALLS_66, SUSPENSAO_PADRAO));
+
+  /**
+   * Quantidade de falhas consecutivas que suspende uma família.
+   */
+  private final int limiteFalhas;
+
+  /**
+   * Tempo de suspensão em nanossegundos.
+   */
+  private final long suspensao;
+
+  /**
+   * Falhas consecutivas de cada família.
+   */
+  private final int[] falhas = new int[FamiliaEndereco.values().length];
+
+  /**
+   * Indica se a família foi suspensa.
+   */
+  private final boolean[] suspensas = new boolean[FamiliaEndereco.values().length];
+
+  /**
+   * Instante em nanossegundos do fim da suspensão de cada família.
+   */
+  private final long[] suspensaAte = new long[FamiliaEndereco.values().length];
+
+  /**
+   * Construtor.
+   *
+   * @param limiteFalhas quantidade de falhas consecutivas que suspende uma família
+   * @param suspensao tempo de suspensão em milissegundos
+   */
+  SaudeFamilia(final int limiteFalhas, final long suspensao) {
+    super();
+    this.limiteFalhas = Math.max(1, limiteFalhas);
+    this.suspensao = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, suspensao));
+  }
+
+  /**
+   * Retorna a saúde compartilhada.
+   *
+   * @return saúde compartilhada
+   */
+  static SaudeFamilia getSaude() {
+    return SAUDE;
+  }
+
+  /**
+   * Registra uma corrida em que a família conectou.
+   *
+   * @param familia família que conectou
+   */
+  synchronized void registrarSucesso(final FamiliaEndereco familia) {
+    final int posicao = familia.ordinal();
+    if (suspensas[posicao]) {
+      LOGGER.info(Mensagens.HAPPYEYEBALLS_68, familia);
+    }
+    falhas[posicao] = 0;
+    suspensas[posicao] = false;
+  }
+
+  /**
+   * Registra uma corrida em que a família não conectou e a outra conectou. Ao atingir o limite, a
+   * família é suspensa; depois da suspensão, uma nova falha a suspende outra vez.
+   *
+   * @param familia família que falhou
+   */
+  synchronized void registrarFalha(final FamiliaEndereco familia) {
+    final int posicao = familia.ordinal();
+    falhas[posicao]++;
+    if (falhas[posicao] >= limiteFalhas && !isSuspensa(familia)) {
+      suspensas[posicao] = true;
+      suspensaAte[posicao] = System.nanoTime() + suspensao;
+      LOGGER.warn(Mensagens.HAPPYEYEBALLS_67, familia,
+          TimeUnit.NANOSECONDS.toMillis(suspensao), falhas[posicao]);
+    }
+  }
+
+  /**
+   * Indica se a família está suspensa.
+   *
+   * @param familia família consultada
+   * @return verdadeiro durante a suspensão
+   */
+  synchronized boolean isSuspensa(final FamiliaEndereco familia) {
+    final int posicao = familia.ordinal();
+    return suspensas[posicao] && System.nanoTime() - suspensaAte[posicao] < 0L;
+  }
+
+  /**
+   * Retorna a família pela qual as corridas começam: IPV6, como na RFC 8305, a menos que somente
+   * ela esteja suspensa.
+   *
+   * @return família preferida
+   */
+  synchronized FamiliaEndereco getPreferida() {
+    return isSuspensa(FamiliaEndereco.IPV6) && !isSuspensa(FamiliaEndereco.IPV4)
+        ? FamiliaEndereco.IPV4 : FamiliaEndereco.IPV6;
+  }
+
+  /**
+   * Descarta as falhas e suspensões.
+   */
+  synchronized void limpar() {
+    Arrays.fill(falhas, 0);
+    Arrays.fill(suspensas, false);
+  }
+}
@@ -0,0 +1,121 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sondagem em segundo plano dos destinos quentes. Um destino é quente quando a sua entrada do cache
+ * próximo foi consultada desde o ciclo anterior; a cada ciclo, as corridas desses destinos são
+ * refeitas pela busca compartilhada da instância, que substitui o IP em cache, de forma que as
+ * requisições não esperam por uma corrida enquanto o destino continua em uso.
+ *
+ * <p>O orçamento limita as corridas da sondagem em andamento: os destinos mais próximos da
+ * expiração são sondados primeiro e os que excedem o orçamento continuam quentes para o ciclo
+ * seguinte.</p>
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+final class Sondador {
+
+  /**
+   * Interface de log.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(Sondador.class);
+
+  /**
+   * Instância que conduz as corridas.
+   */
+  private final HappyEyeballsImpl happyEyeballs;
+
+  /**
+   * Cache próximo que marca as entradas consultadas.
+   */
+  private final CacheProximo proximo;
+
+  /**
+   * Quantidade máxima de corridas da sondagem em andamento.
+   */
+  private final int orcamento;
+
+  /**
+   * Corridas da sondagem em andamento.
+   */
+  private final AtomicInteger emAndamento = new AtomicInteger();
+
+  /**
+   * Execução periódica dos ciclos.
+   */
+  private final ScheduledFuture<?> tarefa;
+
+  /**
+   * Construtor. Inicia os ciclos no agendador.
+   *
+   * @param happyEyeballs instância que conduz as corridas
+   * @param proximo cache próximo da instância
+   * @param intervalo intervalo entre os ciclos em milissegundos
+   * @param orcamento quantidade máxima de corridas em andamento
+   * @param agendador agendador da instância
+   */
+  Sondador(final HappyEyeballsImpl happyEyeballs, final CacheProximo proximo,
+      final long intervalo, final int orcamento, final ScheduledExecutorService agendador) {
+    super();
+    this.happyEyeballs = happyEyeballs;
+    this.proximo = proximo;
+    this.orcamento = orcamento;
+    tarefa = agendador.scheduleWithFixedDelay(this::ciclo, intervalo, intervalo,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Encerra os ciclos. As corridas em andamento terminam normalmente.
+   */
+  void encerrar() {
+    tarefa.cancel(false);
+  }
+
+  /**
+   * Retorna a quantidade de corridas da sondagem em andamento.
+   *
+   * @return corridas em andamento
+   */
+  int getEmAndamento() {
+    return emAndamento.get();
+  }
+
+  /**
+   * Refaz as corridas dos destinos quentes dentro do orçamento disponível. Uma falha inesperada é
+   * registrada no log, para que a execução periódica não seja cancelada.
+   */
+  void ciclo() {
+    try {
+      int vagas = orcamento - emAndamento.get();
+      if (vagas > 0) {
+        final List<Map.Entry<String, CacheProximo.Entrada>> quentes =
+            proximo.usadas(System.nanoTime());
+        for (int i = 0; vagas > 0 && i < quentes.size(); i++) {
+          final String nomeRede = quentes.get(i).getKey();
+          final CacheProximo.Entrada entrada = quentes.get(i).getValue();
+          entrada.resfriar();
+          // A corrida só é contada depois de iniciada, para que uma falha não consuma o orçamento
+          final CompletableFuture<InetAddress> sondagem =
+              happyEyeballs.sondar(nomeRede, entrada.getPorta());
+          emAndamento.incrementAndGet();
+          sondagem.whenComplete((enderecoIp, excep) -> emAndamento.decrementAndGet());
+          vagas--;
+        }
+      }
+    } catch (RuntimeException excep) {
+      LOGGER.error(Mensagens.HAPPYEYEBALLS_104, excep);
+    }
+  }
+}
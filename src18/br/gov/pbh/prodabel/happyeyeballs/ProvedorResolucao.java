@@ -0,0 +1,54 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.net.spi.InetAddressResolver;
+import java.net.spi.InetAddressResolverProvider;
+
+/**
+ * Provedor de resolução de nomes da JVM (JDK 18 ou superior), registrado em
+ * {@code META-INF/services}. Com a biblioteca no classpath, todas as consultas de
+ * {@code InetAddress.getAllByName}, inclusive as dos drivers JDBC, do {@code HttpClient} e de
+ * outras bibliotecas, recebem os endereços reordenados pelas corridas do Happy Eyeballs, com o
+ * vencedor primeiro.
+ *
+ * <p>A porta das corridas é definida pela propriedade {@code happyeyeballs.portaResolvedor}
+ * (padrão 443).</p>
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+public final class ProvedorResolucao extends InetAddressResolverProvider {
+
+  /**
+   * Porta padrão das corridas.
+   */
+  private static final int PORTA_PADRAO = 443;
+
+  /**
+   * Construtor utilizado pelo {@link java.util.ServiceLoader}.
+   */
+  public ProvedorResolucao() {
+    super();
+  }
+
+  /**
+   * Cria o resolvedor que reordena as respostas do resolvedor nativo da JDK.
+   *
+   * @param configuracao configuração da JDK com o resolvedor nativo
+   * @return resolvedor da JVM
+   */
+  @Override
+  public InetAddressResolver get(final Configuration configuracao) {
+    return new ResolvedorJvm(configuracao.builtinResolver(),
+        Integer.getInteger(Mensagens.HAPPYEYEBALLS_99, PORTA_PADRAO));
+  }
+
+  /**
+   * Retorna o nome do provedor.
+   *
+   * @return nome do provedor
+   */
+  @Override
+  public String name() {
+    return Mensagens.HAPPYEYEBALLS_100;
+  }
+}
@@ -0,0 +1,161 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.net.spi.InetAddressResolver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Resolvedor da JVM que reordena as respostas do resolvedor nativo pelas corridas do Happy
+ * Eyeballs. Uma consulta nunca espera por uma corrida: com o vencedor em cache, ele vem primeiro e
+ * os demais endereços seguem a ordem do {@link HistoricoLatencia}; sem ele, a resposta nativa é
+ * entregue como veio e a corrida é iniciada em segundo plano, para as consultas seguintes.
+ *
+ * <p>A JDK guarda as respostas no seu próprio cache pelo tempo de
+ * {@code networkaddress.cache.ttl}, portanto a nova ordem só é vista quando a resposta anterior
+ * expira.</p>
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+final class ResolvedorJvm implements InetAddressResolver {
+
+  /**
+   * Classe de log.
+   */
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResolvedorJvm.class);
+
+  /**
+   * Resolvedor nativo da JDK.
+   */
+  private final InetAddressResolver nativo;
+
+  /**
+   * Porta das corridas.
+   */
+  private final int porta;
+
+  /**
+   * Indica se a instância das corridas já começou a ser criada.
+   */
+  private final AtomicBoolean criando = new AtomicBoolean();
+
+  /**
+   * Instância das corridas, criada na primeira consulta.
+   */
+  private volatile HappyEyeballs happyEyeballs;
+
+  /**
+   * Construtor.
+   *
+   * @param nativo resolvedor nativo da JDK
+   * @param porta porta das corridas
+   */
+  ResolvedorJvm(final InetAddressResolver nativo, final int porta) {
+    super();
+    this.nativo = nativo;
+    this.porta = porta;
+  }
+
+  /**
+   * Consulta o resolvedor nativo e coloca o vencedor da corrida em cache à frente dos demais
+   * endereços.
+   *
+   * @param nome nome do servidor
+   * @param politica política de busca da JDK
+   * @return endereços reordenados
+   * @throws UnknownHostException caso o resolvedor nativo não encontre o nome
+   */
+  @Override
+  public Stream<InetAddress> lookupByName(final String nome, final LookupPolicy politica)
+      throws UnknownHostException {
+    final List<InetAddress> enderecos = nativo.lookupByName(nome, politica)
+        .collect(Collectors.toList());
+    final HappyEyeballs instancia = getHappyEyeballs();
+    Stream<InetAddress> resposta = enderecos.stream();
+    if (instancia != null && enderecos.size() > 1) {
+      final InetAddress melhor = emCache(instancia.obterIpAsync(nome, porta));
+      if (melhor != null) {
+        final List<InetAddress> ordenados = ordena(enderecos, melhor);
+        LOGGER.debug(Mensagens.HAPPYEYEBALLS_101, nome, ordenados);
+        resposta = ordenados.stream();
+      }
+    }
+    return resposta;
+  }
+
+  /**
+   * Consulta o nome de um endereço no resolvedor nativo.
+   *
+   * @param endereco endereço IP em bytes
+   * @return nome do endereço
+   * @throws UnknownHostException caso o nome não seja encontrado
+   */
+  @Override
+  public String lookupByAddress(final byte[] endereco) throws UnknownHostException {
+    return nativo.lookupByAddress(endereco);
+  }
+
+  /**
+   * Retorna a instância das corridas, criando-a na primeira consulta. Enquanto ela é criada, as
+   * consultas, inclusive as feitas pela própria criação, recebem a resposta nativa.
+   *
+   * @return instância das corridas ou null enquanto é criada
+   */
+  HappyEyeballs getHappyEyeballs() {
+    if (happyEyeballs == null && criando.compareAndSet(false, true)) {
+      final HappyEyeballsBuilder construtor = HappyEyeballs.builder();
+      final ExecutorService executor = construtor.criaExecutor();
+      happyEyeballs = construtor.executor(executor)
+          .resolvedor(new ResolvedorNativo(nativo, executor)).construir();
+    }
+    return happyEyeballs;
+  }
+
+  /**
+   * Retorna o vencedor da corrida sem esperar por ela. Uma corrida em andamento, ou que falhou,
+   * não altera a resposta.
+   *
+   * @param corrida IP em cache ou corrida iniciada
+   * @return vencedor em cache ou null
+   */
+  private static InetAddress emCache(final CompletableFuture<InetAddress> corrida) {
+    InetAddress melhor;
+    try {
+      melhor = corrida.getNow(null);
+    } catch (RuntimeException excep) {
+      melhor = null;
+    }
+    return melhor;
+  }
+
+  /**
+   * Coloca o vencedor à frente e ordena os demais endereços pelo histórico de latência. Um
+   * vencedor que não está na resposta nativa, por ter sido excluído pela política de busca ou pelo
+   * servidor de nomes, é ignorado.
+   *
+   * @param enderecos endereços da resposta nativa
+   * @param melhor vencedor da corrida
+   * @return endereços reordenados
+   */
+  static List<InetAddress> ordena(final List<InetAddress> enderecos,
+      final InetAddress melhor) {
+    final List<InetAddress> demais = new ArrayList<InetAddress>(enderecos);
+    final boolean presente = demais.remove(melhor);
+    final List<InetAddress> ordenados = new ArrayList<InetAddress>(enderecos.size());
+    if (presente) {
+      ordenados.add(melhor);
+    }
+    ordenados.addAll(HistoricoLatencia.getHistorico().ordenar(demais));
+    return ordenados;
+  }
+}
@@ -0,0 +1,94 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.net.spi.InetAddressResolver;
+import java.net.spi.InetAddressResolver.LookupPolicy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Resolvedor de nomes das corridas do {@link ResolvedorJvm}. Consulta o resolvedor nativo da JDK
+ * diretamente, e não {@code InetAddress.getAllByName}, que voltaria ao próprio provedor. As
+ * famílias são consultadas em paralelo no executor, cada uma com a sua política de busca.
+ *
+ * @author Guilherme
+ * @version 0.1
+ */
+final class ResolvedorNativo implements ResolvedorNomes {
+
+  /**
+   * Resolvedor nativo da JDK.
+   */
+  private final InetAddressResolver nativo;
+
+  /**
+   * Executor das consultas bloqueantes.
+   */
+  private final Executor executor;
+
+  /**
+   * Construtor.
+   *
+   * @param nativo resolvedor nativo da JDK
+   * @param executor executor das consultas bloqueantes
+   */
+  ResolvedorNativo(final InetAddressResolver nativo, final Executor executor) {
+    super();
+    this.nativo = nativo;
+    this.executor = executor;
+  }
+
+  /**
+   * Inicia a consulta das duas famílias no executor.
+   *
+   * @param nome nome do servidor
+   * @return resolução em andamento
+   */
+  @Override
+  public Resolucao resolver(final String nome) {
+    return new Resolucao(busca(nome, LookupPolicy.IPV6), busca(nome, LookupPolicy.IPV4));
+  }
+
+  /**
+   * Inicia a consulta de uma família no executor.
+   *
+   * @param nome nome do servidor
+   * @param familia característica da política de busca da família
+   * @return futuro com os endereços da família
+   */
+  private CompletableFuture<List<InetAddress>> busca(final String nome, final int familia) {
+    CompletableFuture<List<InetAddress>> enderecos;
+    try {
+      enderecos = CompletableFuture.supplyAsync(() -> consulta(nome, familia), executor);
+    } catch (RejectedExecutionException excep) {
+      enderecos = new CompletableFuture<List<InetAddress>>();
+      enderecos.completeExceptionally(
+          new HappyEyeBallsException(Mensagens.HAPPYEYEBALLS_12, excep));
+    }
+    return enderecos;
+  }
+
+  /**
+   * Consulta os endereços de uma família no resolvedor nativo. Um nome sem endereços da família
+   * resulta em lista vazia; sem nenhum endereço, a corrida falha com
+   * {@link NomeNaoEncontradoException}.
+   *
+   * @param nome nome do servidor
+   * @param familia característica da política de busca da família
+   * @return endereços da família
+   */
+  private List<InetAddress> consulta(final String nome, final int familia) {
+    List<InetAddress> enderecos;
+    try {
+      enderecos = nativo.lookupByName(nome, LookupPolicy.of(familia)).collect(Collectors.toList());
+    } catch (UnknownHostException excep) {
+      enderecos = Collections.<InetAddress>emptyList();
+    }
+    return enderecos;
+  }
+}
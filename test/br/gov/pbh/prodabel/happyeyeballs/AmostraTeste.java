@@ -70,6 +70,17 @@ public class AmostraTeste {
     Assert.assertTrue(amostra1.compareTo(null) > 0);
   }
 
+  @Test
+  public void testCompareToSuavizado() {
+    // A amostra mais rápida perde para a que possui melhor média no histórico
+    amostra1.setTempoSuavizado(300L);
+    amostra2.setTempoSuavizado(150L);
+    Assert.assertTrue(amostra1.compareTo(amostra2) > 0);
+    amostra4.setTempoSuavizado(300L);
+    Assert.assertEquals(0, amostra1.compareTo(amostra4));
+    Assert.assertEquals(Long.MAX_VALUE, amostra3.getTempoReferencia());
+  }
+
   @Test
   public void testToString() {
     LOGGER.info(amostra1.toString());
@@ -0,0 +1,75 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+
+
+
+public class CacheProximoTeste {
+
+  private CacheProximo cache;
+  private InetAddress ipv4;
+  private InetAddress ipv6;
+
+  @Before
+  public void setUp() throws Exception {
+    cache = new CacheProximo(2);
+    ipv4 = InetAddress.getByName("127.0.0.1");
+    ipv6 = InetAddress.getByName("::1");
+  }
+
+  @Test
+  public void testPortas() {
+    cache.armazenar("servidor", new CacheProximo.Entrada(80, ipv4, 100L, 50L));
+    cache.armazenar("servidor", new CacheProximo.Entrada(443, ipv6, 100L, 50L));
+    Assert.assertEquals(ipv4, cache.buscar("servidor", 80).getEndereco());
+    Assert.assertEquals(ipv6, cache.buscar(new String("servidor"), 443).getEndereco());
+    Assert.assertNull(cache.buscar("servidor", 8080));
+    cache.armazenar("servidor", new CacheProximo.Entrada(80, ipv6, 100L, 50L));
+    Assert.assertEquals(ipv6, cache.buscar("servidor", 80).getEndereco());
+    cache.remover("servidor", 80);
+    Assert.assertNull(cache.buscar("servidor", 80));
+    Assert.assertEquals(ipv6, cache.buscar("servidor", 443).getEndereco());
+    cache.remover("servidor", 443);
+    Assert.assertNull(cache.buscar("servidor", 443));
+  }
+
+  @Test
+  public void testValidade() {
+    CacheProximo.Entrada entrada = new CacheProximo.Entrada(80, ipv4, 100L, 50L);
+    Assert.assertTrue(entrada.isValida(99L));
+    Assert.assertFalse(entrada.isValida(100L));
+    Assert.assertFalse(entrada.isRenovar(49L));
+    Assert.assertTrue(entrada.isRenovar(50L));
+    entrada = new CacheProximo.Entrada(80, ipv4, Long.MIN_VALUE + 10L, Long.MIN_VALUE);
+    Assert.assertTrue(entrada.isValida(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testCapacidade() {
+    cache.armazenar("primeiro", new CacheProximo.Entrada(80, ipv4, 100L, 50L));
+    cache.armazenar("segundo", new CacheProximo.Entrada(80, ipv4, 200L, 50L));
+    cache.armazenar("segundo", new CacheProximo.Entrada(81, ipv4, 200L, 50L));
+    Assert.assertNotNull(cache.buscar("primeiro", 80));
+    // Somente o nome que expira primeiro é descartado
+    cache.armazenar("terceiro", new CacheProximo.Entrada(80, ipv4, 300L, 50L));
+    Assert.assertNull(cache.buscar("primeiro", 80));
+    Assert.assertNotNull(cache.buscar("segundo", 80));
+    Assert.assertNotNull(cache.buscar("segundo", 81));
+    Assert.assertNotNull(cache.buscar("terceiro", 80));
+    // Um nome consultado permanece, ainda que expire antes dos demais
+    cache.buscar("segundo", 81).usar();
+    cache.armazenar("quarto", new CacheProximo.Entrada(80, ipv4, 400L, 50L));
+    Assert.assertNotNull(cache.buscar("segundo", 81));
+    Assert.assertNull(cache.buscar("terceiro", 80));
+    Assert.assertNotNull(cache.buscar("quarto", 80));
+    cache.buscar("quarto", 80).usar();
+    cache.armazenar("quinto", new CacheProximo.Entrada(80, ipv4, 500L, 50L));
+    Assert.assertNull(cache.buscar("segundo", 81));
+    Assert.assertNotNull(cache.buscar("quarto", 80));
+    Assert.assertNotNull(cache.buscar("quinto", 80));
+  }
+}
@@ -9,6 +9,41 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+
 
 
 public class HappyEyeBallsTeste {
@@ -36,4 +71,782 @@ public class HappyEyeBallsTeste {
     LOGGER.info(singleton.obterIp("www.facasfjlerjwl.com.br", 80).toString());
   }
 
+  @Test
+  public void testaConeccaoAssincrona() throws Exception {
+    try (ServerSocket servidor = new ServerSocket()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      CompletableFuture<InetAddress> futuro =
+          singleton.obterIpAsync("127.0.0.1", servidor.getLocalPort());
+      Assert.assertEquals(InetAddress.getByName("127.0.0.1"), futuro.get());
+      futuro = singleton.obterIpAsync("127.0.0.1", servidor.getLocalPort());
+      Assert.assertTrue(futuro.isDone());
+      Assert.assertEquals(InetAddress.getByName("127.0.0.1"), futuro.get());
+    }
+  }
+
+  @Test
+  public void testaConeccaoAssincronaErro() throws InterruptedException {
+    try {
+      singleton.obterIpAsync("www.facasfjlerjwl.com.br", 80).get();
+      Assert.fail();
+    } catch (ExecutionException excecao) {
+      Assert.assertTrue(excecao.getCause() instanceof HappyEyeBallsException);
+    }
+  }
+
+  @Test
+  public void testaConectar() throws Exception {
+    try (ServerSocket servidor = new ServerSocket()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      try (SocketChannel canal = singleton.conectar("127.0.0.1", servidor.getLocalPort());
+          Socket aceito = servidor.accept()) {
+        Assert.assertTrue(canal.isConnected());
+        Assert.assertTrue(canal.isBlocking());
+        Assert.assertEquals(aceito.getLocalPort(),
+            ((InetSocketAddress) canal.getRemoteAddress()).getPort());
+        canal.write(ByteBuffer.wrap(new byte[] {42}));
+        Assert.assertEquals(42, aceito.getInputStream().read());
+      }
+      Assert.assertEquals(InetAddress.getByName("127.0.0.1"),
+          singleton.obterIpAsync("127.0.0.1", servidor.getLocalPort()).getNow(null));
+    }
+  }
+
+  @Test
+  public void testaConectarIpEmCacheFechado() throws Exception {
+    List<InetAddress> ipv4 = Arrays.asList(InetAddress.getByName("127.0.0.13"),
+        InetAddress.getByName("127.0.0.14"));
+    List<InetAddress> ipv6 = Collections.emptyList();
+    try (HappyEyeballs h = HappyEyeballs.builder()
+        .resolvedor(nome -> new Resolucao(CompletableFuture.completedFuture(ipv6),
+            CompletableFuture.completedFuture(ipv4))).construir();
+        ServerSocket primeiro = new ServerSocket();
+        ServerSocket segundo = new ServerSocket()) {
+      primeiro.bind(new InetSocketAddress(ipv4.get(0), 0));
+      int porta = primeiro.getLocalPort();
+      segundo.bind(new InetSocketAddress(ipv4.get(1), porta));
+      InetAddress vencedor;
+      try (SocketChannel canal = h.conectar("servidor", porta)) {
+        vencedor = ((InetSocketAddress) canal.getRemoteAddress()).getAddress();
+      }
+      Assert.assertEquals(vencedor, h.obterIpAsync("servidor", porta).getNow(null));
+      // O servidor do IP em cache deixa de aceitar conexões
+      (vencedor.equals(ipv4.get(0)) ? primeiro : segundo).close();
+      try (SocketChannel canal = h.conectar("servidor", porta)) {
+        InetAddress outro = ((InetSocketAddress) canal.getRemoteAddress()).getAddress();
+        Assert.assertNotEquals(vencedor, outro);
+        Assert.assertEquals(outro, h.obterIpAsync("servidor", porta).getNow(null));
+      }
+    }
+  }
+
+  @Test
+  public void testaCorridaOrigens() throws Exception {
+    try (ServerSocket servidor = new ServerSocket();
+        HappyEyeballs h = HappyEyeballs.builder().corridaOrigens(true).construir()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      Rota rota = h.obterRota("127.0.0.1", servidor.getLocalPort());
+      Assert.assertEquals(InetAddress.getByName("127.0.0.1"), rota.getDestino());
+      Assert.assertEquals(InetAddress.getByName("127.0.0.1"), rota.getOrigem());
+      try (SocketChannel canal = h.conectar("127.0.0.1", servidor.getLocalPort())) {
+        Assert.assertEquals(rota.getOrigem(),
+            ((InetSocketAddress) canal.getLocalAddress()).getAddress());
+      }
+      try (Socket socket = new Socket()) {
+        socket.bind(rota.getEnderecoLocal());
+        socket.connect(rota.getEnderecoRemoto());
+        Assert.assertTrue(socket.isConnected());
+      }
+      // Sem a corrida de origens, a origem fica a cargo do sistema
+      Assert.assertNull(singleton.obterRota("127.0.0.1", servidor.getLocalPort()).getOrigem());
+    }
+  }
+
+  @Test
+  public void testaPoolConexoes() throws Exception {
+    try (ServerSocketChannel escuta = ServerSocketChannel.open()) {
+      escuta.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 50);
+      int porta = escuta.socket().getLocalPort();
+      try (HappyEyeballsImpl h = (HappyEyeballsImpl) HappyEyeballs.builder()
+          .poolConexoes(2, 30000L).construir()) {
+        h.conectar("127.0.0.1", porta).close();
+        aguardaAquecidas(h, porta, 2);
+        try (SocketChannel canal = h.conectar("127.0.0.1", porta)) {
+          Assert.assertTrue(canal.isConnected());
+          Assert.assertTrue(canal.isBlocking());
+        }
+        aguardaAquecidas(h, porta, 2);
+        // Conexões fechadas pelo servidor são descartadas na retirada
+        for (int i = 0; i < 4; i++) {
+          escuta.accept().close();
+        }
+        Thread.sleep(50L);
+        try (SocketChannel canal = h.conectar("127.0.0.1", porta)) {
+          Assert.assertTrue(canal.isConnected());
+          Assert.assertNotNull(escuta.accept());
+        }
+      }
+      try (HappyEyeballsImpl h = (HappyEyeballsImpl) HappyEyeballs.builder()
+          .poolConexoes(2, 30000L).poolConexoes("127.0.0.1", porta, 0, 1000L).construir()) {
+        h.conectar("127.0.0.1", porta).close();
+        Thread.sleep(100L);
+        Assert.assertEquals(0, h.getConexoesAquecidas("127.0.0.1", porta));
+      }
+    }
+  }
+
+  private static void aguardaAquecidas(HappyEyeballsImpl h, int porta, int esperadas)
+      throws InterruptedException {
+    for (int i = 0; i < 100 && h.getConexoesAquecidas("127.0.0.1", porta) < esperadas; i++) {
+      Thread.sleep(20L);
+    }
+    Assert.assertEquals(esperadas, h.getConexoesAquecidas("127.0.0.1", porta));
+  }
+
+  @Test
+  public void testaBuscasSimultaneas() throws Exception {
+    try (ServerSocketChannel escuta = ServerSocketChannel.open()) {
+      escuta.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      escuta.configureBlocking(false);
+      int porta = escuta.socket().getLocalPort();
+      List<CompletableFuture<InetAddress>> buscas = new ArrayList<CompletableFuture<InetAddress>>();
+      for (int i = 0; i < 16; i++) {
+        buscas.add(singleton.obterIpAsync("127.0.0.1", porta));
+      }
+      for (CompletableFuture<InetAddress> busca : buscas) {
+        Assert.assertEquals(InetAddress.getByName("127.0.0.1"), busca.get());
+      }
+      int aceitas = 0;
+      while (escuta.accept() != null) {
+        aceitas++;
+      }
+      Assert.assertTrue(aceitas < buscas.size());
+    }
+  }
+
+  @Test
+  public void testaClassificacoesSimultaneas() throws Exception {
+    try (ServerSocketChannel escuta = ServerSocketChannel.open();
+        HappyEyeballs happyEyeballs = HappyEyeballs.builder().construir()) {
+      escuta.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      escuta.configureBlocking(false);
+      int porta = escuta.socket().getLocalPort();
+      List<CompletableFuture<List<IpClassificado>>> buscas =
+          new ArrayList<CompletableFuture<List<IpClassificado>>>();
+      for (int i = 0; i < 16; i++) {
+        buscas.add(happyEyeballs.obterClassificacaoAsync("127.0.0.1", porta));
+      }
+      for (CompletableFuture<List<IpClassificado>> busca : buscas) {
+        Assert.assertEquals(InetAddress.getByName("127.0.0.1"), busca.get().get(0).getEndereco());
+      }
+      int aceitas = 0;
+      while (escuta.accept() != null) {
+        aceitas++;
+      }
+      Assert.assertEquals(1, aceitas);
+    }
+  }
+
+  @Test
+  public void testaServirExpirado() throws Exception {
+    AtomicInteger resolucoes = new AtomicInteger();
+    try (HappyEyeballs happyEyeballs =
+        criaContando(HappyEyeballs.builder().servirExpirado(true), resolucoes);
+        ServerSocket servidor = new ServerSocket()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      int porta = servidor.getLocalPort();
+      Assert.assertEquals(InetAddress.getByName("127.0.0.1"),
+          happyEyeballs.obterIp("127.0.0.1", porta));
+      ((HappyEyeballsImpl) happyEyeballs).expirar("127.0.0.1", porta);
+      CompletableFuture<InetAddress> futuro = happyEyeballs.obterIpAsync("127.0.0.1", porta);
+      Assert.assertTrue(futuro.isDone());
+      Assert.assertEquals(InetAddress.getByName("127.0.0.1"), futuro.get());
+      Assert.assertTrue(aguarda(resolucoes, 2));
+    }
+  }
+
+  @Test
+  public void testaRenovacaoAntecipada() throws Exception {
+    AtomicInteger resolucoes = new AtomicInteger();
+    HappyEyeballs happyEyeballs =
+        criaContando(HappyEyeballs.builder().limiarRenovacao(1L), resolucoes);
+    try (ServerSocket servidor = new ServerSocket()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      int porta = servidor.getLocalPort();
+      happyEyeballs.obterIp("127.0.0.1", porta);
+      Thread.sleep(300L);
+      Assert.assertTrue(happyEyeballs.obterIpAsync("127.0.0.1", porta).isDone());
+      Assert.assertTrue(aguarda(resolucoes, 2));
+    }
+  }
+
+  @Test
+  public void testaRenovacaoAntecipadaFalha() throws Exception {
+    AtomicInteger resolucoes = new AtomicInteger();
+    try (HappyEyeballs happyEyeballs = criaContando(
+        HappyEyeballs.builder().limiarRenovacao(1L).tempoNegativoConexao(0L), resolucoes)) {
+      int porta;
+      try (ServerSocket servidor = new ServerSocket()) {
+        servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        porta = servidor.getLocalPort();
+        happyEyeballs.obterIp("127.0.0.1", porta);
+      }
+      Thread.sleep(300L);
+      Assert.assertTrue(happyEyeballs.obterIpAsync("127.0.0.1", porta).isDone());
+      Assert.assertTrue(aguarda(resolucoes, 2));
+      Thread.sleep(200L);
+      // A renovação que falhou é adiada e os acertos seguintes não refazem a corrida
+      for (int i = 0; i < 10; i++) {
+        Assert.assertTrue(happyEyeballs.obterIpAsync("127.0.0.1", porta).isDone());
+        Thread.sleep(10L);
+      }
+      Assert.assertEquals(2, resolucoes.get());
+    }
+  }
+
+  @Test
+  public void testaPoliticaSelecao() throws Exception {
+    List<InetAddress> ipv4 = Arrays.asList(InetAddress.getByName("127.0.0.4"),
+        InetAddress.getByName("127.0.0.5"));
+    List<InetAddress> ipv6 = Collections.emptyList();
+    try (HappyEyeballs happyEyeballs = HappyEyeballs.builder()
+        .resolvedor(nome -> new Resolucao(CompletableFuture.completedFuture(ipv6),
+            CompletableFuture.completedFuture(ipv4)))
+        .politicaSelecao(PoliticaSelecao.ponderada(100000)).construir();
+        ServerSocket servidor = new ServerSocket()) {
+      servidor.bind(new InetSocketAddress(0), 100);
+      int porta = servidor.getLocalPort();
+      List<IpClassificado> classificacao = happyEyeballs.obterClassificacao("servidor", porta);
+      Assert.assertEquals(2, classificacao.size());
+      Assert.assertSame(classificacao, happyEyeballs.obterClassificacao("servidor", porta));
+      Set<InetAddress> entregues = new HashSet<InetAddress>();
+      for (int i = 0; i < 1000; i++) {
+        entregues.add(happyEyeballs.obterIp("servidor", porta));
+      }
+      Assert.assertEquals(new HashSet<InetAddress>(ipv4), entregues);
+    }
+  }
+
+  @Test
+  public void testaPoliticaSelecaoEnderecoMudo() throws Exception {
+    List<InetAddress> ipv4 = Arrays.asList(InetAddress.getByName("127.0.0.15"),
+        InetAddress.getByName("127.0.0.16"));
+    List<InetAddress> ipv6 = Collections.emptyList();
+    List<Socket> enfileirados = new ArrayList<Socket>();
+    try (HappyEyeballs happyEyeballs = HappyEyeballs.builder()
+        .resolvedor(nome -> new Resolucao(CompletableFuture.completedFuture(ipv6),
+            CompletableFuture.completedFuture(ipv4)))
+        .politicaSelecao(PoliticaSelecao.ponderada(100000)).tempoExpiracao(2000L).construir();
+        ServerSocket mudo = new ServerSocket(); ServerSocket servidor = new ServerSocket()) {
+      // Com a fila de aceitação cheia, as conexões ao 127.0.0.15 ficam pendentes até expirar
+      mudo.bind(new InetSocketAddress(ipv4.get(0), 0), 1);
+      int porta = mudo.getLocalPort();
+      servidor.bind(new InetSocketAddress(ipv4.get(1), porta), 100);
+      for (int i = 0; i < 4; i++) {
+        Socket cliente = new Socket();
+        enfileirados.add(cliente);
+        try {
+          cliente.connect(mudo.getLocalSocketAddress(), 50);
+        } catch (IOException excep) {
+          LOGGER.debug(excep.getMessage());
+        }
+      }
+      long inicio = System.nanoTime();
+      Assert.assertEquals(ipv4.get(1), happyEyeballs.obterIp("servidor", porta));
+      // A busca termina na primeira conexão e a classificação continua em segundo plano
+      Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 1000L);
+      List<IpClassificado> classificacao = happyEyeballs.obterClassificacao("servidor", porta);
+      Assert.assertEquals(1, classificacao.size());
+      Assert.assertEquals(ipv4.get(1), classificacao.get(0).getEndereco());
+    } finally {
+      for (Socket cliente : enfileirados) {
+        cliente.close();
+      }
+    }
+  }
+
+  @Test
+  public void testaSondagem() throws Exception {
+    AtomicInteger resolucoes = new AtomicInteger();
+    try (HappyEyeballs happyEyeballs = criaContando(
+        HappyEyeballs.builder().tempoCache(60000L).sondagem(50L, 1), resolucoes);
+        ServerSocket servidor = new ServerSocket()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      int porta = servidor.getLocalPort();
+      happyEyeballs.obterIp("127.0.0.1", porta);
+      // Sem acertos o destino não é quente e não é sondado
+      Thread.sleep(200L);
+      Assert.assertEquals(1, resolucoes.get());
+      happyEyeballs.obterIp("127.0.0.1", porta);
+      Assert.assertTrue(aguarda(resolucoes, 2));
+      Thread.sleep(200L);
+      Assert.assertEquals(2, resolucoes.get());
+      Assert.assertEquals(InetAddress.getByName("127.0.0.1"),
+          happyEyeballs.obterIpAsync("127.0.0.1", porta).getNow(null));
+    }
+  }
+
+  @Test
+  public void testaCacheProximoCheio() throws Exception {
+    AtomicInteger resolucoes = new AtomicInteger();
+    ResolvedorNomes jdk = ResolvedorNomes.jdk(ForkJoinPool.commonPool());
+    try (HappyEyeballs happyEyeballs = HappyEyeballs.builder().sondagem(50L, 1).resolvedor(nome -> {
+      if ("127.0.0.1".equals(nome)) {
+        resolucoes.incrementAndGet();
+      }
+      return jdk.resolver(nome);
+    }).construir(); ServerSocket servidor = new ServerSocket()) {
+      servidor.bind(new InetSocketAddress(0));
+      int porta = servidor.getLocalPort();
+      Thread atendimento = new Thread(() -> {
+        while (!servidor.isClosed()) {
+          try {
+            servidor.accept().close();
+          } catch (IOException excep) {
+            LOGGER.debug(excep.getMessage());
+          }
+        }
+      });
+      atendimento.setDaemon(true);
+      atendimento.start();
+      happyEyeballs.obterIp("127.0.0.1", porta);
+      // Os demais nomes ultrapassam a capacidade do cache próximo, que descarta o destino frio
+      for (int i = 0; i < 2000; i++) {
+        happyEyeballs.obterIp("127.0.1" + i / 200 + '.' + (i % 200 + 1), porta);
+      }
+      Thread.sleep(200L);
+      Assert.assertEquals(1, resolucoes.get());
+      // O acerto no ehcache devolve o destino ao cache próximo, onde ele volta a ser sondado
+      happyEyeballs.obterIp("127.0.0.1", porta);
+      happyEyeballs.obterIp("127.0.0.1", porta);
+      Assert.assertTrue(aguarda(resolucoes, 2));
+    }
+  }
+
+  @Test
+  public void testaCacheNegativoNome() throws Exception {
+    AtomicInteger resolucoes = new AtomicInteger();
+    try (HappyEyeballs happyEyeballs = HappyEyeballs.getHappyEyeballs(nome -> {
+      resolucoes.incrementAndGet();
+      CompletableFuture<List<InetAddress>> inexistente = new CompletableFuture<List<InetAddress>>();
+      inexistente.completeExceptionally(new NomeNaoEncontradoException(Mensagens.HAPPYEYEBALLS_3));
+      return new Resolucao(inexistente, inexistente);
+    })) {
+      try {
+        happyEyeballs.obterIp("inexistente.teste", 80);
+        Assert.fail();
+      } catch (NomeNaoEncontradoException excep) {
+        LOGGER.info(excep.getMessage());
+      }
+      try {
+        happyEyeballs.obterIp("inexistente.teste", 80);
+        Assert.fail();
+      } catch (FalhaRecenteException excep) {
+        Assert.assertTrue(excep.getCause() instanceof NomeNaoEncontradoException);
+      }
+      Assert.assertEquals(1, resolucoes.get());
+    }
+  }
+
+  @Test
+  public void testaRecuoExponencial() throws Exception {
+    AtomicInteger resolucoes = new AtomicInteger();
+    try (HappyEyeballs happyEyeballs =
+        criaContando(HappyEyeballs.builder().tempoNegativoConexao(50L), resolucoes)) {
+      int porta;
+      try (ServerSocket servidor = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"))) {
+        porta = servidor.getLocalPort();
+      }
+      for (int falhas = 1; falhas <= 2; falhas++) {
+        try {
+          happyEyeballs.conectar("127.0.0.1", porta).close();
+          Assert.fail();
+        } catch (DestinoInalcancavelException excep) {
+          LOGGER.info(excep.getMessage());
+        }
+        try {
+          happyEyeballs.conectar("127.0.0.1", porta).close();
+          Assert.fail();
+        } catch (FalhaRecenteException excep) {
+          Assert.assertTrue(excep.getCause() instanceof DestinoInalcancavelException);
+          Assert.assertTrue(excep.getTempoRestante() <= 50L * falhas);
+          Assert.assertTrue(excep.getTempoRestante() > 50L * (falhas - 1));
+        }
+        Thread.sleep(50L * falhas + 10L);
+      }
+      Assert.assertEquals(2, resolucoes.get());
+    }
+  }
+
+  @Test
+  public void testaInstanciasIndependentes() throws Exception {
+    AtomicInteger resolucoes = new AtomicInteger();
+    try (HappyEyeballs primeira = criaContando(HappyEyeballs.builder().tempoCache(60000L),
+        resolucoes);
+        HappyEyeballs segunda = criaContando(
+            HappyEyeballs.builder().tamanhoCache(10L).tempoExpiracao(1000L), resolucoes);
+        ServerSocket servidor = new ServerSocket()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      int porta = servidor.getLocalPort();
+      primeira.obterIp("127.0.0.1", porta);
+      Assert.assertTrue(primeira.obterIpAsync("127.0.0.1", porta).isDone());
+      Assert.assertEquals(1, resolucoes.get());
+      segunda.obterIp("127.0.0.1", porta);
+      Assert.assertEquals(2, resolucoes.get());
+    }
+  }
+
+  @Test
+  public void testaTerminarInstanciaPadrao() throws Exception {
+    CompletableFuture<List<InetAddress>> ipv4 = new CompletableFuture<List<InetAddress>>();
+    List<InetAddress> ipv6 = Collections.emptyList();
+    try (HappyEyeballs happyEyeballs = HappyEyeballs.builder()
+        .resolvedor(nome -> new Resolucao(CompletableFuture.completedFuture(ipv6), ipv4))
+        .construir();
+        ServerSocket servidor = new ServerSocket()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      CompletableFuture<InetAddress> corrida =
+          happyEyeballs.obterIpAsync("servidor", servidor.getLocalPort());
+      // O término da instância padrão não interrompe a corrida de outra instância aberta
+      HappyEyeballs.terminarPoolThread();
+      ipv4.complete(Collections.singletonList(InetAddress.getByName("127.0.0.1")));
+      Assert.assertEquals(InetAddress.getByName("127.0.0.1"), corrida.get(2L, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  public void testaTempoCache() throws Exception {
+    AtomicInteger resolucoes = new AtomicInteger();
+    try (HappyEyeballs happyEyeballs =
+        criaContando(HappyEyeballs.builder().tempoCache(100L), resolucoes);
+        ServerSocket servidor = new ServerSocket()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      happyEyeballs.obterIp("127.0.0.1", servidor.getLocalPort());
+      Thread.sleep(200L);
+      happyEyeballs.obterIp("127.0.0.1", servidor.getLocalPort());
+      Assert.assertEquals(2, resolucoes.get());
+    }
+  }
+
+  @Test
+  public void testaEncerrar() throws Exception {
+    HappyEyeballs happyEyeballs = HappyEyeballs.builder().tamanhoPool(2).construir();
+    try (ServerSocket servidor = new ServerSocket()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      Assert.assertEquals(InetAddress.getByName("127.0.0.1"),
+          happyEyeballs.obterIp("127.0.0.1", servidor.getLocalPort()));
+      happyEyeballs.close();
+      happyEyeballs.close();
+      try {
+        happyEyeballs.obterIp("127.0.0.1", servidor.getLocalPort());
+        Assert.fail();
+      } catch (HappyEyeBallsException excep) {
+        Assert.assertEquals(Mensagens.HAPPYEYEBALLS_55, excep.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void testaThreadsVirtuais() throws Exception {
+    HappyEyeballsBuilder construtor = HappyEyeballs.builder();
+    try {
+      construtor.threadsVirtuais();
+    } catch (HappyEyeBallsException excep) {
+      // JVM anterior à 21
+      Assert.assertEquals(Mensagens.HAPPYEYEBALLS_54, excep.getMessage());
+      return;
+    }
+    try (HappyEyeballs happyEyeballs = construtor.construir();
+        ServerSocket servidor = new ServerSocket()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      Assert.assertEquals(InetAddress.getByName("127.0.0.1"),
+          happyEyeballs.obterIp("127.0.0.1", servidor.getLocalPort()));
+    }
+  }
+
+  @Test
+  public void testaPreaquecer() throws Exception {
+    AtomicInteger resolucoes = new AtomicInteger();
+    try (HappyEyeballs happyEyeballs = criaContando(HappyEyeballs.builder(), resolucoes);
+        ServerSocket primeiro = new ServerSocket();
+        ServerSocket segundo = new ServerSocket()) {
+      primeiro.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      segundo.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      InetSocketAddress destino1 =
+          InetSocketAddress.createUnresolved("127.0.0.1", primeiro.getLocalPort());
+      InetSocketAddress destino2 =
+          InetSocketAddress.createUnresolved("127.0.0.1", segundo.getLocalPort());
+      InetSocketAddress inexistente =
+          InetSocketAddress.createUnresolved("www.facasfjlerjwl.com.br", 80);
+      ResultadoLote resultado =
+          happyEyeballs.obterIps(Arrays.asList(destino1, inexistente, destino2, destino1));
+      Assert.assertFalse(resultado.isCompleto());
+      Assert.assertEquals(Arrays.asList(destino1, destino2),
+          new ArrayList<InetSocketAddress>(resultado.getEnderecos().keySet()));
+      Assert.assertEquals(InetAddress.getByName("127.0.0.1"),
+          resultado.getEnderecos().get(destino2));
+      Assert.assertTrue(
+          resultado.getFalhas().get(inexistente) instanceof NomeNaoEncontradoException);
+      Assert.assertEquals(3, resolucoes.get());
+      Assert.assertTrue(happyEyeballs.obterIpAsync("127.0.0.1", primeiro.getLocalPort()).isDone());
+      Assert.assertTrue(happyEyeballs.obterIpAsync("127.0.0.1", segundo.getLocalPort()).isDone());
+    }
+  }
+
+  @Test
+  public void testaMetricas() throws Exception {
+    AtomicInteger vitorias = new AtomicInteger();
+    HappyEyeballs happyEyeballs = HappyEyeballs.builder().nomeJmx("teste")
+        .registroMetricas(new RegistroMetricas() {
+          @Override
+          public void vitoria(final FamiliaEndereco familia, final long tempo) {
+            vitorias.incrementAndGet();
+          }
+        }).construir();
+    try (ServerSocket servidor = new ServerSocket()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      happyEyeballs.obterIp("127.0.0.1", servidor.getLocalPort());
+      happyEyeballs.obterIp("127.0.0.1", servidor.getLocalPort());
+      // A conexão direta ao IP em cache não conta como corrida
+      happyEyeballs.conectar("127.0.0.1", servidor.getLocalPort()).close();
+      Metricas metricas = happyEyeballs.getMetricas();
+      Assert.assertEquals(2L, metricas.getAcertosCache());
+      Assert.assertEquals(1L, metricas.getFaltasCache());
+      Assert.assertEquals(1L, metricas.getCorridasIniciadas());
+      Assert.assertEquals(1L, metricas.getVitoriasIpv4());
+      Assert.assertEquals(1, vitorias.get());
+      ObjectName nome =
+          new ObjectName("br.gov.pbh.prodabel.happyeyeballs:type=Metricas,name=\"teste\"");
+      MBeanServer servidorJmx = ManagementFactory.getPlatformMBeanServer();
+      Assert.assertEquals(1L, servidorJmx.getAttribute(nome, "VitoriasIpv4"));
+      happyEyeballs.close();
+      Assert.assertFalse(servidorJmx.isRegistered(nome));
+    }
+  }
+
+  @Test
+  public void testaConectarTls() throws Exception {
+    SSLContext contexto = contextoTls();
+    try (SSLServerSocket servidor =
+        (SSLServerSocket) contexto.getServerSocketFactory().createServerSocket()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.6"), 0));
+      atendeTls(servidor);
+      try (HappyEyeballs h = HappyEyeballs.builder().corridaTls(contexto).construir()) {
+        ConexaoTls encerrada;
+        try (ConexaoTls conexao = h.conectarTls("127.0.0.6", servidor.getLocalPort())) {
+          encerrada = conexao;
+          Assert.assertTrue(conexao.getCanal().isBlocking());
+          Assert.assertNotNull(conexao.getSessao().getPeerCertificates());
+          // O tráfego da aplicação segue pelo motor da corrida, sem novo handshake
+          ByteBuffer recebidos = conexao.getRecebidos();
+          ByteBuffer aplicacao =
+              ByteBuffer.allocate(conexao.getSessao().getApplicationBufferSize());
+          while (aplicacao.position() == 0) {
+            SSLEngineResult resultado = conexao.getMotor().unwrap(recebidos, aplicacao);
+            if (resultado.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW) {
+              recebidos.compact();
+              Assert.assertTrue(conexao.getCanal().read(recebidos) > 0);
+              recebidos.flip();
+            } else {
+              Assert.assertEquals(SSLEngineResult.Status.OK, resultado.getStatus());
+            }
+          }
+          Assert.assertEquals(42, aplicacao.get(0));
+        }
+        // O alerta de encerramento foi cifrado e enviado antes do fechamento do canal
+        Assert.assertTrue(encerrada.getMotor().isOutboundDone());
+        Assert.assertFalse(encerrada.getCanal().isOpen());
+        // A corrida de obterIp também é decidida pelo handshake
+        Assert.assertEquals(InetAddress.getByName("127.0.0.6"),
+            h.obterIp("127.0.0.6", servidor.getLocalPort()));
+      }
+    }
+  }
+
+  @Test
+  public void testaCorridaTlsCertificadoInvalido() throws Exception {
+    SSLContext contexto = contextoTls();
+    try (SSLServerSocket servidor =
+        (SSLServerSocket) contexto.getServerSocketFactory().createServerSocket()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.6"), 0));
+      atendeTls(servidor);
+      // O contexto padrão não confia no certificado autoassinado
+      try (HappyEyeballs h = HappyEyeballs.builder().construir()) {
+        h.conectarTls("127.0.0.6", servidor.getLocalPort());
+        Assert.fail();
+      } catch (HappyEyeBallsException excep) {
+        LOGGER.info(excep.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void testaFabricaSockets() throws Exception {
+    HappyEyeballs h = HappyEyeballs.builder().tempoExpiracao(2000L).resolvedor(nome -> {
+      CompletableFuture<List<InetAddress>> inexistente = new CompletableFuture<List<InetAddress>>();
+      inexistente.completeExceptionally(new NomeNaoEncontradoException(Mensagens.HAPPYEYEBALLS_3));
+      return "inexistente.teste".equals(nome) ? new Resolucao(inexistente, inexistente)
+          : ResolvedorNomes.jdk(ForkJoinPool.commonPool()).resolver(nome);
+    }).construir();
+    List<Socket> enfileirados = new ArrayList<Socket>();
+    try (ServerSocket servidor = new ServerSocket(); ServerSocket lotado = new ServerSocket()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.6"), 0), 100);
+      FabricaSockets fabrica = h.fabricaSockets(200);
+      try (Socket socket = fabrica.createSocket("127.0.0.6", servidor.getLocalPort());
+          Socket aceito = servidor.accept()) {
+        Assert.assertTrue(socket.isConnected());
+        socket.getOutputStream().write(42);
+        Assert.assertEquals(42, aceito.getInputStream().read());
+      }
+      // O socket não conectado conecta pela corrida ao endereço com nome
+      try (Socket socket = fabrica.createSocket()) {
+        socket.connect(InetSocketAddress.createUnresolved("127.0.0.6", servidor.getLocalPort()));
+        try (Socket aceito = servidor.accept()) {
+          Assert.assertEquals(InetAddress.getByName("127.0.0.6"), socket.getInetAddress());
+          Assert.assertEquals(socket.getLocalPort(), aceito.getPort());
+        }
+      }
+      // O endereço já resolvido conecta diretamente, ainda que traga um nome que não resolve
+      try (Socket socket = fabrica.createSocket()) {
+        socket.connect(new InetSocketAddress(InetAddress.getByAddress("inexistente.teste",
+            InetAddress.getByName("127.0.0.6").getAddress()), servidor.getLocalPort()));
+        try (Socket aceito = servidor.accept()) {
+          Assert.assertEquals(socket.getLocalPort(), aceito.getPort());
+        }
+      }
+      try {
+        fabrica.createSocket("inexistente.teste", 80);
+        Assert.fail();
+      } catch (UnknownHostException excep) {
+        Assert.assertTrue(excep.getCause() instanceof NomeNaoEncontradoException);
+      }
+      try {
+        fabrica.createSocket("127.0.0.7", servidor.getLocalPort());
+        Assert.fail();
+      } catch (ConnectException excep) {
+        Assert.assertTrue(excep.getCause() instanceof DestinoInalcancavelException);
+      }
+      // Com a fila de aceitação cheia, a conexão não termina no tempo máximo da fábrica
+      lotado.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.11"), 0), 1);
+      for (int i = 0; i < 4; i++) {
+        Socket cliente = new Socket();
+        enfileirados.add(cliente);
+        try {
+          cliente.connect(lotado.getLocalSocketAddress(), 50);
+        } catch (IOException excep) {
+          LOGGER.debug(excep.getMessage());
+        }
+      }
+      long inicio = System.nanoTime();
+      try {
+        fabrica.createSocket("127.0.0.11", lotado.getLocalPort());
+        Assert.fail();
+      } catch (SocketTimeoutException excep) {
+        // A fábrica desiste antes da expiração da corrida
+        Assert.assertTrue(System.nanoTime() - inicio < TimeUnit.MILLISECONDS.toNanos(1000L));
+      }
+      // O tempo do chamador prevalece sobre o da fábrica
+      inicio = System.nanoTime();
+      try (Socket socket = h.fabricaSockets(0).createSocket()) {
+        socket.connect(
+            InetSocketAddress.createUnresolved("127.0.0.11", lotado.getLocalPort()), 200);
+        Assert.fail();
+      } catch (SocketTimeoutException excep) {
+        Assert.assertTrue(System.nanoTime() - inicio < TimeUnit.MILLISECONDS.toNanos(1000L));
+      }
+    } finally {
+      for (Socket cliente : enfileirados) {
+        cliente.close();
+      }
+      h.close();
+    }
+  }
+
+  @Test
+  public void testaFabricaSocketsTls() throws Exception {
+    SSLContext contexto = contextoTls();
+    try (SSLServerSocket servidor =
+        (SSLServerSocket) contexto.getServerSocketFactory().createServerSocket();
+        HappyEyeballs h = HappyEyeballs.builder().construir()) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.6"), 0));
+      atendeTls(servidor);
+      FabricaSocketsTls fabrica =
+          new FabricaSocketsTls(contexto.getSocketFactory(), h.fabricaSockets(0));
+      try (SSLSocket socket =
+          (SSLSocket) fabrica.createSocket("127.0.0.6", servidor.getLocalPort())) {
+        socket.startHandshake();
+        Assert.assertEquals(42, socket.getInputStream().read());
+      }
+      // O endereço resolvido leva o seu nome à camada TLS, e o IP sem nome leva o próprio IP
+      InetAddress ip = InetAddress.getByName("127.0.0.6");
+      try (SSLSocket socket = (SSLSocket) fabrica.createSocket(
+          InetAddress.getByAddress("servidor.teste", ip.getAddress()), servidor.getLocalPort())) {
+        socket.startHandshake();
+        Assert.assertEquals("servidor.teste", socket.getSession().getPeerHost());
+      }
+      try (SSLSocket socket = (SSLSocket) fabrica.createSocket(
+          InetAddress.getByAddress(ip.getAddress()), servidor.getLocalPort())) {
+        socket.startHandshake();
+        Assert.assertEquals("127.0.0.6", socket.getSession().getPeerHost());
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testaParametroInvalido() {
+    HappyEyeballs.builder().tempoExpiracao(0L);
+  }
+
+  private static SSLContext contextoTls() throws Exception {
+    KeyStore chaves = KeyStore.getInstance("PKCS12");
+    try (InputStream arquivo = HappyEyeBallsTeste.class.getResourceAsStream("/servidor-tls.p12")) {
+      chaves.load(arquivo, "happyeyeballs".toCharArray());
+    }
+    KeyManagerFactory gerenciadorChaves =
+        KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    gerenciadorChaves.init(chaves, "happyeyeballs".toCharArray());
+    TrustManagerFactory gerenciadorConfianca =
+        TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+    gerenciadorConfianca.init(chaves);
+    SSLContext contexto = SSLContext.getInstance("TLS");
+    contexto.init(gerenciadorChaves.getKeyManagers(), gerenciadorConfianca.getTrustManagers(),
+        null);
+    return contexto;
+  }
+
+  private static void atendeTls(SSLServerSocket servidor) {
+    Thread atendimento = new Thread(() -> {
+      while (!servidor.isClosed()) {
+        try (SSLSocket aceito = (SSLSocket) servidor.accept()) {
+          aceito.startHandshake();
+          aceito.getOutputStream().write(42);
+          aceito.getOutputStream().flush();
+          while (aceito.getInputStream().read() >= 0) {
+            // Aguarda o cliente encerrar
+          }
+        } catch (Exception excep) {
+          LOGGER.debug(excep.getMessage());
+        }
+      }
+    });
+    atendimento.setDaemon(true);
+    atendimento.start();
+  }
+
+  private static HappyEyeballs criaContando(HappyEyeballsBuilder construtor,
+      AtomicInteger resolucoes) {
+    ResolvedorNomes jdk = ResolvedorNomes.jdk(ForkJoinPool.commonPool());
+    return construtor.resolvedor(nome -> {
+      resolucoes.incrementAndGet();
+      return jdk.resolver(nome);
+    }).construir();
+  }
+
+  private static boolean aguarda(AtomicInteger contador, int valor) throws InterruptedException {
+    for (int i = 0; i < 100 && contador.get() < valor; i++) {
+      Thread.sleep(10L);
+    }
+    return contador.get() == valor;
+  }
+
 }
@@ -0,0 +1,75 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+
+public class HistoricoLatenciaTeste {
+
+  private HistoricoLatencia historico;
+  private InetAddress ip1;
+  private InetAddress ip2;
+  private InetAddress ip3;
+
+  @Before
+  public void setUp() throws UnknownHostException {
+    historico = new HistoricoLatencia(2);
+    ip1 = InetAddress.getByName("127.0.0.1");
+    ip2 = InetAddress.getByName("127.0.0.2");
+    ip3 = InetAddress.getByName("127.0.0.3");
+  }
+
+  @Test
+  public void testMediaSuavizada() {
+    Assert.assertEquals(HistoricoLatencia.SEM_MEDIA, historico.getMedia(ip1));
+    Assert.assertEquals(800L, historico.registrarSucesso(ip1, 800L));
+    // Uma amostra ruidosa desloca a média em somente 1/8 da diferença
+    Assert.assertEquals(1800L, historico.registrarSucesso(ip1, 8800L));
+    Assert.assertEquals(1800L, historico.getMedia(ip1));
+    Assert.assertEquals(2, historico.getSucessos(ip1));
+    historico.registrarFalha(ip1);
+    Assert.assertEquals(1, historico.getFalhas(ip1));
+    Assert.assertEquals(1800L, historico.getMedia(ip1));
+  }
+
+  @Test
+  public void testOrdenar() {
+    historico.registrarSucesso(ip2, 100L);
+    historico.registrarFalha(ip1);
+    List<InetAddress> ordenados = historico.ordenar(Arrays.asList(ip1, ip3, ip2));
+    Assert.assertEquals(Arrays.asList(ip2, ip3, ip1), ordenados);
+  }
+
+  @Test
+  public void testEnderecoDeixaDeFuncionar() {
+    for (int i = 0; i < 1000; i++) {
+      historico.registrarSucesso(ip1, 100L);
+    }
+    Assert.assertEquals(Arrays.asList(ip1, ip3), historico.ordenar(Arrays.asList(ip3, ip1)));
+    // Uma falha depois de muitos sucessos já coloca o endereço atrás dos desconhecidos
+    historico.registrarFalha(ip1);
+    Assert.assertEquals(Arrays.asList(ip3, ip1), historico.ordenar(Arrays.asList(ip1, ip3)));
+    // E o sucesso seguinte o devolve à frente
+    historico.registrarSucesso(ip1, 100L);
+    Assert.assertEquals(Arrays.asList(ip1, ip3), historico.ordenar(Arrays.asList(ip3, ip1)));
+    Assert.assertEquals(1001, historico.getSucessos(ip1));
+    Assert.assertEquals(1, historico.getFalhas(ip1));
+  }
+
+  @Test
+  public void testDescartaMaisAntigo() {
+    historico.registrarSucesso(ip1, 100L);
+    historico.registrarSucesso(ip2, 200L);
+    historico.registrarSucesso(ip1, 100L);
+    historico.registrarSucesso(ip3, 300L);
+    Assert.assertEquals(HistoricoLatencia.SEM_MEDIA, historico.getMedia(ip2));
+    Assert.assertEquals(100L, historico.getMedia(ip1));
+    Assert.assertEquals(300L, historico.getMedia(ip3));
+  }
+
+}
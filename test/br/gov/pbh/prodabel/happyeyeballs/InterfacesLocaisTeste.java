@@ -0,0 +1,91 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class InterfacesLocaisTeste {
+
+  private static InetAddress ip(String literal) throws UnknownHostException {
+    return InetAddress.getByName(literal);
+  }
+
+  @Test
+  public void testDescartaIpv6GlobalSemOrigem() throws UnknownHostException {
+    // Somente endereço IPV6 de enlace: os destinos IPV6 globais são inalcançáveis
+    InterfacesLocais.Vista vista = new InterfacesLocais.Vista(
+        new InetAddress[] {ip("127.0.0.1"), ip("::1"), ip("fe80::1"), ip("192.168.0.10")},
+        new int[] {8, 128, 64, 24});
+    List<InetAddress> descartados = new ArrayList<InetAddress>();
+    List<InetAddress> ordenados =
+        vista.ordenar(Arrays.asList(ip("2001:db8::1"), ip("::1"), ip("fe80::2")), descartados);
+    Assert.assertEquals(Arrays.asList(ip("::1"), ip("fe80::2")), ordenados);
+    Assert.assertEquals(Arrays.asList(ip("2001:db8::1")), descartados);
+    Assert.assertTrue(vista.isAlcancavel(ip("8.8.8.8")));
+    Assert.assertFalse(vista.isAlcancavel(ip("2001:db8::1")));
+  }
+
+  @Test
+  public void testDescartaIpv4GlobalSomenteLoopback() throws UnknownHostException {
+    InterfacesLocais.Vista vista =
+        new InterfacesLocais.Vista(new InetAddress[] {ip("127.0.0.1")}, new int[] {8});
+    List<InetAddress> descartados = new ArrayList<InetAddress>();
+    List<InetAddress> ordenados =
+        vista.ordenar(Arrays.asList(ip("8.8.8.8"), ip("127.0.0.2")), descartados);
+    Assert.assertEquals(Arrays.asList(ip("127.0.0.2")), ordenados);
+    Assert.assertEquals(Arrays.asList(ip("8.8.8.8")), descartados);
+  }
+
+  @Test
+  public void testOrdenaRfc6724() throws UnknownHostException {
+    InterfacesLocais.Vista vista = new InterfacesLocais.Vista(
+        new InetAddress[] {ip("::1"), ip("fe80::1"), ip("2001:db8:1::10")},
+        new int[] {128, 64, 64});
+    List<InetAddress> descartados = new ArrayList<InetAddress>();
+    List<InetAddress> ordenados = vista.ordenar(Arrays.asList(ip("fd00::1"),
+        ip("2002:c000:204::1"), ip("2001:db8:9::1"), ip("2001:db8:1::20")), descartados);
+    // Mesmo rótulo e maior prefixo comum primeiro; 6to4 tem precedência sobre ULA
+    Assert.assertEquals(Arrays.asList(ip("2001:db8:1::20"), ip("2001:db8:9::1"),
+        ip("2002:c000:204::1"), ip("fd00::1")), ordenados);
+    Assert.assertTrue(descartados.isEmpty());
+  }
+
+  @Test
+  public void testOrigens() throws UnknownHostException {
+    InterfacesLocais.Vista vista = new InterfacesLocais.Vista(
+        new InetAddress[] {ip("127.0.0.1"), ip("192.168.1.5"), ip("10.0.0.5"), ip("::1"),
+            ip("fe80::1"), ip("2001:db8::5")},
+        new int[] {8, 24, 24, 128, 64, 64});
+    // Cada enlace é uma origem; a de maior prefixo comum com o destino vem primeiro
+    Assert.assertEquals(Arrays.asList(ip("10.0.0.5"), ip("192.168.1.5")),
+        vista.origens(ip("8.8.8.8")));
+    Assert.assertEquals(Arrays.asList(ip("127.0.0.1")), vista.origens(ip("127.0.0.2")));
+    Assert.assertEquals(Arrays.asList(ip("2001:db8::5")), vista.origens(ip("2001:db8::9")));
+    Assert.assertTrue(new InterfacesLocais.Vista(null, null).origens(ip("8.8.8.8")).isEmpty());
+  }
+
+  @Test
+  public void testVistaDesconhecida() throws UnknownHostException {
+    InterfacesLocais.Vista vista = new InterfacesLocais.Vista(null, null);
+    List<InetAddress> descartados = new ArrayList<InetAddress>();
+    List<InetAddress> destinos = Arrays.asList(ip("2001:db8::1"), ip("2001:db8::2"));
+    Assert.assertEquals(destinos, vista.ordenar(destinos, descartados));
+    Assert.assertTrue(descartados.isEmpty());
+    Assert.assertTrue(vista.isAlcancavel(ip("2001:db8::1")));
+  }
+
+  @Test
+  public void testInterfacesDoHost() throws UnknownHostException {
+    InterfacesLocais interfaces = InterfacesLocais.getInterfaces();
+    InterfacesLocais.Vista vista = interfaces.getVista();
+    Assert.assertTrue(vista.isAlcancavel(ip("127.0.0.1")));
+    interfaces.invalidar();
+    Assert.assertNotNull(interfaces.getVista());
+  }
+
+}
@@ -3,20 +3,50 @@ package br.gov.pbh.prodabel.happyeyeballs;
 import br.gov.pbh.prodabel.happyeyeballs.HappyEyeBallsException;
 import br.gov.pbh.prodabel.happyeyeballs.MelhorIp;
 
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.net.ConnectException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 
 
 public class MelhorIpTeste {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(MelhorIpTeste.class);
+  private ServerSocket servidor;
+
+  @Before
+  public void setUp() throws IOException {
+    // A falha mais recente de um endereço em outro teste o colocaria atrás dos desconhecidos
+    HistoricoLatencia.getHistorico().limpar();
+    servidor = new ServerSocket();
+    servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 100);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    servidor.close();
+  }
 
   @Test(expected = HappyEyeBallsException.class)
   public void testMelhorIpNulo() throws HappyEyeBallsException {
@@ -32,4 +62,251 @@ public class MelhorIpTeste {
     LOGGER.info(ip.toString());
   }
 
+  @Test
+  public void testMelhorIpLoopback() throws Exception {
+    List<InetAddress> teste = new LinkedList<InetAddress>();
+    teste.add(InetAddress.getByName("127.0.0.1"));
+    Amostra amostra =
+        new MelhorIp(1000L, teste, servidor.getLocalPort()).iniciar(Reator.getReator()).get();
+    LOGGER.info(amostra.toString());
+    Assert.assertEquals(InetAddress.getByName("127.0.0.1"), amostra.getEnderecoIp());
+  }
+
+  @Test
+  public void testMelhorIpCorridasSimultaneas() throws Exception {
+    List<InetAddress> teste = new LinkedList<InetAddress>();
+    teste.add(InetAddress.getByName("127.0.0.1"));
+    List<CompletableFuture<Amostra>> corridas = new LinkedList<CompletableFuture<Amostra>>();
+    for (int i = 0; i < 32; i++) {
+      corridas.add(new MelhorIp(1000L, teste, servidor.getLocalPort()).iniciar(Reator.getReator()));
+    }
+    for (CompletableFuture<Amostra> corrida : corridas) {
+      Assert.assertNotNull(corrida.get().getEnderecoIp());
+    }
+  }
+
+  @Test
+  public void testMelhorIpEscalonado() throws Exception {
+    try (ServerSocketChannel escuta = ServerSocketChannel.open()) {
+      escuta.bind(new InetSocketAddress(0));
+      escuta.configureBlocking(false);
+      List<InetAddress> teste = new LinkedList<InetAddress>();
+      teste.add(InetAddress.getByName("127.0.0.1"));
+      teste.add(InetAddress.getByName("127.0.0.2"));
+      teste.add(InetAddress.getByName("127.0.0.3"));
+      int porta = escuta.socket().getLocalPort();
+      Amostra amostra =
+          new MelhorIp(1000L, teste, porta, 250L, false).iniciar(Reator.getReator()).get();
+      Assert.assertEquals(InetAddress.getByName("127.0.0.1"), amostra.getEnderecoIp());
+      int aceitas = 0;
+      while (escuta.accept() != null) {
+        aceitas++;
+      }
+      Assert.assertEquals(1, aceitas);
+    }
+  }
+
+  @Test
+  public void testMelhorIpEsperaResolucao() throws Exception {
+    CompletableFuture<List<InetAddress>> ipv6 = new CompletableFuture<List<InetAddress>>();
+    CompletableFuture<List<InetAddress>> ipv4 = new CompletableFuture<List<InetAddress>>();
+    CompletableFuture<Amostra> corrida = new MelhorIp(1000L, new Resolucao(ipv6, ipv4),
+        servidor.getLocalPort(), 250L, 50L, false).iniciar(Reator.getReator());
+    ipv4.complete(Collections.singletonList(InetAddress.getByName("127.0.0.1")));
+    // A resposta AAAA nunca chega: a corrida começa pelo IPV4 após o tempo de resolução
+    Amostra amostra = corrida.get(1L, TimeUnit.SECONDS);
+    Assert.assertEquals(InetAddress.getByName("127.0.0.1"), amostra.getEnderecoIp());
+  }
+
+  @Test
+  public void testMelhorIpResolucaoVazia() throws Exception {
+    List<InetAddress> vazia = Collections.emptyList();
+    CompletableFuture<Amostra> corrida = new MelhorIp(1000L,
+        new Resolucao(CompletableFuture.completedFuture(vazia),
+            CompletableFuture.completedFuture(vazia)),
+        servidor.getLocalPort(), 250L, 50L, false).iniciar(Reator.getReator());
+    try {
+      corrida.get(1L, TimeUnit.SECONDS);
+      Assert.fail();
+    } catch (ExecutionException excep) {
+      Assert.assertTrue(excep.getCause() instanceof HappyEyeBallsException);
+    }
+  }
+
+  @Test
+  public void testMelhorIpFamiliaSuspensa() throws Exception {
+    InetAddress ipv6 = InetAddress.getByName("::1");
+    List<InetAddress> teste = new LinkedList<InetAddress>();
+    teste.add(ipv6);
+    teste.add(InetAddress.getByName("127.0.0.1"));
+    SaudeFamilia saude = SaudeFamilia.getSaude();
+    int falhas = HistoricoLatencia.getHistorico().getFalhas(ipv6);
+    try {
+      for (int i = 0; i < SaudeFamilia.FALHAS_PADRAO; i++) {
+        saude.registrarFalha(FamiliaEndereco.IPV6);
+      }
+      // Com o IPV6 suspenso, a corrida começa pelo IPV4 e nem chega a tentar o ::1
+      Amostra amostra = new MelhorIp(1000L, teste, servidor.getLocalPort(), 250L, true)
+          .iniciar(Reator.getReator()).get();
+      amostra.getCanal().close();
+      Assert.assertEquals(InetAddress.getByName("127.0.0.1"), amostra.getEnderecoIp());
+      Assert.assertEquals(falhas, HistoricoLatencia.getHistorico().getFalhas(ipv6));
+      Assert.assertTrue(saude.isSuspensa(FamiliaEndereco.IPV6));
+    } finally {
+      saude.limpar();
+    }
+  }
+
+  @Test
+  public void testMelhorIpJanelaPreferencia() throws Exception {
+    SaudeFamilia.getSaude().limpar();
+    List<Socket> enfileirados = new ArrayList<Socket>();
+    try (ServerSocket lotado = new ServerSocket(); ServerSocket ipv4 = new ServerSocket()) {
+      // Com a fila de aceitação cheia, as conexões ao ::1 ficam pendentes
+      lotado.bind(new InetSocketAddress(InetAddress.getByName("::1"), 0), 1);
+      ipv4.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.4"), lotado.getLocalPort()),
+          100);
+      for (int i = 0; i < 4; i++) {
+        Socket cliente = new Socket();
+        enfileirados.add(cliente);
+        try {
+          cliente.connect(lotado.getLocalSocketAddress(), 50);
+        } catch (IOException excep) {
+          LOGGER.debug(excep.getMessage());
+        }
+      }
+      List<InetAddress> teste = Arrays.asList(InetAddress.getByName("::1"),
+          InetAddress.getByName("127.0.0.4"));
+      long inicio = System.nanoTime();
+      Amostra amostra = new MelhorIp(2000L, teste, lotado.getLocalPort(), 10L, false)
+          .preferencia(300L).iniciar(Reator.getReator()).get(2L, TimeUnit.SECONDS);
+      long decorrido = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+      // O IPV4 conectou, aguardou a janela pelo IPV6 pendente e venceu ao fim dela
+      Assert.assertEquals(InetAddress.getByName("127.0.0.4"), amostra.getEnderecoIp());
+      Assert.assertTrue(decorrido >= 300L);
+      inicio = System.nanoTime();
+      amostra = new MelhorIp(2000L, teste, lotado.getLocalPort(), 10L, false)
+          .iniciar(Reator.getReator()).get(2L, TimeUnit.SECONDS);
+      decorrido = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+      Assert.assertEquals(InetAddress.getByName("127.0.0.4"), amostra.getEnderecoIp());
+      Assert.assertTrue(decorrido < 300L);
+    } finally {
+      for (Socket cliente : enfileirados) {
+        cliente.close();
+      }
+      SaudeFamilia.getSaude().limpar();
+    }
+  }
+
+  @Test
+  public void testMelhorIpFamiliaLentaSaudavel() throws Exception {
+    SaudeFamilia saude = SaudeFamilia.getSaude();
+    saude.limpar();
+    List<Socket> enfileirados = new ArrayList<Socket>();
+    try (ServerSocket lotado = new ServerSocket(); ServerSocket ipv4 = new ServerSocket()) {
+      // Com a fila de aceitação cheia, as conexões ao ::1 ficam pendentes
+      lotado.bind(new InetSocketAddress(InetAddress.getByName("::1"), 0), 1);
+      ipv4.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.4"), lotado.getLocalPort()),
+          100);
+      for (int i = 0; i < 4; i++) {
+        Socket cliente = new Socket();
+        enfileirados.add(cliente);
+        try {
+          cliente.connect(lotado.getLocalSocketAddress(), 50);
+        } catch (IOException excep) {
+          LOGGER.debug(excep.getMessage());
+        }
+      }
+      List<InetAddress> teste = Arrays.asList(InetAddress.getByName("::1"),
+          InetAddress.getByName("127.0.0.4"));
+      // O IPV6 é tentado e perde para o IPV4 em todas as corridas, sem falhar
+      for (int i = 0; i < SaudeFamilia.FALHAS_PADRAO; i++) {
+        Amostra amostra = new MelhorIp(2000L, teste, lotado.getLocalPort(), 10L, false)
+            .iniciar(Reator.getReator()).get(2L, TimeUnit.SECONDS);
+        Assert.assertEquals(InetAddress.getByName("127.0.0.4"), amostra.getEnderecoIp());
+      }
+      Assert.assertFalse(saude.isSuspensa(FamiliaEndereco.IPV6));
+    } finally {
+      for (Socket cliente : enfileirados) {
+        cliente.close();
+      }
+      saude.limpar();
+    }
+  }
+
+  @Test
+  public void testMelhorIpRecusado() throws Exception {
+    try (ServerSocket escuta = new ServerSocket()) {
+      escuta.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.8"), 0), 100);
+      InetAddress recusado = InetAddress.getByName("127.0.0.7");
+      // A recusa do 127.0.0.7 chega antes, mas não vence a corrida
+      Amostra amostra = new MelhorIp(1000L,
+          Arrays.asList(recusado, InetAddress.getByName("127.0.0.8")), escuta.getLocalPort(),
+          250L, false).iniciar(Reator.getReator()).get(2L, TimeUnit.SECONDS);
+      Assert.assertEquals(InetAddress.getByName("127.0.0.8"), amostra.getEnderecoIp());
+      Assert.assertTrue(HistoricoLatencia.getHistorico().getFalhas(recusado) > 0);
+      try {
+        new MelhorIp(1000L, Collections.singletonList(recusado), escuta.getLocalPort(), 250L,
+            false).iniciar(Reator.getReator()).get(2L, TimeUnit.SECONDS);
+        Assert.fail();
+      } catch (ExecutionException excep) {
+        Assert.assertTrue(excep.getCause() instanceof DestinoInalcancavelException);
+        Map<InetAddress, IOException> falhas =
+            ((DestinoInalcancavelException) excep.getCause()).getFalhas();
+        Assert.assertEquals(Collections.singleton(recusado), falhas.keySet());
+        Assert.assertTrue(falhas.get(recusado) instanceof ConnectException);
+      }
+    }
+  }
+
+  @Test
+  public void testMelhorIpConexaoNaExpiracao() throws Exception {
+    Reator reator = Reator.getReator();
+    CompletableFuture<Amostra> corrida = new MelhorIp(50L,
+        Collections.singletonList(InetAddress.getByName("127.0.0.1")), servidor.getLocalPort())
+            .iniciar(reator);
+    // A conexão e a expiração ficam prontas no mesmo ciclo do reator
+    reator.executar(() -> {
+      try {
+        Thread.sleep(200L);
+      } catch (InterruptedException excep) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    Assert.assertEquals(InetAddress.getByName("127.0.0.1"),
+        corrida.get(2L, TimeUnit.SECONDS).getEnderecoIp());
+  }
+
+  @Test
+  public void testMelhorIpClassificacao() throws Exception {
+    try (ServerSocket todos = new ServerSocket()) {
+      todos.bind(new InetSocketAddress(0), 100);
+      List<InetAddress> teste = Arrays.asList(InetAddress.getByName("127.0.0.4"),
+          InetAddress.getByName("127.0.0.5"));
+      Amostra amostra = new MelhorIp(1000L, teste, todos.getLocalPort(), 250L, false)
+          .classificar(true).iniciar(Reator.getReator()).get(2L, TimeUnit.SECONDS);
+      List<IpClassificado> classificacao = amostra.getClassificacao();
+      Assert.assertEquals(2, classificacao.size());
+      Assert.assertEquals(amostra.getEnderecoIp(), classificacao.get(0).getEndereco());
+      Assert.assertTrue(
+          classificacao.get(0).getLatencia() <= classificacao.get(1).getLatencia());
+      Assert.assertNull(amostra.getCanal());
+    }
+  }
+
+  @Test
+  public void testIntercala() throws UnknownHostException {
+    List<InetAddress> ipv6 = new LinkedList<InetAddress>();
+    ipv6.add(InetAddress.getByName("::1"));
+    ipv6.add(InetAddress.getByName("::2"));
+    ipv6.add(InetAddress.getByName("::3"));
+    List<InetAddress> ipv4 = new LinkedList<InetAddress>();
+    ipv4.add(InetAddress.getByName("127.0.0.1"));
+    List<InetAddress> intercalados = MelhorIp.intercala(ipv6, ipv4);
+    Assert.assertEquals(4, intercalados.size());
+    Assert.assertEquals(InetAddress.getByName("::1"), intercalados.get(0));
+    Assert.assertEquals(InetAddress.getByName("127.0.0.1"), intercalados.get(1));
+    Assert.assertEquals(InetAddress.getByName("::2"), intercalados.get(2));
+  }
+
 }
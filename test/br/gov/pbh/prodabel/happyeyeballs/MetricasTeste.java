@@ -0,0 +1,88 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+
+public class MetricasTeste {
+
+  private List<String> eventos;
+  private Metricas metricas;
+
+  @Before
+  public void setUp() {
+    eventos = new ArrayList<String>();
+    metricas = new Metricas(new RegistroMetricas() {
+      @Override
+      public void acertoCache() {
+        eventos.add("acerto");
+      }
+
+      @Override
+      public void vitoria(final FamiliaEndereco familia, final long tempo) {
+        eventos.add(familia + "/" + TimeUnit.NANOSECONDS.toMillis(tempo));
+      }
+    }, null);
+  }
+
+  @Test
+  public void testCache() {
+    Assert.assertEquals(0D, metricas.getTaxaAcertoCache(), 0D);
+    metricas.acertoCache();
+    metricas.acertoCache();
+    metricas.acertoCache();
+    metricas.faltaCache();
+    Assert.assertEquals(3L, metricas.getAcertosCache());
+    Assert.assertEquals(1L, metricas.getFaltasCache());
+    Assert.assertEquals(0.75D, metricas.getTaxaAcertoCache(), 0D);
+    Assert.assertEquals(3, eventos.size());
+  }
+
+  @Test
+  public void testHistograma() throws Exception {
+    metricas.corridaIniciada();
+    metricas.corridaIniciada();
+    metricas.corridaIniciada();
+    Assert.assertEquals(3L, metricas.getCorridasEmAndamento());
+    metricas.corridaTerminada(vencedor("::1", 0L), false);
+    metricas.corridaTerminada(vencedor("127.0.0.1", 7L), true);
+    metricas.corridaTerminada(null, true);
+    Assert.assertEquals(0L, metricas.getCorridasEmAndamento());
+    Assert.assertEquals(3L, metricas.getCorridasIniciadas());
+    Assert.assertEquals(2L, metricas.getCorridasExpiradas());
+    Assert.assertEquals(1L, metricas.getVitoriasIpv6());
+    Assert.assertEquals(1L, metricas.getVitoriasIpv4());
+    Assert.assertEquals(metricas.getLimitesHistograma().length + 1,
+        metricas.getHistogramaIpv4().length);
+    Assert.assertEquals(1L, metricas.getHistogramaIpv6()[0]);
+    Assert.assertEquals(1L, metricas.getHistogramaIpv4()[3]);
+    Assert.assertEquals("[IPV6/0, IPV4/7]", eventos.toString());
+  }
+
+  @Test
+  public void testFilaExecutor() {
+    Assert.assertEquals(-1L, metricas.getFilaExecutor());
+    ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+    try {
+      Assert.assertEquals(0L, new Metricas(new RegistroMetricas() {}, executor).getFilaExecutor());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static Amostra vencedor(final String endereco, final long milissegundos)
+      throws Exception {
+    Amostra amostra = new Amostra(InetAddress.getByName(endereco), 0L);
+    amostra.setTempoFim(TimeUnit.MILLISECONDS.toNanos(milissegundos));
+    return amostra;
+  }
+}
@@ -0,0 +1,61 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PoliticasTeste {
+
+  private static IpClassificado ip(String endereco, long latencia) throws Exception {
+    return new IpClassificado(InetAddress.getByName(endereco), null, latencia);
+  }
+
+  @Test
+  public void testaMaisRapido() throws Exception {
+    List<IpClassificado> classificacao =
+        Arrays.asList(ip("127.0.0.1", 100L), ip("127.0.0.2", 200L));
+    Assert.assertSame(classificacao.get(0),
+        PoliticaSelecao.maisRapido().selecionar(classificacao));
+  }
+
+  @Test
+  public void testaDuasEscolhas() throws Exception {
+    List<IpClassificado> unico = Collections.singletonList(ip("127.0.0.1", 100L));
+    Assert.assertSame(unico.get(0), PoliticaSelecao.duasEscolhas().selecionar(unico));
+    List<IpClassificado> classificacao = Arrays.asList(ip("127.0.0.1", 100L),
+        ip("127.0.0.2", 200L), ip("127.0.0.3", 300L));
+    boolean segundo = false;
+    for (int i = 0; i < 1000; i++) {
+      IpClassificado escolhido = PoliticaSelecao.duasEscolhas().selecionar(classificacao);
+      // O mais lento nunca vence um sorteio de dois
+      Assert.assertNotSame(classificacao.get(2), escolhido);
+      segundo |= escolhido == classificacao.get(1);
+    }
+    Assert.assertTrue(segundo);
+  }
+
+  @Test
+  public void testaPonderada() throws Exception {
+    List<IpClassificado> classificacao = Arrays.asList(ip("127.0.0.1", 1000L),
+        ip("127.0.0.2", 1000L), ip("127.0.0.3", 1500L));
+    PoliticaSelecao empatados = PoliticaSelecao.ponderada(0);
+    PoliticaSelecao tolerante = PoliticaSelecao.ponderada(50);
+    int[] escolhas = new int[classificacao.size()];
+    for (int i = 0; i < 3000; i++) {
+      Assert.assertNotSame(classificacao.get(2), empatados.selecionar(classificacao));
+      escolhas[classificacao.indexOf(tolerante.selecionar(classificacao))]++;
+    }
+    Assert.assertTrue(escolhas[2] > 0);
+    // O peso é inverso ao tempo de conexão
+    Assert.assertTrue(escolhas[0] > escolhas[2]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testaPercentualInvalido() {
+    PoliticaSelecao.ponderada(-1);
+  }
+}
@@ -0,0 +1,206 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+
+
+public class ResolvedorDnsTeste {
+
+  private ServidorDnsFalso servidorDns;
+  private ResolvedorDns resolvedor;
+
+  @Before
+  public void setUp() throws IOException {
+    servidorDns = new ServidorDnsFalso();
+    servidorDns.registra("servidor.teste", ResolvedorDns.TIPO_AAAA, InetAddress.getByName("::1"));
+    servidorDns.registra("servidor.teste", ResolvedorDns.TIPO_A,
+        InetAddress.getByName("127.0.0.1"));
+    servidorDns.registra("lento.teste", ResolvedorDns.TIPO_A, InetAddress.getByName("127.0.0.1"));
+    servidorDns.silencia("lento.teste", ResolvedorDns.TIPO_AAAA);
+    servidorDns.silencia("mudo.teste", ResolvedorDns.TIPO_AAAA);
+    servidorDns.silencia("mudo.teste", ResolvedorDns.TIPO_A);
+    servidorDns.start();
+    resolvedor = new ResolvedorDns(servidorDns.getEndereco(), 200L, 2);
+  }
+
+  @After
+  public void tearDown() {
+    servidorDns.fecha();
+  }
+
+  @Test
+  public void testResolveFamilias() throws Exception {
+    Resolucao resolucao = resolvedor.resolver("servidor.teste");
+    Assert.assertEquals(Collections.singletonList(InetAddress.getByName("::1")),
+        resolucao.getEnderecos(FamiliaEndereco.IPV6).get(1L, TimeUnit.SECONDS));
+    Assert.assertEquals(Collections.singletonList(InetAddress.getByName("127.0.0.1")),
+        resolucao.getEnderecos(FamiliaEndereco.IPV4).get(1L, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testResolveLiteral() throws Exception {
+    Resolucao resolucao = resolvedor.resolver("127.0.0.1");
+    Assert.assertTrue(resolucao.getEnderecos(FamiliaEndereco.IPV6).get().isEmpty());
+    Assert.assertEquals(InetAddress.getByName("127.0.0.1"),
+        resolucao.getEnderecos(FamiliaEndereco.IPV4).get().get(0));
+  }
+
+  @Test
+  public void testNomeInexistente() throws Exception {
+    Resolucao resolucao = resolvedor.resolver("inexistente.teste");
+    try {
+      resolucao.getEnderecos(FamiliaEndereco.IPV4).get(1L, TimeUnit.SECONDS);
+      Assert.fail();
+    } catch (ExecutionException excep) {
+      Assert.assertTrue(excep.getCause() instanceof HappyEyeBallsException);
+      Assert.assertEquals(Mensagens.HAPPYEYEBALLS_3, excep.getCause().getMessage());
+    }
+  }
+
+  @Test
+  public void testConsultaExpirada() throws Exception {
+    Resolucao resolucao = resolvedor.resolver("mudo.teste");
+    try {
+      resolucao.getEnderecos(FamiliaEndereco.IPV6).get(2L, TimeUnit.SECONDS);
+      Assert.fail();
+    } catch (ExecutionException excep) {
+      Assert.assertEquals(Mensagens.HAPPYEYEBALLS_37, excep.getCause().getMessage());
+    }
+    Assert.assertEquals(2, servidorDns.getConsultas("mudo.teste", ResolvedorDns.TIPO_AAAA));
+  }
+
+  @Test
+  public void testCorridaSemEsperarIpv6() throws Exception {
+    try (ServerSocket servidor = new ServerSocket();
+        HappyEyeballs happyEyeballs = HappyEyeballs
+            .getHappyEyeballs(new ResolvedorDns(servidorDns.getEndereco(), 5000L, 1))) {
+      servidor.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+      long inicio = System.nanoTime();
+      InetAddress endereco = happyEyeballs.obterIp("lento.teste", servidor.getLocalPort());
+      Assert.assertEquals(InetAddress.getByName("127.0.0.1"), endereco);
+      Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 1000L);
+    }
+  }
+
+  /**
+   * Servidor DNS mínimo para os testes, que responde aos registros cadastrados, ignora as consultas
+   * silenciadas e responde NXDOMAIN para os demais nomes.
+   */
+  private static final class ServidorDnsFalso extends Thread {
+
+    private final DatagramSocket socket;
+    private final Map<String, List<InetAddress>> registros =
+        new HashMap<String, List<InetAddress>>();
+    private final Map<String, Integer> consultas = new HashMap<String, Integer>();
+
+    ServidorDnsFalso() throws SocketException, IOException {
+      super("servidor-dns-falso");
+      setDaemon(true);
+      socket = new DatagramSocket(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+    }
+
+    InetSocketAddress getEndereco() {
+      return (InetSocketAddress) socket.getLocalSocketAddress();
+    }
+
+    void registra(final String nome, final int tipo, final InetAddress endereco) {
+      registros.put(nome + '/' + tipo, Collections.singletonList(endereco));
+    }
+
+    void silencia(final String nome, final int tipo) {
+      registros.put(nome + '/' + tipo, null);
+    }
+
+    synchronized int getConsultas(final String nome, final int tipo) {
+      Integer total = consultas.get(nome + '/' + tipo);
+      return total == null ? 0 : total;
+    }
+
+    void fecha() {
+      socket.close();
+    }
+
+    @Override
+    public void run() {
+      byte[] dados = new byte[512];
+      while (!socket.isClosed()) {
+        try {
+          DatagramPacket pacote = new DatagramPacket(dados, dados.length);
+          socket.receive(pacote);
+          ByteBuffer consulta = ByteBuffer.wrap(dados, 0, pacote.getLength());
+          byte[] resposta = responde(consulta);
+          if (resposta != null) {
+            socket.send(new DatagramPacket(resposta, resposta.length, pacote.getSocketAddress()));
+          }
+        } catch (IOException excep) {
+          // socket fechado
+        }
+      }
+    }
+
+    private byte[] responde(final ByteBuffer consulta) {
+      StringBuilder nome = new StringBuilder();
+      consulta.position(12);
+      int tamanho = consulta.get() & 0xFF;
+      while (tamanho != 0) {
+        byte[] rotulo = new byte[tamanho];
+        consulta.get(rotulo);
+        nome.append(nome.length() == 0 ? "" : ".").append(new String(rotulo));
+        tamanho = consulta.get() & 0xFF;
+      }
+      int tipo = consulta.getShort() & 0xFFFF;
+      consulta.getShort();
+      int fimPergunta = consulta.position();
+      String chave = nome.toString() + '/' + tipo;
+      synchronized (this) {
+        consultas.put(chave, getConsultas(nome.toString(), tipo) + 1);
+      }
+      if (registros.containsKey(chave) && registros.get(chave) == null) {
+        return null;
+      }
+      List<InetAddress> enderecos = registros.get(chave);
+      boolean existe = registros.containsKey(nome.toString() + '/' + ResolvedorDns.TIPO_A)
+          || registros.containsKey(nome.toString() + '/' + ResolvedorDns.TIPO_AAAA);
+      ByteBuffer resposta = ByteBuffer.allocate(512);
+      resposta.putShort(consulta.getShort(0));
+      resposta.putShort((short) (existe ? 0x8180 : 0x8183));
+      resposta.putShort((short) 1);
+      resposta.putShort((short) (enderecos == null ? 0 : enderecos.size()));
+      resposta.putInt(0);
+      resposta.put(consulta.array(), 12, fimPergunta - 12);
+      if (enderecos != null) {
+        for (InetAddress endereco : enderecos) {
+          byte[] bytes = endereco.getAddress();
+          resposta.putShort((short) 0xC00C);
+          resposta.putShort((short) tipo);
+          resposta.putShort((short) ResolvedorDns.CLASSE_IN);
+          resposta.putInt(60);
+          resposta.putShort((short) bytes.length);
+          resposta.put(bytes);
+        }
+      }
+      byte[] retorno = new byte[resposta.position()];
+      resposta.flip();
+      resposta.get(retorno);
+      return retorno;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SaudeFamiliaTeste {
+
+  private SaudeFamilia saude;
+
+  @Before
+  public void setUp() {
+    saude = new SaudeFamilia(2, 60000L);
+  }
+
+  @Test
+  public void testSuspendeAposFalhasConsecutivas() {
+    saude.registrarFalha(FamiliaEndereco.IPV6);
+    Assert.assertFalse(saude.isSuspensa(FamiliaEndereco.IPV6));
+    Assert.assertEquals(FamiliaEndereco.IPV6, saude.getPreferida());
+    saude.registrarFalha(FamiliaEndereco.IPV6);
+    Assert.assertTrue(saude.isSuspensa(FamiliaEndereco.IPV6));
+    Assert.assertFalse(saude.isSuspensa(FamiliaEndereco.IPV4));
+    Assert.assertEquals(FamiliaEndereco.IPV4, saude.getPreferida());
+  }
+
+  @Test
+  public void testSucessoZeraFalhas() {
+    saude.registrarFalha(FamiliaEndereco.IPV4);
+    saude.registrarSucesso(FamiliaEndereco.IPV4);
+    saude.registrarFalha(FamiliaEndereco.IPV4);
+    Assert.assertFalse(saude.isSuspensa(FamiliaEndereco.IPV4));
+    saude.registrarFalha(FamiliaEndereco.IPV4);
+    Assert.assertTrue(saude.isSuspensa(FamiliaEndereco.IPV4));
+    // A família preferida continua IPV6; o IPV4 vai para o fim da fila
+    Assert.assertEquals(FamiliaEndereco.IPV6, saude.getPreferida());
+    saude.registrarSucesso(FamiliaEndereco.IPV4);
+    Assert.assertFalse(saude.isSuspensa(FamiliaEndereco.IPV4));
+  }
+
+  @Test
+  public void testSuspensaoExpira() {
+    saude = new SaudeFamilia(1, 0L);
+    saude.registrarFalha(FamiliaEndereco.IPV6);
+    Assert.assertFalse(saude.isSuspensa(FamiliaEndereco.IPV6));
+    Assert.assertEquals(FamiliaEndereco.IPV6, saude.getPreferida());
+  }
+
+  @Test
+  public void testLimpar() {
+    saude.registrarFalha(FamiliaEndereco.IPV6);
+    saude.registrarFalha(FamiliaEndereco.IPV6);
+    saude.limpar();
+    Assert.assertFalse(saude.isSuspensa(FamiliaEndereco.IPV6));
+  }
+
+}
@@ -11,8 +11,10 @@ import org.junit.runners.Suite.SuiteClasses;
 
 
 @RunWith(Suite.class)
-@SuiteClasses({AmostraTeste.class, HappyEyeBallsExceptionTeste.class, HappyEyeBallsTeste.class,
-    MelhorIpTeste.class})
+@SuiteClasses({AmostraTeste.class, CacheProximoTeste.class, HappyEyeBallsExceptionTeste.class,
+    HappyEyeBallsTeste.class, HistoricoLatenciaTeste.class, InterfacesLocaisTeste.class,
+    MelhorIpTeste.class, MetricasTeste.class, PoliticasTeste.class, ResolvedorDnsTeste.class,
+    SaudeFamiliaTeste.class})
 public class TodosTestes {
 
   @BeforeClass
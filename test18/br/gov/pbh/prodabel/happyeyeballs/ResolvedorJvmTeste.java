@@ -0,0 +1,81 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.UnknownHostException;
+import java.net.spi.InetAddressResolver;
+import java.net.spi.InetAddressResolverProvider;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ResolvedorJvmTeste {
+
+  private static final class Nativo implements InetAddressResolver {
+
+    private final List<InetAddress> enderecos;
+
+    private Nativo(List<InetAddress> enderecos) {
+      this.enderecos = enderecos;
+    }
+
+    @Override
+    public Stream<InetAddress> lookupByName(String nome, LookupPolicy politica)
+        throws UnknownHostException {
+      if ((politica.characteristics() & LookupPolicy.IPV4) == 0) {
+        throw new UnknownHostException(nome);
+      }
+      return enderecos.stream();
+    }
+
+    @Override
+    public String lookupByAddress(byte[] endereco) throws UnknownHostException {
+      throw new UnknownHostException();
+    }
+  }
+
+  @Test
+  public void testaProvedorRegistrado() {
+    boolean registrado = false;
+    for (InetAddressResolverProvider provedor
+        : ServiceLoader.load(InetAddressResolverProvider.class)) {
+      registrado |= provedor instanceof ProvedorResolucao;
+    }
+    Assert.assertTrue(registrado);
+  }
+
+  @Test
+  public void testaReordena() throws Exception {
+    InetAddress recusado = InetAddress.getByName("127.0.0.9");
+    InetAddress vencedor = InetAddress.getByName("127.0.0.10");
+    try (ServerSocket servidor = new ServerSocket()) {
+      servidor.bind(new InetSocketAddress(vencedor, 0), 100);
+      ResolvedorJvm resolvedor =
+          new ResolvedorJvm(new Nativo(Arrays.asList(recusado, vencedor)), servidor.getLocalPort());
+      InetAddressResolver.LookupPolicy politica = InetAddressResolver.LookupPolicy
+          .of(InetAddressResolver.LookupPolicy.IPV4 | InetAddressResolver.LookupPolicy.IPV6);
+      // A primeira consulta não espera pela corrida e recebe a ordem nativa
+      Assert.assertEquals(Arrays.asList(recusado, vencedor),
+          resolvedor.lookupByName("destino.teste", politica).collect(Collectors.toList()));
+      HappyEyeballs happyEyeballs = resolvedor.getHappyEyeballs();
+      Assert.assertEquals(vencedor,
+          happyEyeballs.obterIp("destino.teste", servidor.getLocalPort()));
+      Assert.assertEquals(Arrays.asList(vencedor, recusado),
+          resolvedor.lookupByName("destino.teste", politica).collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  public void testaVencedorAusente() throws Exception {
+    List<InetAddress> enderecos =
+        Arrays.asList(InetAddress.getByName("127.0.0.9"), InetAddress.getByName("127.0.0.11"));
+    Assert.assertEquals(enderecos.size(),
+        ResolvedorJvm.ordena(enderecos, InetAddress.getByName("127.0.0.12")).size());
+  }
+}
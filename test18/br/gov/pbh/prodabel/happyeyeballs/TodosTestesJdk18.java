@@ -0,0 +1,12 @@
+package br.gov.pbh.prodabel.happyeyeballs;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+
+
+@RunWith(Suite.class)
+@SuiteClasses({ResolvedorJvmTeste.class})
+public class TodosTestesJdk18 {
+}